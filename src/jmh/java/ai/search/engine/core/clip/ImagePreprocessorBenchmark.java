@@ -0,0 +1,111 @@
+package ai.search.engine.core.clip;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.modality.cv.util.NDImageUtils;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CLIP preprocessing of one decoded image: the fused {@link ImagePreprocessor} on the SIMD
+ * kernels and on the scalar ones, against the {@code NDImageUtils} resize, centerCrop and
+ * toTensor chain it replaced, on the PyTorch engine.
+ * <pre>
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="ImagePreprocessorBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ImagePreprocessorBenchmark {
+
+	private static final int SIZE = 224;
+
+	/** Typical decodes: a landscape product photo and a large portrait one. */
+	@Param({"500x448", "1200x1600"})
+	private String dimensions;
+
+	private final ImagePreprocessor preprocessor = new ImagePreprocessor(SIZE);
+	private final float[] out = new float[3 * SIZE * SIZE];
+	private BufferedImage image;
+	private Image djlImage;
+
+	@Setup
+	public void setUp() {
+		var sides = dimensions.split("x");
+		image = new BufferedImage(Integer.parseInt(sides[0]), Integer.parseInt(sides[1]), BufferedImage.TYPE_3BYTE_BGR);
+		var random = new Random(42);
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				image.setRGB(x, y, random.nextInt(0x1000000));
+			}
+		}
+		djlImage = ImageFactory.getInstance().fromImage(image);
+	}
+
+	@Benchmark
+	public float[] fusedSimd() {
+		preprocessor.preprocess(image, out);
+		return out;
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = {"--add-modules=jdk.incubator.vector", "-Dvector.kernels.simd=false"})
+	public float[] fusedScalar() {
+		preprocessor.preprocess(image, out);
+		return out;
+	}
+
+	/** The fused path up to the input tensor, for a like for like comparison with the NDArray chain. */
+	@Benchmark
+	public NDArray fusedTensor(Engine engine) {
+		return preprocessor.toTensor(engine.manager, image);
+	}
+
+	@Benchmark
+	public NDArray ndArray(Engine engine) {
+		var array = djlImage.toNDArray(engine.manager, Image.Flag.COLOR);
+		var percent = (float) SIZE / Math.min(image.getWidth(), image.getHeight());
+		array = NDImageUtils.resize(array, Math.round(image.getWidth() * percent),
+				Math.round(image.getHeight() * percent), Image.Interpolation.BICUBIC);
+		array = NDImageUtils.centerCrop(array, SIZE, SIZE);
+		return NDImageUtils.toTensor(array);
+	}
+
+	/** A fresh manager per call, so the arrays of one call are freed before the next. */
+	@State(Scope.Thread)
+	public static class Engine {
+
+		private NDManager manager;
+
+		@Setup(Level.Invocation)
+		public void newManager() {
+			manager = NDManager.newBaseManager("PyTorch");
+		}
+
+		@TearDown(Level.Invocation)
+		public void closeManager() {
+			manager.close();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package ai.search.engine.core.milvus;
+
+import ai.search.engine.core.vector.VectorHit;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.IDs;
+import io.milvus.grpc.InsertRequest;
+import io.milvus.grpc.LongArray;
+import io.milvus.grpc.SearchRequest;
+import io.milvus.grpc.SearchResultData;
+import io.milvus.response.SearchResultsWrapper;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Building the Milvus insert and search requests of CLIP embeddings and reading the hits of a
+ * re-ranked search back, without a Milvus server. The hits are also read through the SDK
+ * {@link SearchResultsWrapper}, which boxes every vector component, for comparison.
+ * Allocation per operation is the figure to watch:
+ * <pre>
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="VectorDBRequestsBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorDBRequestsBenchmark {
+
+	private static final int DIMENSION = 512;
+	private static final int INSERT_ROWS = 128;
+	private static final int QUERIES = 16;
+	private static final int CANDIDATES = 40;
+	private static final List<String> OUT_FIELDS = List.of("path", "embedding");
+
+	@Param({"FloatVector", "Float16Vector"})
+	private DataType vectorType;
+
+	private List<float[]> embeddings;
+	private List<String> paths;
+	private List<float[]> queries;
+	private JsonObject searchParams;
+	private SearchResultData results;
+
+	@Setup
+	public void setUp() {
+		var random = new Random(42);
+		embeddings = IntStream.range(0, INSERT_ROWS).mapToObj(i -> randomVector(random)).toList();
+		paths = IntStream.range(0, INSERT_ROWS).mapToObj(i -> "products/" + i + ".jpg").toList();
+		queries = IntStream.range(0, QUERIES).mapToObj(i -> randomVector(random)).toList();
+		searchParams = Json.createObjectBuilder().add("nprobe", 16).build();
+
+		// Every query finds CANDIDATES of the inserted rows along with their embeddings
+		var rows = QUERIES * CANDIDATES;
+		var hitPaths = new ArrayList<String>(rows);
+		var hitEmbeddings = new ArrayList<float[]>(rows);
+		for (int row = 0; row < rows; row++) {
+			hitPaths.add(paths.get(row % INSERT_ROWS));
+			hitEmbeddings.add(embeddings.get(row % INSERT_ROWS));
+		}
+		var fields = VectorDBRequests.insert("db", "products", Map.of("embedding", vectorType),
+				Map.of("path", hitPaths, "embedding", hitEmbeddings)).getFieldsDataList();
+		var scores = new ArrayList<Float>(rows);
+		for (int row = 0; row < rows; row++) scores.add(1f - (float) row / rows);
+		var topks = LongStream.range(0, QUERIES).map(query -> CANDIDATES).boxed().toList();
+		results = SearchResultData.newBuilder()
+				.setNumQueries(QUERIES)
+				.setTopK(CANDIDATES)
+				.addAllTopks(topks)
+				.addAllScores(scores)
+				.setIds(IDs.newBuilder().setIntId(LongArray.newBuilder()
+						.addAllData(LongStream.range(0, rows).boxed().toList())))
+				.addAllFieldsData(fields)
+				.addAllOutputFields(OUT_FIELDS)
+				.build();
+	}
+
+	@Benchmark
+	public InsertRequest insert() {
+		return VectorDBRequests.insert("db", "products", Map.of("embedding", vectorType),
+				Map.of("path", paths, "embedding", embeddings));
+	}
+
+	@Benchmark
+	public SearchRequest search() {
+		return VectorDBRequests.search("db", "products", CANDIDATES, queries, "embedding", vectorType,
+				OUT_FIELDS, searchParams);
+	}
+
+	@Benchmark
+	public List<List<VectorHit>> hits() {
+		return VectorDBRequests.hits(results, QUERIES);
+	}
+
+	/** The read back the hits replaced, widening half precision first like the wrapper search. */
+	@Benchmark
+	public void sdkWrapper(Blackhole blackhole) {
+		var wrapper = new SearchResultsWrapper(VectorDBRequests.toFloatVectors(results));
+		for (int query = 0; query < QUERIES; query++) {
+			for (var idScore : wrapper.getIDScore(query)) {
+				blackhole.consume(idScore.getFieldValues());
+			}
+		}
+	}
+
+	private static float[] randomVector(Random random) {
+		var vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) vector[i] = random.nextFloat() * 2 - 1;
+		return vector;
+	}
+}
@@ -0,0 +1,177 @@
+package ai.search.engine.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.smallrye.mutiny.Uni;
+import lombok.SneakyThrows;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of embeddings with LRU eviction and a time to live since insertion.
+ * With {@code offHeap} the vectors are kept in direct buffers, so only the keys and
+ * the buffer handles count against the heap. Embeddings are copied in and out, so callers
+ * are free to modify the arrays they pass or get.
+ * <p>
+ * Concurrent misses of a key share a single load: the first one embeds, the others wait for
+ * its result. Loads run to the end even if the caller that started them goes away, and only
+ * their non null embeddings are cached.
+ */
+@ThreadSafe
+public class EmbeddingCache<K> {
+
+	private final Cache<K, FloatBuffer> cache;
+	private final boolean offHeap;
+	private final ConcurrentMap<K, CompletableFuture<float[]>> loading = new ConcurrentHashMap<>();
+
+	public EmbeddingCache(long maxSize, Duration ttl, boolean offHeap) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+		this.offHeap = offHeap;
+	}
+
+	/**
+	 * Cached embedding of the key, or the one of {@code embedding}, computed once for all
+	 * concurrent misses. A failure of {@code embedding} is thrown as is, not wrapped by Guava.
+	 */
+	@SneakyThrows
+	public float[] get(K key, Supplier<float[]> embedding) {
+		try {
+			return toArray(cache.get(key, () -> store(embedding.get())));
+		} catch (ExecutionException | UncheckedExecutionException | ExecutionError e) {
+			throw e.getCause();
+		}
+	}
+
+	/** Cached embedding of the key, or the one of {@code embed}, subscribed to once for all concurrent misses. */
+	public Uni<float[]> getAsync(K key, Supplier<Uni<float[]>> embed) {
+		return getAll(List.of(key), missing -> embed.get().map(Collections::singletonList))
+				.map(List::getFirst);
+	}
+
+	/**
+	 * Embeddings of every key, in order. The keys neither cached nor being loaded are embedded
+	 * with a single call of {@code embed}, given their indexes in {@code keys} and returning
+	 * their embeddings in the same order. Keys already being loaded wait for that load.
+	 */
+	public Uni<List<float[]>> getAll(List<K> keys, Function<List<Integer>, Uni<List<float[]>>> embed) {
+		return Uni.createFrom().deferred(() -> {
+			var futures = new ArrayList<CompletableFuture<float[]>>(keys.size());
+			var claimed = new ArrayList<Integer>();
+			for (var key : keys) {
+				var cached = getIfPresent(key);
+				if (cached != null) {
+					futures.add(CompletableFuture.completedFuture(cached));
+					continue;
+				}
+				var load = new CompletableFuture<float[]>();
+				var shared = loading.putIfAbsent(key, load);
+				if (shared != null) {
+					// The loader gets the embedding itself, every other caller a copy
+					futures.add(shared.thenApply(EmbeddingCache::copy));
+					continue;
+				}
+				// A load may have been cached between the lookup and the claim
+				cached = getIfPresent(key);
+				if (cached != null) {
+					loading.remove(key, load);
+					load.complete(cached);
+				} else {
+					claimed.add(futures.size());
+				}
+				futures.add(load);
+			}
+			if (!claimed.isEmpty()) load(keys, claimed, futures, embed);
+			return Uni.createFrom().completionStage(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)))
+					.map(done -> futures.stream().map(CompletableFuture::join).toList());
+		});
+	}
+
+	private void load(List<K> keys, List<Integer> claimed, List<CompletableFuture<float[]>> futures,
+					  Function<List<Integer>, Uni<List<float[]>>> embed) {
+		Uni.createFrom().deferred(() -> embed.apply(claimed)).subscribe().with(
+				embeddings -> {
+					for (int i = 0; i < claimed.size(); i++) {
+						var key = keys.get(claimed.get(i));
+						var embedding = embeddings.get(i);
+						// Cached before the load is released, so a later miss finds either of them
+						if (embedding != null) put(key, embedding);
+						loading.remove(key, futures.get(claimed.get(i)));
+						futures.get(claimed.get(i)).complete(embedding);
+					}
+				},
+				failure -> {
+					for (var index : claimed) {
+						loading.remove(keys.get(index), futures.get(index));
+						futures.get(index).completeExceptionally(failure);
+					}
+				});
+	}
+
+	public float[] getIfPresent(K key) {
+		var buffer = cache.getIfPresent(key);
+		return buffer == null ? null : toArray(buffer);
+	}
+
+	public void put(K key, float[] embedding) {
+		cache.put(key, store(embedding));
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/** Publishes the size, hits, misses, puts and evictions of the cache, tagged {@code cache=cacheName}. */
+	public void monitor(MeterRegistry registry, String cacheName) {
+		GuavaCacheMetrics.monitor(registry, cache, cacheName);
+	}
+
+	public void invalidateAll() {
+		cache.invalidateAll();
+	}
+
+	private FloatBuffer store(float[] embedding) {
+		if (!offHeap) return FloatBuffer.wrap(embedding.clone());
+		var buffer = ByteBuffer.allocateDirect(embedding.length * Float.BYTES)
+				.order(ByteOrder.nativeOrder())
+				.asFloatBuffer();
+		buffer.put(embedding);
+		return buffer.flip();
+	}
+
+	private static float[] toArray(FloatBuffer buffer) {
+		if (buffer.hasArray()) return buffer.array().clone();
+		var embedding = new float[buffer.limit()];
+		buffer.get(0, embedding);
+		return embedding;
+	}
+
+	private static float[] copy(float[] embedding) {
+		return embedding == null ? null : embedding.clone();
+	}
+}
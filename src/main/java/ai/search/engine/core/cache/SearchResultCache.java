@@ -0,0 +1,116 @@
+package ai.search.engine.core.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.smallrye.mutiny.Uni;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Cache of search results keyed by query embedding, topK and search parameters.
+ * Every key carries the collection version observed when the search started, and
+ * {@link #invalidate()} bumps that version whenever new vectors are committed, so a
+ * search racing with an insert can never publish its stale result for later queries.
+ */
+@ThreadSafe
+public class SearchResultCache<V> {
+
+	private final Cache<Key, V> cache;
+	private final AtomicLong version = new AtomicLong();
+
+	public SearchResultCache(long maxSize, Duration ttl) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.expireAfterWrite(ttl)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * Cached results of the embedding, or those of {@code search}, subscribed to on a miss
+	 * and cached once they arrive.
+	 */
+	public Uni<V> get(float[] embedding, int topK, String searchParams, Supplier<Uni<V>> search) {
+		var key = new Key(version.get(), embedding.clone(), topK, searchParams);
+		var cached = cache.getIfPresent(key);
+		if (cached != null) return Uni.createFrom().item(cached);
+		return search.get().invoke(result -> cache.put(key, result));
+	}
+
+	/**
+	 * Results of every embedding, in order. The embeddings missing from the cache are searched
+	 * with a single call of {@code search}, which returns their results in the order given.
+	 */
+	public Uni<List<V>> getAll(List<float[]> embeddings, int topK, String searchParams,
+							   Function<List<float[]>, Uni<List<V>>> search) {
+		var currentVersion = version.get();
+		var results = new ArrayList<V>(embeddings.size());
+		var missingKeys = new ArrayList<Key>();
+		var missingIndexes = new ArrayList<Integer>();
+		for (var embedding : embeddings) {
+			var key = new Key(currentVersion, embedding.clone(), topK, searchParams);
+			var result = cache.getIfPresent(key);
+			if (result == null) {
+				missingKeys.add(key);
+				missingIndexes.add(results.size());
+			}
+			results.add(result);
+		}
+		if (missingKeys.isEmpty()) return Uni.createFrom().item(results);
+
+		return search.apply(missingKeys.stream().map(Key::embedding).toList())
+				.map(searched -> {
+					for (int i = 0; i < missingKeys.size(); i++) {
+						cache.put(missingKeys.get(i), searched.get(i));
+						results.set(missingIndexes.get(i), searched.get(i));
+					}
+					return results;
+				});
+	}
+
+	public void invalidate() {
+		version.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	public long size() {
+		return cache.size();
+	}
+
+	public CacheStats stats() {
+		return cache.stats();
+	}
+
+	/** Publishes the size, hits, misses, puts and evictions of the cache, tagged {@code cache=cacheName}. */
+	public void monitor(MeterRegistry registry, String cacheName) {
+		GuavaCacheMetrics.monitor(registry, cache, cacheName);
+	}
+
+	private record Key(long version, float[] embedding, int topK, String searchParams) {
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key other
+					&& version == other.version
+					&& topK == other.topK
+					&& searchParams.equals(other.searchParams)
+					&& Arrays.equals(embedding, other.embedding);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * (31 * Long.hashCode(version) + topK) + searchParams.hashCode())
+					+ Arrays.hashCode(embedding);
+		}
+	}
+}
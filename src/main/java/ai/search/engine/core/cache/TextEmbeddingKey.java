@@ -0,0 +1,21 @@
+package ai.search.engine.core.cache;
+
+import java.util.regex.Pattern;
+
+/**
+ * Cache key of a text query: the model that embedded it and the query with stripped and
+ * collapsed white space. Case is kept, the tokenizer may not ignore it, so queries differing
+ * in case do not share an embedding they would not get from the model.
+ */
+public record TextEmbeddingKey(String modelId, String text) {
+
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	public static TextEmbeddingKey of(String modelId, String query) {
+		return new TextEmbeddingKey(modelId, normalize(query));
+	}
+
+	public static String normalize(String query) {
+		return WHITESPACE.matcher(query.strip()).replaceAll(" ");
+	}
+}
@@ -14,9 +14,17 @@ package ai.search.engine.core.clip;
 
 import ai.djl.inference.Predictor;
 import ai.djl.modality.cv.Image;
+import ai.djl.translate.TranslateException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.opentelemetry.context.Context;
 import lombok.SneakyThrows;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * An example of inference using an CLIP model.
@@ -27,20 +35,56 @@ import java.util.List;
  */
 public class CLIPModel implements AutoCloseable {
 
-    private final Predictor<Image, float[]> imageFeatureExtractor;
-    private final Predictor<String, float[]> textFeatureExtractor;
+    private final PredictorPool<Image, float[]> imageFeatureExtractor;
+    private final PredictorPool<String, float[]> textFeatureExtractor;
+	private final MicroBatcher<String, float[]> textBatcher;
+	/**
+	 * Runs the asynchronous extractions, one platform thread per predictor since inference
+	 * holds its thread for the whole forward pass, in the tracing context of the caller.
+	 */
+	private final ExecutorService inferenceExecutor;
 
-	public CLIPModel(Predictor<Image, float[]> imageFeatureExtractor,
-					 Predictor<String, float[]> textFeatureExtractorSupplier) {
+	public CLIPModel(PredictorPool<Image, float[]> imageFeatureExtractor,
+					 PredictorPool<String, float[]> textFeatureExtractor) {
+		this(imageFeatureExtractor, textFeatureExtractor, 1, Duration.ZERO);
+	}
+
+	/**
+	 * @param textBatchSize maximum number of concurrent text queries encoded in one forward pass,
+	 *                      1 disables micro-batching
+	 * @param textBatchWait how long the first query of a batch waits for others to join it
+	 */
+	public CLIPModel(PredictorPool<Image, float[]> imageFeatureExtractor,
+					 PredictorPool<String, float[]> textFeatureExtractor,
+					 int textBatchSize,
+					 Duration textBatchWait) {
 		this.imageFeatureExtractor = imageFeatureExtractor;
-		this.textFeatureExtractor = textFeatureExtractorSupplier;
+		this.textFeatureExtractor = textFeatureExtractor;
+		this.textBatcher = textBatchSize > 1
+				? new MicroBatcher<>("text", textFeatureExtractor::batchPredict, textBatchSize, textBatchWait)
+				: null;
+		this.inferenceExecutor = Context.taskWrapping(Executors.newFixedThreadPool(
+				imageFeatureExtractor.maxSize() + textFeatureExtractor.maxSize(), new ThreadFactoryBuilder()
+						.setNameFormat("clip-inference-%d")
+						.setDaemon(true)
+						.build()));
 	}
 
 	@SneakyThrows
     public float[] extractTextFeatures(String input) {
-        return textFeatureExtractor.predict(input);
+		if (textBatcher == null) return textFeatureExtractor.predict(input);
+		try {
+			return textBatcher.submit(input).join();
+		} catch (CompletionException e) {
+			throw e.getCause();
+		}
     }
 
+	@SneakyThrows
+	public List<float[]> batchExtractTextFeatures(List<String> inputs) {
+		return textFeatureExtractor.batchPredict(inputs);
+	}
+
 	@SneakyThrows
     public float[] extractImageFeatures(Image input) {
         return imageFeatureExtractor.predict(input);
@@ -51,9 +95,52 @@ public class CLIPModel implements AutoCloseable {
 		return imageFeatureExtractor.batchPredict(inputs);
 	}
 
+	/** Like {@link #extractTextFeatures} without blocking the caller. */
+	public CompletableFuture<float[]> extractTextFeaturesAsync(String input) {
+		if (textBatcher != null) return textBatcher.submit(input);
+		return supplyAsync(() -> textFeatureExtractor.predict(input));
+	}
+
+	public CompletableFuture<List<float[]>> batchExtractTextFeaturesAsync(List<String> inputs) {
+		return supplyAsync(() -> textFeatureExtractor.batchPredict(inputs));
+	}
+
+	public CompletableFuture<float[]> extractImageFeaturesAsync(Image input) {
+		return supplyAsync(() -> imageFeatureExtractor.predict(input));
+	}
+
+	public CompletableFuture<List<float[]>> batchExtractImageFeaturesAsync(List<Image> inputs) {
+		return supplyAsync(() -> imageFeatureExtractor.batchPredict(inputs));
+	}
+
+	private <T> CompletableFuture<T> supplyAsync(Inference<T> inference) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return inference.run();
+			} catch (TranslateException e) {
+				throw new CompletionException(e);
+			}
+		}, inferenceExecutor);
+	}
+
+	public PredictorPool<Image, float[]> imagePredictorPool() {
+		return imageFeatureExtractor;
+	}
+
+	public PredictorPool<String, float[]> textPredictorPool() {
+		return textFeatureExtractor;
+	}
+
 	@Override
 	public void close() {
+		if (textBatcher != null) textBatcher.close();
+		inferenceExecutor.shutdownNow();
 		imageFeatureExtractor.close();
 		textFeatureExtractor.close();
 	}
+
+	@FunctionalInterface
+	private interface Inference<T> {
+		T run() throws TranslateException;
+	}
 }
@@ -0,0 +1,71 @@
+package ai.search.engine.core.clip;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDArrays;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.index.NDIndex;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+
+/**
+ * Stacks the CLIP translator inputs of a batch into single {@code [B, ...]} tensors.
+ * Token sequences of different lengths are right padded with zeros (masked out by the
+ * attention mask) and the {@code module_method:} placeholder is passed through once
+ * instead of being stacked. Outputs are split back per input like {@link Batchifier#STACK}.
+ */
+public class ClipBatchifier implements Batchifier {
+
+	public static final ClipBatchifier INSTANCE = new ClipBatchifier();
+	private static final String MODULE_METHOD_PREFIX = "module_method:";
+
+	private ClipBatchifier() {
+	}
+
+	@Override
+	public NDList batchify(NDList[] inputs) {
+		var first = inputs[0];
+		var batch = new NDList(first.size());
+		for (int column = 0; column < first.size(); column++) {
+			var head = first.get(column);
+			if (isPlaceholder(head)) {
+				batch.add(head);
+				continue;
+			}
+
+			var maxLength = 0L;
+			for (var input : inputs) {
+				maxLength = Math.max(maxLength, input.get(column).getShape().get(0));
+			}
+			var arrays = new NDList(inputs.length);
+			for (var input : inputs) {
+				arrays.add(padTo(input.get(column), maxLength));
+			}
+			var stacked = NDArrays.stack(arrays);
+			stacked.setName(head.getName());
+			batch.add(stacked);
+		}
+		return batch;
+	}
+
+	@Override
+	public NDList[] unbatchify(NDList inputs) {
+		return STACK.unbatchify(inputs);
+	}
+
+	@Override
+	public NDList[] split(NDList list, int numOfSlices, boolean evenUp) {
+		return STACK.split(list, numOfSlices, evenUp);
+	}
+
+	private static boolean isPlaceholder(NDArray array) {
+		return array.getName() != null && array.getName().startsWith(MODULE_METHOD_PREFIX);
+	}
+
+	private static NDArray padTo(NDArray array, long length) {
+		var shape = array.getShape();
+		if (shape.dimension() != 1 || shape.get(0) == length) return array;
+		var padded = array.getManager().zeros(new Shape(length), array.getDataType());
+		padded.set(new NDIndex("0:{}", shape.get(0)), array);
+		return padded;
+	}
+}
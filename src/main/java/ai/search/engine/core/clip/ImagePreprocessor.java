@@ -0,0 +1,211 @@
+package ai.search.engine.core.clip;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.search.engine.core.vector.kernel.Resample;
+import ai.search.engine.core.vector.kernel.VectorKernels;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.awt.image.BufferedImage;
+import java.nio.FloatBuffer;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Fused CLIP image preprocessing: bicubic resize of the short side to {@code size}, center
+ * crop, scaling to {@code [0, 1]} with an optional per-channel normalization, and HWC to CHW
+ * layout, straight from the raw pixels into a single float buffer.
+ * <p>
+ * The same as {@code NDImageUtils} resize, centerCrop then toTensor but without their native
+ * intermediates: the resize is separable, so only the source pixels under the crop are read,
+ * resampled row by row into planar channels, then column by column into the output, which
+ * also applies the normalization. Both passes run on {@link VectorKernels#resample()}.
+ * Work buffers are pooled and reused across images.
+ */
+@ThreadSafe
+public class ImagePreprocessor {
+
+	private static final int CHANNELS = 3;
+	/** Same cubic convolution coefficient as PyTorch and OpenCV. */
+	private static final float CUBIC_A = -0.75f;
+
+	private final int size;
+	private final float[] scales = new float[CHANNELS];
+	private final float[] biases = new float[CHANNELS];
+	private final Resample resample = VectorKernels.resample();
+	private final Queue<Workspace> workspaces = new ConcurrentLinkedQueue<>();
+
+	/** Scales channels to {@code [0, 1]} like {@code NDImageUtils.toTensor}. */
+	public ImagePreprocessor(int size) {
+		this(size, new float[]{0f, 0f, 0f}, new float[]{1f, 1f, 1f});
+	}
+
+	/** Also normalizes the {@code [0, 1]} channels to {@code (value - mean) / std}. */
+	public ImagePreprocessor(int size, float[] mean, float[] std) {
+		this.size = size;
+		for (int channel = 0; channel < CHANNELS; channel++) {
+			scales[channel] = 1f / (255f * std[channel]);
+			biases[channel] = -mean[channel] / std[channel];
+		}
+	}
+
+	/** The {@code [3, size, size]} tensor of {@code image}. */
+	public NDArray toTensor(NDManager manager, BufferedImage image) {
+		var workspace = Objects.requireNonNullElseGet(workspaces.poll(), Workspace::new);
+		try {
+			var out = workspace.output(CHANNELS * size * size);
+			preprocess(image, out, workspace);
+			return manager.create(FloatBuffer.wrap(out, 0, CHANNELS * size * size), new Shape(CHANNELS, size, size));
+		} finally {
+			workspaces.offer(workspace);
+		}
+	}
+
+	/** Writes the {@code [3, size, size]} tensor of {@code image} to {@code out}. */
+	public void preprocess(BufferedImage image, float[] out) {
+		var workspace = Objects.requireNonNullElseGet(workspaces.poll(), Workspace::new);
+		try {
+			preprocess(image, out, workspace);
+		} finally {
+			workspaces.offer(workspace);
+		}
+	}
+
+	private void preprocess(BufferedImage image, float[] out, Workspace workspace) {
+		var width = image.getWidth();
+		var height = image.getHeight();
+		var percent = (float) size / Math.min(width, height);
+		var resizedWidth = Math.round(width * percent);
+		var resizedHeight = Math.round(height * percent);
+		// Same crop origin as NDImageUtils.centerCrop
+		var columns = workspace.columns.fit(width, resizedWidth, (resizedWidth - size) / 2, size);
+		var rows = workspace.rows.fit(height, resizedHeight, (resizedHeight - size) / 2, size);
+
+		var pixels = workspace.pixels(image, columns.first, rows.first, columns.count(), rows.count());
+		var planeStride = rows.count() * size;
+		var resampled = workspace.resampled(CHANNELS * planeStride);
+		for (int row = 0; row < rows.count(); row++) {
+			resample.horizontal(pixels, row * columns.count(), columns.taps, columns.weights, size,
+					resampled, row * size, planeStride);
+		}
+
+		var offsets = workspace.offsets;
+		var weights = workspace.weights;
+		for (int channel = 0; channel < CHANNELS; channel++) {
+			for (int y = 0; y < size; y++) {
+				for (int k = 0; k < Resample.TAPS; k++) {
+					offsets[k] = channel * planeStride + rows.taps[k * size + y] * size;
+					weights[k] = rows.weights[k * size + y];
+				}
+				resample.vertical(resampled, offsets, weights, scales[channel], biases[channel],
+						out, (channel * size + y) * size, size);
+			}
+		}
+	}
+
+	/**
+	 * Bicubic taps of the {@code size} outputs of one axis, from {@code crop} on in a resize of
+	 * {@code sourceSize} to {@code resizedSize}. Taps are relative to {@link #first}, the first
+	 * source index read.
+	 */
+	private static final class Axis {
+
+		private int[] taps = new int[0];
+		private float[] weights = new float[0];
+		private int first;
+		private int last;
+
+		Axis fit(int sourceSize, int resizedSize, int crop, int size) {
+			if (taps.length < Resample.TAPS * size) {
+				taps = new int[Resample.TAPS * size];
+				weights = new float[Resample.TAPS * size];
+			}
+			var scale = (float) sourceSize / resizedSize;
+			first = Integer.MAX_VALUE;
+			last = Integer.MIN_VALUE;
+			for (int i = 0; i < size; i++) {
+				// Align pixel centers like align_corners=false
+				var source = (i + crop + 0.5f) * scale - 0.5f;
+				var floor = (int) Math.floor(source);
+				var t = source - floor;
+				weights[i] = cubicOuter(t + 1f);
+				weights[size + i] = cubicInner(t);
+				weights[2 * size + i] = cubicInner(1f - t);
+				weights[3 * size + i] = 1f - weights[i] - weights[size + i] - weights[2 * size + i];
+				for (int k = 0; k < Resample.TAPS; k++) {
+					var tap = Math.clamp(floor - 1 + k, 0, sourceSize - 1);
+					taps[k * size + i] = tap;
+					first = Math.min(first, tap);
+					last = Math.max(last, tap);
+				}
+			}
+			for (int i = 0; i < Resample.TAPS * size; i++) {
+				taps[i] -= first;
+			}
+			return this;
+		}
+
+		int count() {
+			return last - first + 1;
+		}
+
+		/** Weight of a tap at distance {@code x} in {@code [0, 1]}. */
+		private static float cubicInner(float x) {
+			return ((CUBIC_A + 2f) * x - (CUBIC_A + 3f)) * x * x + 1f;
+		}
+
+		/** Weight of a tap at distance {@code x} in {@code [1, 2]}. */
+		private static float cubicOuter(float x) {
+			return ((CUBIC_A * x - 5f * CUBIC_A) * x + 8f * CUBIC_A) * x - 4f * CUBIC_A;
+		}
+	}
+
+	/** Buffers of one preprocessing at a time, grown to the largest image seen. */
+	private static final class Workspace {
+
+		private final Axis columns = new Axis();
+		private final Axis rows = new Axis();
+		private final int[] offsets = new int[Resample.TAPS];
+		private final float[] weights = new float[Resample.TAPS];
+		private int[] pixels = new int[0];
+		private byte[] bytes = new byte[0];
+		private float[] resampled = new float[0];
+		private float[] output = new float[0];
+
+		/**
+		 * Packed {@code 0xRRGGBB} pixels of the region, rows after rows. Common RGB raster layouts
+		 * are copied as is, others go through the color model like {@code Image.toNDArray}.
+		 */
+		int[] pixels(BufferedImage image, int x, int y, int width, int height) {
+			var count = width * height;
+			if (pixels.length < count) pixels = new int[count];
+			var raster = image.getRaster();
+			switch (image.getType()) {
+				case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB ->
+						raster.getDataElements(x, y, width, height, pixels);
+				case BufferedImage.TYPE_3BYTE_BGR -> {
+					// Elements come in band order, that is RGB
+					if (bytes.length < CHANNELS * count) bytes = new byte[CHANNELS * count];
+					raster.getDataElements(x, y, width, height, bytes);
+					for (int i = 0; i < count; i++) {
+						pixels[i] = (bytes[3 * i] & 0xFF) << 16 | (bytes[3 * i + 1] & 0xFF) << 8 | bytes[3 * i + 2] & 0xFF;
+					}
+				}
+				default -> image.getRGB(x, y, width, height, pixels, 0, width);
+			}
+			return pixels;
+		}
+
+		float[] resampled(int length) {
+			if (resampled.length < length) resampled = new float[length];
+			return resampled;
+		}
+
+		float[] output(int length) {
+			if (output.length < length) output = new float[length];
+			return output;
+		}
+	}
+}
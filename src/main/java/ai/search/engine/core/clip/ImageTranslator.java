@@ -14,11 +14,28 @@ package ai.search.engine.core.clip;
 
 import ai.djl.modality.cv.Image;
 import ai.djl.modality.cv.util.NDImageUtils;
+import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
-import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
 
-public class ImageTranslator implements NoBatchifyTranslator<Image, float[]> {
+import java.awt.image.BufferedImage;
+
+public class ImageTranslator implements Translator<Image, float[]> {
+
+    // The model has this input size
+    private static final int SIZE = 224;
+
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(SIZE);
+
+    /** {@inheritDoc} */
+    @Override
+    public Batchifier getBatchifier() {
+        // Stacks the [C, H, W] inputs into a single [B, C, H, W] forward pass
+        return ClipBatchifier.INSTANCE;
+    }
 
     /** {@inheritDoc} */
     @Override
@@ -30,21 +47,31 @@ public class ImageTranslator implements NoBatchifyTranslator<Image, float[]> {
     /** {@inheritDoc} */
     @Override
     public NDList processInput(TranslatorContext ctx, Image input) {
-        var array = input.toNDArray(ctx.getNDManager(), Image.Flag.COLOR);
+        // Resize, crop and change to Channels, Height, Width in one pass over the pixels
+        var array = input.getWrappedImage() instanceof BufferedImage image
+                ? preprocessor.toTensor(ctx.getNDManager(), image)
+                : toTensor(ctx.getNDManager(), input);
+        var placeholder = ctx.getNDManager().create("");
+		// Placeholder to call method get_image_features:
+		// https://huggingface.co/docs/transformers/model_doc/clip#transformers.TFCLIPModel.get_image_features
+        placeholder.setName("module_method:get_image_features");
+        return new NDList(array, placeholder);
+    }
+
+    /**
+     * Same preprocessing with NDArray operations, for images not backed by a {@link BufferedImage}.
+     */
+    private static NDArray toTensor(NDManager manager, Image input) {
+        var array = input.toNDArray(manager, Image.Flag.COLOR);
 
 		// Resize image to 224x224 (the model has this input size)
-        float percent = 224f / Math.min(input.getWidth(), input.getHeight());
+        float percent = (float) SIZE / Math.min(input.getWidth(), input.getHeight());
         int resizedWidth = Math.round(input.getWidth() * percent);
         int resizedHeight = Math.round(input.getHeight() * percent);
 
         array = NDImageUtils.resize(array, resizedWidth, resizedHeight, Image.Interpolation.BICUBIC);
-        array = NDImageUtils.centerCrop(array, 224, 224);
+        array = NDImageUtils.centerCrop(array, SIZE, SIZE);
 		// Change from Height, Width, Channels to Channels, Height, Width
-        array = NDImageUtils.toTensor(array);
-        var placeholder = ctx.getNDManager().create("");
-		// Placeholder to call method get_image_features:
-		// https://huggingface.co/docs/transformers/model_doc/clip#transformers.TFCLIPModel.get_image_features
-        placeholder.setName("module_method:get_image_features");
-        return new NDList(array.expandDims(0), placeholder);
+        return NDImageUtils.toTensor(array);
     }
 }
@@ -0,0 +1,177 @@
+package ai.search.engine.core.clip;
+
+import io.opentelemetry.context.Context;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Groups inputs submitted concurrently into a single batch call.
+ * The first pending input opens a batch, which is closed when it holds {@code maxBatchSize}
+ * inputs or {@code maxWait} has elapsed, whichever comes first. Every caller gets back
+ * the output at its own position of the batch result.
+ * <p>
+ * The batch call runs in the tracing context of its first input, and every caller is completed
+ * in its own context, so each trace keeps its continuation.
+ * <p>
+ * Closing stops accepting inputs, runs the ones already submitted without waiting for their
+ * batches to fill, and waits for the running batches. Every submitted input is completed:
+ * with its output, the failure of its batch, or a {@link CancellationException} if the
+ * batches do not finish within {@link #CLOSE_TIMEOUT}.
+ */
+@JBossLog
+@ThreadSafe
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+	private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+	private final String name;
+	private final BatchFunction<I, O> batchFunction;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final BlockingQueue<Pending<I, O>> queue = new LinkedBlockingQueue<>();
+	private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Set<List<Pending<I, O>>> running = ConcurrentHashMap.newKeySet();
+	private final Thread dispatcher;
+	private volatile boolean closed;
+
+	public MicroBatcher(String name,
+						BatchFunction<I, O> batchFunction,
+						int maxBatchSize,
+						Duration maxWait) {
+		if (maxBatchSize < 1) throw new IllegalArgumentException("Batch size must be positive: " + maxBatchSize);
+		this.name = requireNonNull(name);
+		this.batchFunction = requireNonNull(batchFunction);
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = maxWait.toNanos();
+		this.dispatcher = Thread.ofPlatform()
+				.name(name + "-batcher")
+				.daemon()
+				.start(this::dispatch);
+	}
+
+	public CompletableFuture<O> submit(I input) {
+		if (closed) return CompletableFuture.failedFuture(
+				new IllegalStateException("Micro batcher " + name + " is closed"));
+		var pending = new Pending<I, O>(input, new CompletableFuture<>(), Context.current());
+		queue.add(pending);
+		// Closed meanwhile: either the input was taken and will complete, or it is taken back here
+		if (closed && queue.remove(pending)) {
+			pending.result().completeExceptionally(new IllegalStateException("Micro batcher " + name + " is closed"));
+		}
+		return pending.result();
+	}
+
+	private void dispatch() {
+		try {
+			while (true) {
+				execute(nextBatch());
+			}
+		} catch (InterruptedException e) {
+			// Closed: what is still queued runs right away, without waiting for batches to fill
+			var batch = new ArrayList<Pending<I, O>>(maxBatchSize);
+			while (queue.drainTo(batch, maxBatchSize) > 0) {
+				execute(List.copyOf(batch));
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Waits for a first input then collects a batch. Interrupted once the first input is taken,
+	 * it returns what it collected, leaving the interrupt to fail the next call.
+	 */
+	private List<Pending<I, O>> nextBatch() throws InterruptedException {
+		var batch = new ArrayList<Pending<I, O>>(maxBatchSize);
+		batch.add(queue.take());
+		var deadline = System.nanoTime() + maxWaitNanos;
+		try {
+			while (batch.size() < maxBatchSize) {
+				if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) continue;
+				var remaining = deadline - System.nanoTime();
+				if (remaining <= 0) break;
+				var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+				if (next == null) break;
+				batch.add(next);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return batch;
+	}
+
+	private void execute(List<Pending<I, O>> batch) {
+		running.add(batch);
+		batchExecutor.execute(() -> {
+			try {
+				run(batch);
+			} finally {
+				running.remove(batch);
+			}
+		});
+	}
+
+	private void run(List<Pending<I, O>> batch) {
+		try (var ignored = batch.getFirst().context().makeCurrent()) {
+			var outputs = batchFunction.apply(batch.stream().map(Pending::input).toList());
+			if (outputs.size() != batch.size()) {
+				throw new IllegalStateException("Expected %d outputs from %s batch but got %d"
+						.formatted(batch.size(), name, outputs.size()));
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				var pending = batch.get(i);
+				try (var inContext = pending.context().makeCurrent()) {
+					pending.result().complete(outputs.get(i));
+				}
+			}
+		} catch (Throwable th) {
+			LOG.error("Failed to run " + name + " batch of " + batch.size(), th);
+			batch.forEach(pending -> pending.result().completeExceptionally(th));
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		dispatcher.interrupt();
+		try {
+			dispatcher.join();
+			batchExecutor.shutdown();
+			if (!batchExecutor.awaitTermination(CLOSE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+				LOG.warn("Gave up waiting for the running %s batches after %s".formatted(name, CLOSE_TIMEOUT));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		batchExecutor.shutdownNow();
+		// Only left when the dispatcher or the batches could not finish
+		var cancelled = new CancellationException("Micro batcher " + name + " is closed");
+		running.forEach(batch -> batch.forEach(pending -> pending.result().completeExceptionally(cancelled)));
+		Pending<I, O> pending;
+		while ((pending = queue.poll()) != null) {
+			pending.result().completeExceptionally(cancelled);
+		}
+	}
+
+	@FunctionalInterface
+	public interface BatchFunction<I, O> {
+		List<O> apply(List<I> inputs) throws Exception;
+	}
+
+	private record Pending<I, O>(I input, CompletableFuture<O> result, Context context) {
+	}
+}
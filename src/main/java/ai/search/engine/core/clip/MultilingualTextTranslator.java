@@ -2,15 +2,25 @@ package ai.search.engine.core.clip;
 
 import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
 import ai.djl.ndarray.NDList;
-import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
 
-public class MultilingualTextTranslator implements NoBatchifyTranslator<String, float[]> {
+public class MultilingualTextTranslator implements Translator<String, float[]> {
 
 	private final HuggingFaceTokenizer tokenizer;
 
-	public MultilingualTextTranslator() {
-		tokenizer = HuggingFaceTokenizer.newInstance("canavar/clip-ViT-B-32-multilingual-v1-ONNX");
+	/**
+	 * @param tokenizer tokenizer of the multilingual model, such as
+	 *                  {@code canavar/clip-ViT-B-32-multilingual-v1-ONNX}
+	 */
+	public MultilingualTextTranslator(HuggingFaceTokenizer tokenizer) {
+		this.tokenizer = tokenizer;
+	}
+
+	@Override
+	public Batchifier getBatchifier() {
+		return ClipBatchifier.INSTANCE;
 	}
 
 	@Override
@@ -23,6 +33,6 @@ public class MultilingualTextTranslator implements NoBatchifyTranslator<String,
 		final var encoding = tokenizer.encode(input);
 		final var attention = ctx.getNDManager().create(encoding.getAttentionMask());
 		final var inputIds = ctx.getNDManager().create(encoding.getIds());
-		return new NDList(inputIds.expandDims(0), attention.expandDims(0));
+		return new NDList(inputIds, attention);
 	}
 }
@@ -0,0 +1,200 @@
+package ai.search.engine.core.clip;
+
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+import ai.search.engine.core.tracing.Spans;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bounded pool of {@link Predictor}s created from the same model.
+ * A DJL predictor is not thread safe, so every inference borrows an idle predictor,
+ * creating a new one while the pool is below its maximum size, or waits up to
+ * {@code borrowTimeout} for another caller to give one back.
+ * <p>
+ * The occupancy of the pool is exported as the {@code clip.predictor.size},
+ * {@code clip.predictor.active} and {@code clip.predictor.waiting} gauges, and the size of
+ * every batch call as the {@code clip.batch.size} distribution, all tagged with the pool name.
+ * Every call is traced as a {@code clip.predict} span with a {@code clip.predictor.wait} child
+ * covering the time spent waiting for a predictor.
+ */
+@JBossLog
+@ThreadSafe
+public class PredictorPool<I, O> implements AutoCloseable {
+
+	private final String name;
+	private final Supplier<Predictor<I, O>> predictorFactory;
+	private final int maxSize;
+	private final Duration borrowTimeout;
+	private final Semaphore permits;
+	private final BlockingQueue<Predictor<I, O>> idle;
+	private final List<Predictor<I, O>> created = new CopyOnWriteArrayList<>();
+	private final DistributionSummary batchSizes;
+	private final Tracer tracer;
+	private volatile boolean closed;
+
+	public PredictorPool(String name,
+						 Supplier<Predictor<I, O>> predictorFactory,
+						 int maxSize,
+						 Duration borrowTimeout,
+						 MeterRegistry registry,
+						 Tracer tracer) {
+		if (maxSize < 1) throw new IllegalArgumentException("Predictor pool size must be positive: " + maxSize);
+		this.name = requireNonNull(name);
+		this.predictorFactory = requireNonNull(predictorFactory);
+		this.maxSize = maxSize;
+		this.borrowTimeout = requireNonNull(borrowTimeout);
+		this.permits = new Semaphore(maxSize, true);
+		this.idle = new LinkedBlockingQueue<>(maxSize);
+		this.tracer = requireNonNull(tracer);
+		this.batchSizes = DistributionSummary.builder("clip.batch.size")
+				.description("Inputs per batch predictor call")
+				.tag("model", name)
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		Gauge.builder("clip.predictor.size", this, PredictorPool::size)
+				.description("Predictors instantiated")
+				.tag("model", name)
+				.register(registry);
+		Gauge.builder("clip.predictor.active", this, PredictorPool::active)
+				.description("Predictors lent to a caller")
+				.tag("model", name)
+				.register(registry);
+		Gauge.builder("clip.predictor.waiting", this, PredictorPool::waiting)
+				.description("Callers waiting for a predictor")
+				.tag("model", name)
+				.register(registry);
+	}
+
+	public <R> R execute(PredictorFunction<I, O, R> function) throws TranslateException {
+		return execute(1, function);
+	}
+
+	public O predict(I input) throws TranslateException {
+		return execute(1, predictor -> predictor.predict(input));
+	}
+
+	public List<O> batchPredict(List<I> inputs) throws TranslateException {
+		batchSizes.record(inputs.size());
+		return execute(inputs.size(), predictor -> predictor.batchPredict(inputs));
+	}
+
+	private <R> R execute(int inputs, PredictorFunction<I, O, R> function) throws TranslateException {
+		var span = tracer.spanBuilder("clip.predict")
+				.setAttribute("model", name)
+				.setAttribute("batch.size", inputs)
+				.startSpan();
+		try (var ignored = span.makeCurrent()) {
+			var predictor = borrowTraced();
+			try {
+				var result = function.apply(predictor);
+				span.end();
+				return result;
+			} finally {
+				release(predictor);
+			}
+		} catch (TranslateException | RuntimeException e) {
+			Spans.end(span, e);
+			throw e;
+		}
+	}
+
+	private Predictor<I, O> borrowTraced() throws TranslateException {
+		var span = tracer.spanBuilder("clip.predictor.wait").startSpan();
+		try {
+			var predictor = borrow();
+			span.end();
+			return predictor;
+		} catch (TranslateException | RuntimeException e) {
+			Spans.end(span, e);
+			throw e;
+		}
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public int maxSize() {
+		return maxSize;
+	}
+
+	/** Predictors instantiated so far, never more than {@link #maxSize()}. */
+	public int size() {
+		return created.size();
+	}
+
+	/** Predictors currently lent to a caller. */
+	public int active() {
+		return maxSize - permits.availablePermits();
+	}
+
+	/** Callers blocked waiting for a predictor. */
+	public int waiting() {
+		return permits.getQueueLength();
+	}
+
+	private Predictor<I, O> borrow() throws TranslateException {
+		if (closed) throw new IllegalStateException("Predictor pool " + name + " is closed");
+		try {
+			if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				throw new TranslateException(new TimeoutException(
+						"Timed out after %s waiting for a %s predictor".formatted(borrowTimeout, name)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TranslateException(e);
+		}
+
+		var predictor = idle.poll();
+		if (predictor != null) return predictor;
+		try {
+			predictor = predictorFactory.get();
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+		created.add(predictor);
+		LOG.debug("Created %s predictor %d of %d".formatted(name, created.size(), maxSize));
+		return predictor;
+	}
+
+	private void release(Predictor<I, O> predictor) {
+		if (closed || !idle.offer(predictor)) {
+			predictor.close();
+			created.remove(predictor);
+		}
+		permits.release();
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		Predictor<I, O> predictor;
+		while ((predictor = idle.poll()) != null) {
+			predictor.close();
+			created.remove(predictor);
+		}
+	}
+
+	@FunctionalInterface
+	public interface PredictorFunction<I, O, R> {
+		R apply(Predictor<I, O> predictor) throws TranslateException;
+	}
+}
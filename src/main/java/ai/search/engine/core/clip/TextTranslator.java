@@ -2,15 +2,26 @@ package ai.search.engine.core.clip;
 
 import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
 import ai.djl.ndarray.NDList;
-import ai.djl.translate.NoBatchifyTranslator;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
 import ai.djl.translate.TranslatorContext;
 
-public class TextTranslator implements NoBatchifyTranslator<String, float[]> {
+public class TextTranslator implements Translator<String, float[]> {
 
     private final HuggingFaceTokenizer tokenizer;
 
-    public TextTranslator() {
-        tokenizer = HuggingFaceTokenizer.newInstance("openai/clip-vit-base-patch32");
+    /**
+     * @param tokenizer tokenizer of the CLIP model, such as {@code openai/clip-vit-base-patch32}
+     */
+    public TextTranslator(HuggingFaceTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Batchifier getBatchifier() {
+        // Pads the token ids to the longest query and stacks them into [B, L]
+        return ClipBatchifier.INSTANCE;
     }
 
     /** {@inheritDoc} */
@@ -30,6 +41,6 @@ public class TextTranslator implements NoBatchifyTranslator<String, float[]> {
 		// https://huggingface.co/docs/transformers/model_doc/clip#transformers.TFCLIPModel.get_text_features
         placeholder.setName("module_method:get_text_features");
 		// (input_ids, attention_mask)
-        return new NDList(inputIds.expandDims(0), attention.expandDims(0), placeholder);
+        return new NDList(inputIds, attention, placeholder);
     }
 }
@@ -1,11 +1,18 @@
 package ai.search.engine.core.config;
 
+import ai.search.engine.core.vector.VectorPrecision;
+import ai.search.engine.core.vector.VectorStoreType;
+import ai.search.engine.core.vector.quant.QuantizationType;
+import io.milvus.param.IndexType;
+import io.quarkus.runtime.configuration.MemorySize;
 import jakarta.enterprise.context.ApplicationScoped;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import java.time.Duration;
+
 @Setter
 @Getter
 @ApplicationScoped
@@ -21,6 +28,75 @@ public class AppProperties {
 	@ConfigProperty(name = "file.imports.batch.size", defaultValue = "128")
 	private int fileImportsBatchSize;
 
+	@ConfigProperty(name = "file.imports.batch.bytes", defaultValue = "256M")
+	private MemorySize fileImportsBatchBytes;
+
+	@ConfigProperty(name = "ingestion.journal.path", defaultValue = "data/ingestion.journal")
+	private String ingestionJournalPath;
+
+	@ConfigProperty(name = "ingestion.journal.compaction.ratio", defaultValue = "4")
+	private int ingestionJournalCompactionRatio;
+
+	@ConfigProperty(name = "image.decode.min.side", defaultValue = "448")
+	private int imageDecodeMinSide;
+
+	@ConfigProperty(name = "image.decode.max.pixels", defaultValue = "250000000")
+	private long imageDecodeMaxPixels;
+
+	@ConfigProperty(name = "ingestion.dedup.enable", defaultValue = "true")
+	private boolean ingestionDedupEnable;
+
+	@ConfigProperty(name = "ingestion.dedup.index.path", defaultValue = "data/content-hashes")
+	private String ingestionDedupIndexPath;
+
+	@ConfigProperty(name = "ingestion.fetch.concurrency", defaultValue = "16")
+	private int ingestionFetchConcurrency;
+
+	@ConfigProperty(name = "ingestion.decode.concurrency", defaultValue = "0")
+	private int ingestionDecodeConcurrency;
+
+	@ConfigProperty(name = "ingestion.embed.concurrency", defaultValue = "0")
+	private int ingestionEmbedConcurrency;
+
+	@ConfigProperty(name = "ingestion.insert.concurrency", defaultValue = "1")
+	private int ingestionInsertConcurrency;
+
+	@ConfigProperty(name = "ingestion.move.concurrency", defaultValue = "16")
+	private int ingestionMoveConcurrency;
+
+	@ConfigProperty(name = "vector.store.type", defaultValue = "milvus")
+	private VectorStoreType vectorStoreType;
+
+	@ConfigProperty(name = "vector.store.hnsw.dir", defaultValue = "data/hnsw")
+	private String vectorStoreHnswDir;
+
+	@ConfigProperty(name = "vector.store.hnsw.m", defaultValue = "16")
+	private int vectorStoreHnswM;
+
+	@ConfigProperty(name = "vector.store.hnsw.ef.construction", defaultValue = "200")
+	private int vectorStoreHnswEfConstruction;
+
+	@ConfigProperty(name = "vector.store.hnsw.ef.search", defaultValue = "64")
+	private int vectorStoreHnswEfSearch;
+
+	@ConfigProperty(name = "vector.store.mapped.dir", defaultValue = "data/mapped")
+	private String vectorStoreMappedDir;
+
+	@ConfigProperty(name = "vector.store.mapped.parallelism", defaultValue = "0")
+	private int vectorStoreMappedParallelism;
+
+	@ConfigProperty(name = "vector.store.mapped.quantization", defaultValue = "none")
+	private QuantizationType vectorStoreMappedQuantization;
+
+	@ConfigProperty(name = "vector.store.mapped.quantization.train.size", defaultValue = "10000")
+	private int vectorStoreMappedQuantizationTrainSize;
+
+	@ConfigProperty(name = "vector.store.mapped.quantization.pq.subspaces", defaultValue = "128")
+	private int vectorStoreMappedQuantizationPqSubspaces;
+
+	@ConfigProperty(name = "vector.store.mapped.quantization.rerank", defaultValue = "4")
+	private int vectorStoreMappedQuantizationRerank;
+
 	@ConfigProperty(name = "vector.db.url")
 	private String dbUrl;
 
@@ -30,6 +106,18 @@ public class AppProperties {
 	@ConfigProperty(name = "vector.db.name")
 	private String dbName;
 
+	@ConfigProperty(name = "vector.db.precision", defaultValue = "float32")
+	private VectorPrecision dbPrecision;
+
+	@ConfigProperty(name = "vector.db.index.type", defaultValue = "IVF_FLAT")
+	private IndexType dbIndexType;
+
+	@ConfigProperty(name = "vector.db.index.nlist", defaultValue = "1024")
+	private int dbIndexNlist;
+
+	@ConfigProperty(name = "vector.db.index.pq.m", defaultValue = "64")
+	private int dbIndexPqM;
+
 	@ConfigProperty(name = "clip.model.url")
 	private String clipModelUrl;
 
@@ -38,4 +126,65 @@ public class AppProperties {
 
 	@ConfigProperty(name = "clip.model.multilingual.url")
 	private String clipModelMultilingualUrl;
+
+	@ConfigProperty(name = "clip.model.dir", defaultValue = "models")
+	private String clipModelDir;
+
+	@ConfigProperty(name = "clip.model.warmup.iterations", defaultValue = "3")
+	private int clipModelWarmupIterations;
+
+	@ConfigProperty(name = "clip.model.warmup.batch.size", defaultValue = "8")
+	private int clipModelWarmupBatchSize;
+
+	@ConfigProperty(name = "clip.model.predictor.pool.size", defaultValue = "0")
+	private int clipModelPredictorPoolSize;
+
+	@ConfigProperty(name = "clip.model.predictor.borrow.timeout", defaultValue = "30s")
+	private Duration clipModelPredictorBorrowTimeout;
+
+	@ConfigProperty(name = "clip.model.text.batch.size", defaultValue = "16")
+	private int clipModelTextBatchSize;
+
+	@ConfigProperty(name = "clip.model.text.batch.wait", defaultValue = "5ms")
+	private Duration clipModelTextBatchWait;
+
+	@ConfigProperty(name = "search.top.k", defaultValue = "10")
+	private int searchTopK;
+
+	@ConfigProperty(name = "search.candidates", defaultValue = "0")
+	private int searchCandidates;
+
+	@ConfigProperty(name = "search.nprobe", defaultValue = "16")
+	private int searchNprobe;
+
+	@ConfigProperty(name = "search.batch.max.queries", defaultValue = "64")
+	private int searchBatchMaxQueries;
+
+	@ConfigProperty(name = "search.cache.text.size", defaultValue = "10000")
+	private long searchCacheTextSize;
+
+	@ConfigProperty(name = "search.cache.text.ttl", defaultValue = "1h")
+	private Duration searchCacheTextTtl;
+
+	@ConfigProperty(name = "search.cache.text.offheap", defaultValue = "false")
+	private boolean searchCacheTextOffHeap;
+
+	@ConfigProperty(name = "search.cache.image.size", defaultValue = "10000")
+	private long searchCacheImageSize;
+
+	@ConfigProperty(name = "search.cache.image.ttl", defaultValue = "1h")
+	private Duration searchCacheImageTtl;
+
+	@ConfigProperty(name = "search.cache.image.offheap", defaultValue = "false")
+	private boolean searchCacheImageOffHeap;
+
+	@ConfigProperty(name = "search.cache.result.size", defaultValue = "10000")
+	private long searchCacheResultSize;
+
+	@ConfigProperty(name = "search.cache.result.ttl", defaultValue = "10m")
+	private Duration searchCacheResultTtl;
+
+	public String textModelId() {
+		return clipModelMultilingualEnable ? clipModelMultilingualUrl : clipModelUrl;
+	}
 }
@@ -0,0 +1,52 @@
+package ai.search.engine.core.config;
+
+import ai.search.engine.core.cache.EmbeddingCache;
+import ai.search.engine.core.cache.SearchResultCache;
+import ai.search.engine.core.cache.TextEmbeddingKey;
+import com.google.common.hash.HashCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.Dependent;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+
+@Dependent
+public class CacheConfig {
+
+	@Inject
+	private AppProperties properties;
+
+	@Inject
+	private MeterRegistry registry;
+
+	@Produces
+	@Singleton
+	public EmbeddingCache<TextEmbeddingKey> textEmbeddingCache() {
+		var cache = new EmbeddingCache<TextEmbeddingKey>(properties.searchCacheTextSize(),
+				properties.searchCacheTextTtl(),
+				properties.searchCacheTextOffHeap());
+		cache.monitor(registry, "search.text");
+		return cache;
+	}
+
+	@Produces
+	@Singleton
+	public EmbeddingCache<HashCode> imageEmbeddingCache() {
+		var cache = new EmbeddingCache<HashCode>(properties.searchCacheImageSize(),
+				properties.searchCacheImageTtl(),
+				properties.searchCacheImageOffHeap());
+		cache.monitor(registry, "search.image");
+		return cache;
+	}
+
+	@Produces
+	@Singleton
+	public SearchResultCache<List<String>> searchResultCache() {
+		var cache = new SearchResultCache<List<String>>(properties.searchCacheResultSize(),
+				properties.searchCacheResultTtl());
+		cache.monitor(registry, "search.result");
+		return cache;
+	}
+}
@@ -0,0 +1,44 @@
+package ai.search.engine.core.config;
+
+import ai.search.engine.core.scheduler.ContentHashIndex;
+import ai.search.engine.core.scheduler.IngestionJournal;
+import jakarta.enterprise.context.Dependent;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.jbosslog.JBossLog;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@JBossLog
+@Dependent
+public class IngestionConfig {
+
+	@Inject
+	private AppProperties properties;
+
+	@Produces
+	@Singleton
+	public IngestionJournal ingestionJournal() {
+		return new IngestionJournal(Path.of(properties.ingestionJournalPath()),
+				properties.ingestionJournalCompactionRatio());
+	}
+
+	@Produces
+	@Singleton
+	public ContentHashIndex contentHashIndex() {
+		return new ContentHashIndex(Path.of(properties.ingestionDedupIndexPath()));
+	}
+
+	public void disposeContentHashIndex(@Disposes ContentHashIndex contentHashIndex) throws IOException {
+		LOG.debug("Closing content hash index");
+		contentHashIndex.close();
+	}
+
+	public void disposeIngestionJournal(@Disposes IngestionJournal journal) throws IOException {
+		LOG.debug("Closing ingestion journal");
+		journal.close();
+	}
+}
@@ -1,82 +1,92 @@
 package ai.search.engine.core.config;
 
-import ai.djl.ndarray.NDList;
-import ai.djl.repository.zoo.Criteria;
+import ai.djl.engine.Engine;
 import ai.djl.repository.zoo.ZooModel;
-import ai.djl.translate.NoopTranslator;
+import ai.djl.translate.Translator;
 import ai.search.engine.core.clip.CLIPModel;
 import ai.search.engine.core.clip.ImageTranslator;
 import ai.search.engine.core.clip.MultilingualTextTranslator;
+import ai.search.engine.core.clip.PredictorPool;
 import ai.search.engine.core.clip.TextTranslator;
+import ai.search.engine.core.metrics.PredictorMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
 import jakarta.enterprise.context.Dependent;
 import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
 import jakarta.inject.Inject;
-import lombok.SneakyThrows;
+import jakarta.inject.Singleton;
 import lombok.extern.jbosslog.JBossLog;
 
 @JBossLog
 @Dependent
 public class ModelConfig {
 
-	@Inject
-	private AppProperties properties;
+	private static final int PREDICTORS_PER_GPU = 2;
 
-	@Produces
-	@SneakyThrows
-	public CLIPModel clipModel(ZooModel<NDList, NDList> clipModelZoo,
-							   ZooModel<String, float[]> multilingualClipModelZoo) {
-		if (properties.clipModelMultilingualEnable()) {
-			return new CLIPModel(
-					clipModelZoo.newPredictor(new ImageTranslator()),
-					multilingualClipModelZoo.newPredictor(new MultilingualTextTranslator())
-			);
-		}
+	private final AppProperties properties;
+	private final MeterRegistry registry;
+	private final Tracer tracer;
+	private final ModelLoader modelLoader;
 
-		return new CLIPModel(
-				clipModelZoo.newPredictor(new ImageTranslator()),
-				clipModelZoo.newPredictor(new TextTranslator())
-		);
+	@Inject
+	public ModelConfig(AppProperties properties, MeterRegistry registry, Tracer tracer, ModelLoader modelLoader) {
+		this.properties = properties;
+		this.registry = registry;
+		this.tracer = tracer;
+		this.modelLoader = modelLoader;
 	}
 
+	/**
+	 * A single model shared by every bean, its models are loaded concurrently by the
+	 * {@link ModelLoader} which owns them.
+	 */
 	@Produces
-	@SneakyThrows
-	public ZooModel<NDList, NDList> clipModelZoo() {
-		return Criteria.builder()
-				.setTypes(NDList.class, NDList.class)
-				.optModelUrls(properties.clipModelUrl())
-				.optTranslator(new NoopTranslator())
-				.optEngine("PyTorch")
-				.build()
-				.loadModel();
+	@Singleton
+	public CLIPModel clipModel() {
+		var clipModelZoo = modelLoader.clipModel();
+		var imagePool = predictorPool("image", clipModelZoo, new ImageTranslator());
+		var textPool = properties.clipModelMultilingualEnable()
+				? predictorPool("multilingual-text", modelLoader.multilingualClipModel(),
+						new MultilingualTextTranslator(modelLoader.multilingualTextTokenizer()))
+				: predictorPool("text", clipModelZoo, new TextTranslator(modelLoader.textTokenizer()));
+		return new CLIPModel(imagePool, textPool,
+				properties.clipModelTextBatchSize(), properties.clipModelTextBatchWait());
 	}
 
-	@Produces
-	@SneakyThrows
-	public ZooModel<String, float[]> multilingualCLIPModelZoo() {
-		if (!properties.clipModelMultilingualEnable()) return null;
-		return Criteria.builder()
-				.setTypes(String.class, float[].class)
-				.optModelUrls(properties.clipModelMultilingualUrl())
-				.optTranslator(new MultilingualTextTranslator())
-				.optEngine("OnnxRuntime") // use OnnxRuntime engine by default
-				.build()
-				.loadModel();
+	private <I, O, MI, MO> PredictorPool<I, O> predictorPool(String name,
+															ZooModel<MI, MO> model,
+															Translator<I, O> translator) {
+		var engine = model.getNDManager().getEngine();
+		var size = properties.clipModelPredictorPoolSize() > 0
+				? properties.clipModelPredictorPoolSize()
+				: defaultPoolSize(engine);
+		LOG.info("Using up to %d %s predictors on %s".formatted(size, name, engine.getEngineName()));
+		var metrics = new PredictorMetrics(registry, name);
+		return new PredictorPool<>(name, () -> {
+			var predictor = model.newPredictor(translator);
+			predictor.setMetrics(metrics);
+			return predictor;
+		}, size, properties.clipModelPredictorBorrowTimeout(), registry, tracer);
+	}
+
+	/**
+	 * One predictor per core on CPU. PyTorch predictors fan out to {@code ai.djl.pytorch.num_threads}
+	 * intra-op threads each, which the {@link ModelLoader} sets before the engine starts when it is
+	 * not configured, so the pool only gets as many predictors as the cores can run at once.
+	 * On GPU a couple of predictors per device is enough to keep it busy.
+	 */
+	private static int defaultPoolSize(Engine engine) {
+		if (engine.getGpuCount() > 0) return engine.getGpuCount() * PREDICTORS_PER_GPU;
+		var cores = Runtime.getRuntime().availableProcessors();
+		if ("PyTorch".equals(engine.getEngineName())) {
+			return Math.max(1, cores / Integer.getInteger("ai.djl.pytorch.num_threads", 1));
+		}
+		return cores;
 	}
 
 	public void disposeClipModel(@Disposes CLIPModel clipModel) {
 		LOG.debug("Closing clip model");
 		clipModel.close();
 	}
-
-	public void disposeClipModelZoo(@Disposes ZooModel<NDList, NDList> clipModelZoo) {
-		LOG.debug("Closing clip model zoo: " + clipModelZoo.getName());
-		clipModelZoo.close();
-	}
-
-	public void disposeMultilingualCLIPModelZoo(@Disposes ZooModel<String, float[]> multilingualCLIPModelZoo) {
-		if (!properties.clipModelMultilingualEnable()) return;
-		LOG.debug("Closing multilingual clip model zoo: " + multilingualCLIPModelZoo.getName());
-		multilingualCLIPModelZoo.close();
-	}
 }
@@ -0,0 +1,185 @@
+package ai.search.engine.core.config;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.ndarray.NDList;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.NoopTranslator;
+import ai.search.engine.core.clip.MultilingualTextTranslator;
+import ai.search.engine.core.metrics.StartupMetrics;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.SneakyThrows;
+import lombok.extern.jbosslog.JBossLog;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the CLIP models and their tokenizers as soon as the application starts, all at the same
+ * time: the PyTorch image tower and the OnnxRuntime multilingual text tower initialize their
+ * engines concurrently instead of one after the other, while the other beans start.
+ * <p>
+ * A model is loaded from the {@code clip} or {@code clip-multilingual} directory of
+ * {@code clip.model.dir} when it exists, along with the {@code tokenizer.json} next to it.
+ * Missing models are downloaded from their url and missing tokenizers from the Hugging Face hub.
+ * The load of every artifact is exported as {@code startup.model.load}.
+ * <p>
+ * PyTorch runs every forward pass on as many intra-op threads as there are cores, so concurrent
+ * predictors would oversubscribe the CPU. Unless {@code ai.djl.pytorch.num_threads} is set, the
+ * cores are split between the predictors of the pool before the engine starts.
+ */
+@JBossLog
+@Startup
+@Singleton
+public class ModelLoader implements AutoCloseable {
+
+	private static final String CLIP_DIR = "clip";
+	private static final String MULTILINGUAL_CLIP_DIR = "clip-multilingual";
+	private static final String CLIP_TOKENIZER = "openai/clip-vit-base-patch32";
+	private static final String MULTILINGUAL_CLIP_TOKENIZER = "canavar/clip-ViT-B-32-multilingual-v1-ONNX";
+	private static final String TOKENIZER_FILE = "tokenizer.json";
+	private static final String PYTORCH_THREADS = "ai.djl.pytorch.num_threads";
+	/** PyTorch predictors on CPU unless {@code clip.model.predictor.pool.size} is set. */
+	private static final int PYTORCH_CPU_PREDICTORS = 2;
+
+	private final Path modelDir;
+	private final StartupMetrics startupMetrics;
+	private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofPlatform()
+			.name("model-load-", 0)
+			.daemon()
+			.factory());
+	private final CompletableFuture<ZooModel<NDList, NDList>> clipModel;
+	private final CompletableFuture<HuggingFaceTokenizer> textTokenizer;
+	private final CompletableFuture<HuggingFaceTokenizer> multilingualTextTokenizer;
+	private final CompletableFuture<ZooModel<String, float[]>> multilingualClipModel;
+
+	@Inject
+	public ModelLoader(AppProperties properties, StartupMetrics startupMetrics) {
+		this.modelDir = Path.of(properties.clipModelDir());
+		this.startupMetrics = startupMetrics;
+		limitPyTorchThreads(properties.clipModelPredictorPoolSize());
+		this.clipModel = load(CLIP_DIR, () -> loadClipModel(properties.clipModelUrl()));
+		if (properties.clipModelMultilingualEnable()) {
+			this.textTokenizer = CompletableFuture.completedFuture(null);
+			this.multilingualTextTokenizer = load(MULTILINGUAL_CLIP_DIR + "/" + TOKENIZER_FILE,
+					() -> loadTokenizer(MULTILINGUAL_CLIP_DIR, MULTILINGUAL_CLIP_TOKENIZER));
+			// The translator of the model needs the tokenizer, so it loads once the tokenizer is there
+			this.multilingualClipModel = multilingualTextTokenizer.thenCompose(tokenizer -> load(MULTILINGUAL_CLIP_DIR,
+					() -> loadMultilingualClipModel(properties.clipModelMultilingualUrl(), tokenizer)));
+		} else {
+			this.textTokenizer = load(CLIP_DIR + "/" + TOKENIZER_FILE, () -> loadTokenizer(CLIP_DIR, CLIP_TOKENIZER));
+			this.multilingualTextTokenizer = CompletableFuture.completedFuture(null);
+			this.multilingualClipModel = CompletableFuture.completedFuture(null);
+		}
+	}
+
+	private static void limitPyTorchThreads(int poolSize) {
+		if (System.getProperty(PYTORCH_THREADS) != null) return;
+		var predictors = poolSize > 0 ? poolSize : PYTORCH_CPU_PREDICTORS;
+		var threads = Math.max(1, Runtime.getRuntime().availableProcessors() / predictors);
+		System.setProperty(PYTORCH_THREADS, String.valueOf(threads));
+		LOG.info("Running %d PyTorch intra-op threads per predictor for %d predictors".formatted(threads, predictors));
+	}
+
+	/** Waits for the CLIP model, used for images and for texts without the multilingual model. */
+	public ZooModel<NDList, NDList> clipModel() {
+		return join(clipModel);
+	}
+
+	/** Tokenizer of the CLIP model, null with the multilingual model enabled. */
+	public HuggingFaceTokenizer textTokenizer() {
+		return join(textTokenizer);
+	}
+
+	/** Null unless the multilingual model is enabled. */
+	public ZooModel<String, float[]> multilingualClipModel() {
+		return join(multilingualClipModel);
+	}
+
+	/** Null unless the multilingual model is enabled. */
+	public HuggingFaceTokenizer multilingualTextTokenizer() {
+		return join(multilingualTextTokenizer);
+	}
+
+	private <T> CompletableFuture<T> load(String artifact, Callable<T> loader) {
+		return CompletableFuture.supplyAsync(() -> {
+			var start = System.nanoTime();
+			try {
+				var loaded = loader.call();
+				var elapsed = System.nanoTime() - start;
+				startupMetrics.modelLoaded(artifact, elapsed);
+				LOG.info("Loaded %s in %d ms".formatted(artifact, TimeUnit.NANOSECONDS.toMillis(elapsed)));
+				return loaded;
+			} catch (Exception e) {
+				throw new IllegalStateException("Failed to load " + artifact, e);
+			}
+		}, executor);
+	}
+
+	private ZooModel<NDList, NDList> loadClipModel(String url) throws Exception {
+		var criteria = Criteria.builder()
+				.setTypes(NDList.class, NDList.class)
+				.optTranslator(new NoopTranslator())
+				.optEngine("PyTorch");
+		return source(criteria, CLIP_DIR, url).build().loadModel();
+	}
+
+	private ZooModel<String, float[]> loadMultilingualClipModel(String url, HuggingFaceTokenizer tokenizer) throws Exception {
+		var criteria = Criteria.builder()
+				.setTypes(String.class, float[].class)
+				.optTranslator(new MultilingualTextTranslator(tokenizer))
+				.optEngine("OnnxRuntime"); // use OnnxRuntime engine by default
+		return source(criteria, MULTILINGUAL_CLIP_DIR, url).build().loadModel();
+	}
+
+	private <I, O> Criteria.Builder<I, O> source(Criteria.Builder<I, O> criteria, String dirName, String url) {
+		var dir = modelDir.resolve(dirName);
+		if (Files.isDirectory(dir)) {
+			LOG.info("Loading %s from %s".formatted(dirName, dir.toAbsolutePath()));
+			return criteria.optModelPath(dir);
+		}
+		LOG.info("No %s directory, downloading %s from %s".formatted(dir.toAbsolutePath(), dirName, url));
+		return criteria.optModelUrls(url);
+	}
+
+	private HuggingFaceTokenizer loadTokenizer(String dirName, String hubName) throws Exception {
+		var file = modelDir.resolve(dirName).resolve(TOKENIZER_FILE);
+		if (Files.isRegularFile(file)) return HuggingFaceTokenizer.newInstance(file);
+		LOG.info("No %s, downloading tokenizer %s from the hub".formatted(file.toAbsolutePath(), hubName));
+		return HuggingFaceTokenizer.newInstance(hubName);
+	}
+
+	@SneakyThrows
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	@PreDestroy
+	public void close() {
+		executor.shutdownNow();
+		closeLoaded(clipModel);
+		closeLoaded(multilingualClipModel);
+	}
+
+	private static void closeLoaded(CompletableFuture<? extends ZooModel<?, ?>> model) {
+		model.thenAccept(loaded -> {
+			if (loaded == null) return;
+			LOG.debug("Closing model " + loaded.getName());
+			loaded.close();
+		});
+	}
+}
@@ -0,0 +1,61 @@
+package ai.search.engine.core.config;
+
+import ai.search.engine.core.milvus.MilvusVectorStore;
+import ai.search.engine.core.vector.VectorStore;
+import ai.search.engine.core.vector.hnsw.HnswVectorStore;
+import ai.search.engine.core.vector.mapped.MappedVectorStore;
+import ai.search.engine.core.vector.quant.Quantization;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
+import jakarta.enterprise.context.Dependent;
+import jakarta.enterprise.inject.Disposes;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import lombok.extern.jbosslog.JBossLog;
+
+import java.nio.file.Path;
+
+@JBossLog
+@Dependent
+public class VectorStoreConfig {
+
+	@Inject
+	private AppProperties properties;
+
+	@Inject
+	private MeterRegistry registry;
+
+	@Inject
+	private Tracer tracer;
+
+	@Produces
+	@Singleton
+	public VectorStore vectorStore() {
+		LOG.info("Using " + properties.vectorStoreType() + " vector store");
+		return switch (properties.vectorStoreType()) {
+			case MILVUS -> MilvusVectorStore.getOrCreateDatabase(properties.dbUrl(), properties.dbToken(),
+							properties.dbName(), registry, tracer)
+					.await().indefinitely();
+			case HNSW -> new HnswVectorStore(Path.of(properties.vectorStoreHnswDir()),
+					properties.vectorStoreHnswM(),
+					properties.vectorStoreHnswEfConstruction(),
+					properties.vectorStoreHnswEfSearch());
+			case MAPPED -> new MappedVectorStore(Path.of(properties.vectorStoreMappedDir()),
+					properties.vectorStoreMappedParallelism(),
+					quantization());
+		};
+	}
+
+	private Quantization quantization() {
+		return new Quantization(properties.vectorStoreMappedQuantization(),
+				properties.vectorStoreMappedQuantizationTrainSize(),
+				properties.vectorStoreMappedQuantizationPqSubspaces(),
+				properties.vectorStoreMappedQuantizationRerank());
+	}
+
+	public void disposeVectorStore(@Disposes VectorStore vectorStore) throws InterruptedException {
+		LOG.debug("Closing vector store");
+		vectorStore.close();
+	}
+}
@@ -0,0 +1,67 @@
+package ai.search.engine.core.metrics;
+
+import ai.djl.metric.Dimension;
+import ai.djl.metric.Metric;
+import ai.djl.metric.Metrics;
+import ai.djl.metric.Unit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DJL metrics of a predictor forwarded to Micrometer timers instead of being kept in memory.
+ * <p>
+ * Predictors report every call in microseconds: the translator preprocessing and batchifying
+ * as {@code Preprocess}, the model forward pass as {@code Inference}, the output translation
+ * as {@code Postprocess} and the whole call as {@code Prediction}. They become the
+ * {@code clip.preprocess}, {@code clip.forward}, {@code clip.postprocess} and
+ * {@code clip.predict} timers tagged with the model.
+ */
+@ThreadSafe
+public class PredictorMetrics extends Metrics {
+
+	private final Timer preprocess;
+	private final Timer forward;
+	private final Timer postprocess;
+	private final Timer predict;
+
+	public PredictorMetrics(MeterRegistry registry, String model) {
+		this.preprocess = Timers.timer(registry, "clip.preprocess",
+				"Translator preprocessing and batchifying of a predictor call", "model", model);
+		this.forward = Timers.timer(registry, "clip.forward",
+				"Model forward pass of a predictor call", "model", model);
+		this.postprocess = Timers.timer(registry, "clip.postprocess",
+				"Translator output processing of a predictor call", "model", model);
+		this.predict = Timers.timer(registry, "clip.predict",
+				"Whole predictor call", "model", model);
+	}
+
+	@Override
+	public void addMetric(Metric metric) {
+		record(metric.getMetricName(), metric.getValue(), metric.getUnit());
+	}
+
+	@Override
+	public void addMetric(String metricName, Number value) {
+		record(metricName, value, Unit.MICROSECONDS);
+	}
+
+	@Override
+	public void addMetric(String metricName, Number value, Unit unit, Dimension... dimensions) {
+		record(metricName, value, unit);
+	}
+
+	private void record(String metricName, Number value, Unit unit) {
+		if (unit != Unit.MICROSECONDS) return;
+		var timer = switch (metricName) {
+			case "Preprocess" -> preprocess;
+			case "Inference" -> forward;
+			case "Postprocess" -> postprocess;
+			case "Prediction" -> predict;
+			default -> null;
+		};
+		if (timer != null) timer.record(value.longValue(), TimeUnit.MICROSECONDS);
+	}
+}
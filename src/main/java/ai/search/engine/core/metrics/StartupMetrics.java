@@ -0,0 +1,77 @@
+package ai.search.engine.core.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One-off durations of the startup, exported as time gauges which stay NaN until they are known:
+ * the load of every model artifact as {@code startup.model.load} tagged with the artifact,
+ * the warm-up inferences as {@code startup.warmup}, the time from the JVM start until the
+ * application is ready as {@code startup.ready}, and the latency of the first search served
+ * as {@code search.first.request}.
+ */
+@ThreadSafe
+@ApplicationScoped
+public class StartupMetrics {
+
+	private static final long UNKNOWN = -1;
+
+	private final MeterRegistry registry;
+	private final AtomicLong warmUpNanos = new AtomicLong(UNKNOWN);
+	private final AtomicLong readyNanos = new AtomicLong(UNKNOWN);
+	private final AtomicLong firstRequestNanos = new AtomicLong(UNKNOWN);
+	/** Gauges only hold their value weakly, these keep the load durations alive. */
+	private final ConcurrentMap<String, AtomicLong> modelLoadNanos = new ConcurrentHashMap<>();
+
+	@Inject
+	public StartupMetrics(MeterRegistry registry) {
+		this.registry = registry;
+		gauge("startup.warmup", "Warm-up inferences before readiness", warmUpNanos);
+		gauge("startup.ready", "Time from the JVM start until the application is ready", readyNanos);
+		gauge("search.first.request", "Latency of the first search served", firstRequestNanos);
+	}
+
+	private TimeGauge gauge(String name, String description, AtomicLong nanos, String... tags) {
+		return TimeGauge.builder(name, nanos, TimeUnit.NANOSECONDS,
+						value -> value.get() == UNKNOWN ? Double.NaN : value.get())
+				.description(description)
+				.tags(tags)
+				.register(registry);
+	}
+
+	public void modelLoaded(String artifact, long nanos) {
+		modelLoadNanos.computeIfAbsent(artifact, loaded -> {
+			var loadNanos = new AtomicLong(UNKNOWN);
+			gauge("startup.model.load", "Load of a model artifact", loadNanos, "artifact", loaded);
+			return loadNanos;
+		}).set(nanos);
+	}
+
+	public void warmedUp(long nanos) {
+		warmUpNanos.set(nanos);
+	}
+
+	public void ready() {
+		readyNanos.compareAndSet(UNKNOWN,
+				TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime()));
+	}
+
+	/** Times {@code request} if no search completed yet, only the first one to complete is kept. */
+	public <T> Uni<T> firstRequest(Uni<T> request) {
+		if (firstRequestNanos.get() != UNKNOWN) return request;
+		return Uni.createFrom().deferred(() -> {
+			var start = System.nanoTime();
+			return request.invoke(() -> firstRequestNanos.compareAndSet(UNKNOWN, System.nanoTime() - start));
+		});
+	}
+}
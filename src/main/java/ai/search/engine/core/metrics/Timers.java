@@ -0,0 +1,47 @@
+package ai.search.engine.core.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.smallrye.mutiny.Uni;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Stage timers with the same distribution everywhere: p50 and p99 published directly, plus
+ * a percentile histogram so Prometheus can aggregate quantiles across instances.
+ */
+public class Timers {
+
+	private Timers() {
+		throw new IllegalArgumentException("No Timers!");
+	}
+
+	public static Timer timer(MeterRegistry registry, String name, String description, String... tags) {
+		return Timer.builder(name)
+				.description(description)
+				.tags(tags)
+				.publishPercentiles(0.5, 0.99)
+				.publishPercentileHistogram()
+				.register(registry);
+	}
+
+	/** Times {@code call} from the moment it starts until its future completes, successfully or not. */
+	public static <T> CompletableFuture<T> time(Timer timer, Supplier<CompletableFuture<T>> call) {
+		var sample = Timer.start();
+		try {
+			return call.get().whenComplete((result, failure) -> sample.stop(timer));
+		} catch (RuntimeException e) {
+			sample.stop(timer);
+			throw e;
+		}
+	}
+
+	/** Times every subscription to {@code uni} until it emits an item, a failure or is cancelled. */
+	public static <T> Uni<T> time(Timer timer, Uni<T> uni) {
+		return Uni.createFrom().deferred(() -> {
+			var sample = Timer.start();
+			return uni.onTermination().invoke(() -> sample.stop(timer));
+		});
+	}
+}
@@ -1,9 +1,14 @@
 package ai.search.engine.core.milvus;
 
+import ai.search.engine.core.tracing.Spans;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.milvus.grpc.ErrorCode;
+import io.milvus.grpc.Status;
 import io.milvus.param.R;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Context;
 import io.smallrye.mutiny.subscription.UniEmitter;
 
 import java.util.concurrent.ExecutorService;
@@ -36,4 +41,40 @@ class EmitterToFutureCallBack<IN, OUT> implements FutureCallback<R<IN>> {
 												   Function<R<IN>, OUT> function) {
 		Futures.addCallback(listenableFuture, new EmitterToFutureCallBack<>(emitter, function), executor);
 	}
+
+	/**
+	 * Same as {@link #emitterToCallback} for a future of a raw gRPC response, which fails the
+	 * emitter when the {@code status} of the response is not a success.
+	 * <p>
+	 * {@code span} is ended with the response, and the emitter is completed in the tracing
+	 * context of the caller rather than the one of the gRPC thread.
+	 */
+	public static <IN, OUT> void emitterToStatusCallback(UniEmitter<OUT> emitter,
+														 ListenableFuture<IN> listenableFuture,
+														 Function<IN, Status> status,
+														 Span span,
+														 ExecutorService executor,
+														 Function<IN, OUT> function) {
+		Futures.addCallback(listenableFuture, new FutureCallback<>() {
+			@Override
+			public void onSuccess(IN result) {
+				var resultStatus = status.apply(result);
+				if (resultStatus.getErrorCode() != ErrorCode.Success) {
+					var failure = new IllegalStateException("Milvus request failed with %s: %s"
+							.formatted(resultStatus.getErrorCode(), resultStatus.getReason()));
+					Spans.end(span, failure);
+					emitter.fail(failure);
+					return;
+				}
+				span.end();
+				emitter.complete(function.apply(result));
+			}
+
+			@Override
+			public void onFailure(Throwable throwable) {
+				Spans.end(span, throwable);
+				emitter.fail(throwable);
+			}
+		}, Context.current().wrap(executor));
+	}
 }
@@ -0,0 +1,46 @@
+package ai.search.engine.core.milvus;
+
+import ai.search.engine.core.vector.VectorStore;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.milvus.param.collection.FieldType;
+import io.opentelemetry.api.trace.Tracer;
+import io.smallrye.mutiny.Uni;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link VectorStore} backed by a Milvus {@link VectorDB}.
+ */
+@ThreadSafe
+public class MilvusVectorStore implements VectorStore {
+
+	private final VectorDB database;
+
+	public MilvusVectorStore(VectorDB database) {
+		this.database = requireNonNull(database);
+	}
+
+	@Override
+	public Uni<VectorStoreCollection> getOrCreateCollection(String collectionName, List<FieldType> fieldTypes) {
+		return database.getOrCreateCollection(collectionName, fieldTypes)
+				.map(MilvusVectorStoreCollection::new);
+	}
+
+	@Override
+	public void close() throws InterruptedException {
+		database.close();
+	}
+
+	public static Uni<VectorStore> getOrCreateDatabase(String uri,
+													   String token,
+													   String databaseName,
+													   MeterRegistry registry,
+													   Tracer tracer) {
+		return VectorDB.getOrCreateDatabase(uri, token, databaseName, registry, tracer)
+				.map(MilvusVectorStore::new);
+	}
+}
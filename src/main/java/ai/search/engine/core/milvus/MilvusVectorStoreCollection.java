@@ -0,0 +1,60 @@
+package ai.search.engine.core.milvus;
+
+import ai.search.engine.core.vector.VectorHit;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.smallrye.mutiny.Uni;
+import jakarta.json.JsonObject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link VectorStoreCollection} adapter over a Milvus {@link VectorDBCollection}.
+ */
+@ThreadSafe
+class MilvusVectorStoreCollection implements VectorStoreCollection {
+
+	private final VectorDBCollection collection;
+
+	MilvusVectorStoreCollection(VectorDBCollection collection) {
+		this.collection = requireNonNull(collection);
+	}
+
+	@Override
+	public Uni<Boolean> createIndexIfNotExists(String fieldName,
+											   String indexName,
+											   JsonObject indexParam,
+											   IndexType indexType,
+											   MetricType metricType) {
+		return collection.createIndexIfNotExists(fieldName, indexName, indexParam, indexType, metricType);
+	}
+
+	@Override
+	public Uni<Long> insert(Map<String, List<?>> fieldAndValues) {
+		return collection.insert(fieldAndValues);
+	}
+
+	@Override
+	public Uni<List<List<VectorHit>>> search(int searchK,
+											 List<float[]> embeddings,
+											 String embeddingFieldName,
+											 List<String> outFields,
+											 JsonObject extraSearchParam) {
+		return collection.searchHits(searchK, embeddings, embeddingFieldName, outFields, extraSearchParam);
+	}
+
+	@Override
+	public Uni<Void> flush() {
+		return collection.flush().replaceWithVoid();
+	}
+
+	@Override
+	public Uni<Void> load() {
+		return collection.load();
+	}
+}
@@ -1,19 +1,29 @@
 package ai.search.engine.core.milvus;
 
-import io.milvus.client.MilvusServiceClient;
+import ai.search.engine.core.tracing.Spans;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.milvus.grpc.FieldSchema;
 import io.milvus.param.ConnectParam;
 import io.milvus.param.collection.CreateCollectionParam;
 import io.milvus.param.collection.CreateDatabaseParam;
+import io.milvus.param.collection.DescribeCollectionParam;
 import io.milvus.param.collection.FieldType;
 import io.milvus.param.collection.HasCollectionParam;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
 import io.smallrye.mutiny.Uni;
 import lombok.extern.jbosslog.JBossLog;
 
 import javax.annotation.concurrent.ThreadSafe;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static ai.search.engine.core.milvus.VectorDBUtils.emitException;
 import static java.util.Objects.requireNonNull;
@@ -23,26 +33,35 @@ import static java.util.Objects.requireNonNull;
 public class VectorDB {
 
 	private static final int MIN_NUM_THREADS = 4;
-	private final MilvusServiceClient milvusClient;
+	private final VectorDBClient milvusClient;
 	private final String databaseName;
 	private final ExecutorService blockingExecutor;
 	private final ExecutorService nonBlockingExecutor;
+	private final MeterRegistry registry;
+	private final Tracer tracer;
+	/** Handles resolved so far, so only the first lookup of a collection costs an RPC. */
+	private final Map<String, VectorDBCollection> collections = new ConcurrentHashMap<>();
 
 	VectorDB(String uri,
 			 String token,
 			 String databaseName,
 			 ExecutorService blockingExecutor,
-			 ExecutorService nonBlockingExecutor) {
+			 ExecutorService nonBlockingExecutor,
+			 MeterRegistry registry,
+			 Tracer tracer) {
 		this.databaseName = requireNonNull(databaseName);
-        this.milvusClient = new MilvusServiceClient(
+        this.milvusClient = new VectorDBClient(
 				ConnectParam.newBuilder()
 						.withUri(uri)
 						.withToken(token)
 						.withDatabaseName(databaseName)
 						.build()
 		);
-		this.blockingExecutor = requireNonNull(blockingExecutor);
-		this.nonBlockingExecutor = requireNonNull(nonBlockingExecutor);
+		// Tasks run in the tracing context of whoever submitted them
+		this.blockingExecutor = Context.taskWrapping(requireNonNull(blockingExecutor));
+		this.nonBlockingExecutor = Context.taskWrapping(requireNonNull(nonBlockingExecutor));
+		this.registry = requireNonNull(registry);
+		this.tracer = requireNonNull(tracer);
     }
 
 	public Uni<VectorDBCollection> getOrCreateCollection(String collectionName) {
@@ -50,6 +69,8 @@ public class VectorDB {
 	}
 
 	public Uni<VectorDBCollection> getOrCreateCollection(String collectionName, List<FieldType> fieldTypes) {
+		var cached = collections.get(collectionName);
+		if (cached != null) return Uni.createFrom().item(cached);
 		return VectorDBUtils.<VectorDBCollection>createEmitter(emitter -> {
 			var hasCollection = milvusClient.hasCollection(HasCollectionParam.newBuilder()
 					.withDatabaseName(databaseName)
@@ -66,8 +87,19 @@ public class VectorDB {
 						result.getData(), "Failed to create collection")) return;
 			}
 
-			var collection = new VectorDBCollection(databaseName, collectionName, milvusClient,
-					blockingExecutor, nonBlockingExecutor);
+			// Vectors are converted to the precision of their field before being sent
+			var described = milvusClient.describeCollection(DescribeCollectionParam.newBuilder()
+					.withDatabaseName(databaseName)
+					.withCollectionName(collectionName)
+					.build());
+			if (emitException(emitter, described.getException())) return;
+			var vectorTypes = described.getData().getSchema().getFieldsList().stream()
+					.filter(field -> VectorDBRequests.isFloatVector(field.getDataType()))
+					.collect(Collectors.toMap(FieldSchema::getName, FieldSchema::getDataType));
+
+			var collection = collections.computeIfAbsent(collectionName,
+					name -> new VectorDBCollection(databaseName, name, vectorTypes, milvusClient,
+							blockingExecutor, nonBlockingExecutor, registry, tracer));
 			emitter.complete(collection);
 		})
 		.emitOn(blockingExecutor);
@@ -94,8 +126,11 @@ public class VectorDB {
 													String token,
 													String databaseName,
 													ExecutorService blockingExecutor,
-													ExecutorService nonBlockingExecutor) {
-		var vectorDb = new VectorDB(uri, token, databaseName, blockingExecutor, nonBlockingExecutor);
+													ExecutorService nonBlockingExecutor,
+													MeterRegistry registry,
+													Tracer tracer) {
+		var vectorDb = new VectorDB(uri, token, databaseName, blockingExecutor, nonBlockingExecutor,
+				registry, tracer);
 		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
 			blockingExecutor.shutdown();
 			nonBlockingExecutor.shutdown();
@@ -117,14 +152,29 @@ public class VectorDB {
 
 					emitter.complete(vectorDb);
 				})
-				.emitOn(blockingExecutor);
+				.emitOn(vectorDb.blockingExecutor);
 	}
 
+	/**
+	 * Request timers are registered to {@code registry} and request spans created by {@code tracer}.
+	 */
 	public static Uni<VectorDB> getOrCreateDatabase(String uri,
 													String token,
-													String databaseName) {
+													String databaseName,
+													MeterRegistry registry,
+													Tracer tracer) {
 		var blocking = Executors.newFixedThreadPool(Math.max(Runtime.getRuntime().availableProcessors(), MIN_NUM_THREADS));
 		var nonBlocking = Executors.newVirtualThreadPerTaskExecutor();
-		return getOrCreateDatabase(uri, token, databaseName, blocking, nonBlocking);
+		return getOrCreateDatabase(uri, token, databaseName, blocking, nonBlocking, registry, tracer);
+	}
+
+	/**
+	 * Untraced database with its timers registered to the global registry.
+	 */
+	public static Uni<VectorDB> getOrCreateDatabase(String uri,
+													String token,
+													String databaseName) {
+		return getOrCreateDatabase(uri, token, databaseName, Metrics.globalRegistry,
+				OpenTelemetry.noop().getTracer(Spans.SCOPE));
 	}
 }
@@ -0,0 +1,23 @@
+package ai.search.engine.core.milvus;
+
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.grpc.MilvusServiceGrpc;
+import io.milvus.param.ConnectParam;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Milvus client also giving access to the gRPC stub, for the hot paths sending requests
+ * built by {@link VectorDBRequests} instead of going through the boxed SDK parameters.
+ */
+@ThreadSafe
+class VectorDBClient extends MilvusServiceClient {
+
+	VectorDBClient(ConnectParam connectParam) {
+		super(connectParam);
+	}
+
+	MilvusServiceGrpc.MilvusServiceFutureStub stub() {
+		return futureStub();
+	}
+}
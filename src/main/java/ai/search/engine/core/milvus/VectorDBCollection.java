@@ -1,20 +1,28 @@
 package ai.search.engine.core.milvus;
 
-import io.milvus.client.MilvusServiceClient;
+import ai.search.engine.core.metrics.Timers;
+import ai.search.engine.core.tracing.Spans;
+import ai.search.engine.core.vector.VectorHit;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.DataType;
 import io.milvus.grpc.FlushResponse;
+import io.milvus.grpc.MutationResult;
+import io.milvus.grpc.SearchResultData;
+import io.milvus.grpc.SearchResults;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
 import io.milvus.param.collection.FlushParam;
 import io.milvus.param.collection.LoadCollectionParam;
 import io.milvus.param.collection.ReleaseCollectionParam;
-import io.milvus.param.dml.InsertParam;
 import io.milvus.param.dml.QueryParam;
-import io.milvus.param.dml.SearchParam;
 import io.milvus.param.index.CreateIndexParam;
 import io.milvus.param.index.DescribeIndexParam;
 import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
+import io.opentelemetry.api.trace.Tracer;
 import io.smallrye.mutiny.Uni;
 import jakarta.json.JsonObject;
 
@@ -24,30 +32,56 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 import static ai.search.engine.core.milvus.EmitterToFutureCallBack.emitterToCallback;
+import static ai.search.engine.core.milvus.EmitterToFutureCallBack.emitterToStatusCallback;
 import static ai.search.engine.core.milvus.VectorDBUtils.createEmitter;
 import static ai.search.engine.core.milvus.VectorDBUtils.emitException;
 
+/**
+ * Handle on a Milvus collection. Search, insert and flush requests are timed as
+ * {@code milvus.request} tagged with the collection and operation, and traced as
+ * {@code milvus.search}, {@code milvus.insert} and {@code milvus.flush} spans ended with the
+ * response.
+ */
 @ThreadSafe
 public class VectorDBCollection {
 
 	private final String databaseName;
 	private final String collectionName;
-	private final MilvusServiceClient milvusClient;
+	/** Type of every float vector field, the precision vectors are sent at. */
+	private final Map<String, DataType> vectorTypes;
+	private final VectorDBClient milvusClient;
 	private final ExecutorService blockingExecutor;
 	private final ExecutorService nonBlockingExecutor;
+	private final Timer searchTimer;
+	private final Timer insertTimer;
+	private final Timer flushTimer;
+	private final Tracer tracer;
 
 	VectorDBCollection(String databaseName,
 					   String collectionName,
-					   MilvusServiceClient milvusClient,
+					   Map<String, DataType> vectorTypes,
+					   VectorDBClient milvusClient,
 					   ExecutorService blockingExecutor,
-					   ExecutorService nonBlockingExecutor) {
+					   ExecutorService nonBlockingExecutor,
+					   MeterRegistry registry,
+					   Tracer tracer) {
         this.databaseName = databaseName;
         this.collectionName = collectionName;
+		this.vectorTypes = Map.copyOf(vectorTypes);
         this.milvusClient = milvusClient;
 		this.blockingExecutor = blockingExecutor;
 		this.nonBlockingExecutor = nonBlockingExecutor;
+		this.searchTimer = requestTimer(registry, collectionName, "search");
+		this.insertTimer = requestTimer(registry, collectionName, "insert");
+		this.flushTimer = requestTimer(registry, collectionName, "flush");
+		this.tracer = tracer;
     }
 
+	private static Timer requestTimer(MeterRegistry registry, String collectionName, String operation) {
+		return Timers.timer(registry, "milvus.request", "Milvus request round trip",
+				"collection", collectionName, "operation", operation);
+	}
+
 	public Uni<Boolean> createIndexIfNotExists(String fieldName,
 											   String indexName,
 											   JsonObject indexParam,
@@ -80,21 +114,33 @@ public class VectorDBCollection {
 				.emitOn(blockingExecutor);
 	}
 
+	/**
+	 * Inserts one row per position of the value lists, vector fields taking {@code float[]}
+	 * values. The request is built by {@link VectorDBRequests}, without boxing the vectors,
+	 * which are converted to the precision of their field.
+	 */
 	public Uni<Long> insert(final Map<String, List<?>> fieldAndValues) {
 		return createEmitter(emitter -> {
-			var insertParam = insertParam(collectionName, fieldAndValues);
-			var listenableFuture = milvusClient.insertAsync(insertParam);
-			emitterToCallback(emitter, listenableFuture, nonBlockingExecutor,
-					result -> result.getData().getInsertCnt());
+			var request = VectorDBRequests.insert(databaseName, collectionName, vectorTypes, fieldAndValues);
+			var span = tracer.spanBuilder("milvus.insert")
+					.setAttribute("milvus.collection", collectionName)
+					.setAttribute("insert.rows", request.getNumRows())
+					.startSpan();
+			var sample = Timer.start();
+			var listenableFuture = milvusClient.stub().insert(request);
+			listenableFuture.addListener(() -> sample.stop(insertTimer), MoreExecutors.directExecutor());
+			emitterToStatusCallback(emitter, listenableFuture, MutationResult::getStatus, span, nonBlockingExecutor,
+					MutationResult::getInsertCnt);
 		});
 	}
 
 	public Uni<FlushResponse> flush() {
 		return VectorDBUtils.<FlushResponse>createEmitter(emitter -> {
-					var resultFlush = milvusClient.flush(FlushParam.newBuilder()
-							.withDatabaseName(databaseName)
-							.withCollectionNames(List.of(collectionName))
-							.build());
+					var resultFlush = Spans.trace(tracer, "milvus.flush", span -> flushTimer.record(() ->
+							milvusClient.flush(FlushParam.newBuilder()
+									.withDatabaseName(databaseName)
+									.withCollectionNames(List.of(collectionName))
+									.build())));
 					if (emitException(emitter, resultFlush.getException())) return;
 					emitter.complete(resultFlush.getData());
 				})
@@ -157,6 +203,7 @@ public class VectorDBCollection {
 
 	/**
 	 * Search with Milvus API with embedding vector as input data field.
+	 * Half precision vectors returned in the output fields are widened back to float32.
 	 * Reference:
 	 * 	<a href="https://milvus.io/docs/search.md">www.milvus.io</a>
 	 */
@@ -165,24 +212,42 @@ public class VectorDBCollection {
 											String embeddingFieldName,
 											List<String> outFields,
 											JsonObject extraSearchParam) {
-		return createEmitter(emitter -> {
-			var searchVectors = embeddings.stream()
-					.map(VectorDBUtils::embeddingToList)
-					.toList();
-			var searchParam = SearchParam.newBuilder()
-					.withCollectionName(collectionName)
-					.withConsistencyLevel(ConsistencyLevelEnum.EVENTUALLY)
-					.withMetricType(MetricType.COSINE)
-					.withOutFields(outFields)
-					.withTopK(searchK)
-					.withVectors(searchVectors)
-					.withVectorFieldName(embeddingFieldName)
-					.withParams(extraSearchParam.toString())
-					.build();
+		return searchResults(searchK, embeddings, embeddingFieldName, outFields, extraSearchParam)
+				.map(results -> new SearchResultsWrapper(VectorDBRequests.toFloatVectors(results)));
+	}
 
-			var listenableFuture = milvusClient.searchAsync(searchParam);
-			emitterToCallback(emitter, listenableFuture, nonBlockingExecutor,
-					result -> new SearchResultsWrapper(result.getData().getResults()));
+	/**
+	 * Same search, hits read straight from the response: vector output fields come as
+	 * {@code float[]} instead of the boxed lists of {@link SearchResultsWrapper}.
+	 */
+	public Uni<List<List<VectorHit>>> searchHits(int searchK,
+												 List<float[]> embeddings,
+												 String embeddingFieldName,
+												 List<String> outFields,
+												 JsonObject extraSearchParam) {
+		return searchResults(searchK, embeddings, embeddingFieldName, outFields, extraSearchParam)
+				.map(results -> VectorDBRequests.hits(results, embeddings.size()));
+	}
+
+	private Uni<SearchResultData> searchResults(int searchK,
+												List<float[]> embeddings,
+												String embeddingFieldName,
+												List<String> outFields,
+												JsonObject extraSearchParam) {
+		return createEmitter(emitter -> {
+			var vectorType = vectorTypes.getOrDefault(embeddingFieldName, DataType.FloatVector);
+			var request = VectorDBRequests.search(databaseName, collectionName, searchK, embeddings,
+					embeddingFieldName, vectorType, outFields, extraSearchParam);
+			var span = tracer.spanBuilder("milvus.search")
+					.setAttribute("milvus.collection", collectionName)
+					.setAttribute("search.top_k", searchK)
+					.setAttribute("search.queries", embeddings.size())
+					.startSpan();
+			var sample = Timer.start();
+			var listenableFuture = milvusClient.stub().search(request);
+			listenableFuture.addListener(() -> sample.stop(searchTimer), MoreExecutors.directExecutor());
+			emitterToStatusCallback(emitter, listenableFuture, SearchResults::getStatus, span, nonBlockingExecutor,
+					SearchResults::getResults);
 		});
 	}
 
@@ -225,18 +290,4 @@ public class VectorDBCollection {
 				.withExpr(expr)
 				.withOutFields(outFields);
 	}
-
-	private InsertParam insertParam(String collectionName,
-									Map<String, List<?>> fieldAndValues) {
-		var fields = fieldAndValues.entrySet()
-				.stream()
-				.map(entry -> new InsertParam.Field(entry.getKey(), entry.getValue()))
-				.toList();
-
-		return InsertParam.newBuilder()
-				.withDatabaseName(databaseName)
-				.withCollectionName(collectionName)
-				.withFields(fields)
-				.build();
-	}
 }
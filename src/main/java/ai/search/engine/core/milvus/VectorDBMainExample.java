@@ -2,14 +2,20 @@ package ai.search.engine.core.milvus;
 
 import ai.djl.modality.cv.ImageFactory;
 import ai.search.engine.core.clip.CLIPModel;
+import ai.search.engine.core.config.AppProperties;
 import ai.search.engine.core.config.ModelConfig;
+import ai.search.engine.core.config.ModelLoader;
+import ai.search.engine.core.metrics.StartupMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.milvus.grpc.DataType;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
+import io.opentelemetry.api.OpenTelemetry;
 import jakarta.json.Json;
 import lombok.extern.jbosslog.JBossLog;
 
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -44,10 +50,17 @@ public class VectorDBMainExample {
 
 		var imageFactory = ImageFactory.getInstance();
 		var imgPathTest = "/data/cv/fashion/1000000151.jpg";
-		var modelConfig = new ModelConfig();
-		try (var modelZoo = modelConfig.clipModelZoo();
-			 var multiModelZoo = modelConfig.multilingualCLIPModelZoo();
-			 var model = modelConfig.clipModel(modelZoo, multiModelZoo)) {
+		// Outside of the container the beans behind the CLIP model are wired by hand
+		var properties = new AppProperties()
+				.clipModelUrl("https://resources.djl.ai/demo/pytorch/clip.zip")
+				.clipModelDir("models")
+				.clipModelPredictorBorrowTimeout(Duration.ofSeconds(30))
+				.clipModelTextBatchSize(16)
+				.clipModelTextBatchWait(Duration.ofMillis(5));
+		var registry = new SimpleMeterRegistry();
+		var modelLoader = new ModelLoader(properties, new StartupMetrics(registry));
+		var modelConfig = new ModelConfig(properties, registry, OpenTelemetry.noop().getTracer("example"), modelLoader);
+		try (modelLoader; var model = modelConfig.clipModel()) {
 
 			var image = imageFactory.fromFile(Paths.get(imgPathTest));
 			float[] embedding = model.extractImageFeatures(image);
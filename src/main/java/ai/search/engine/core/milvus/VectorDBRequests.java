@@ -0,0 +1,339 @@
+package ai.search.engine.core.milvus;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.HalfPrecision;
+import ai.search.engine.core.vector.VectorHit;
+import ai.search.engine.core.vector.VectorPrecision;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import io.milvus.common.clientenum.ConsistencyLevelEnum;
+import io.milvus.grpc.BoolArray;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.DoubleArray;
+import io.milvus.grpc.DslType;
+import io.milvus.grpc.FieldData;
+import io.milvus.grpc.FloatArray;
+import io.milvus.grpc.InsertRequest;
+import io.milvus.grpc.IntArray;
+import io.milvus.grpc.KeyValuePair;
+import io.milvus.grpc.LongArray;
+import io.milvus.grpc.PlaceholderGroup;
+import io.milvus.grpc.PlaceholderType;
+import io.milvus.grpc.PlaceholderValue;
+import io.milvus.grpc.ScalarField;
+import io.milvus.grpc.SearchRequest;
+import io.milvus.grpc.SearchResultData;
+import io.milvus.grpc.StringArray;
+import io.milvus.grpc.VectorField;
+import io.milvus.param.MetricType;
+import jakarta.json.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the Milvus insert and search protos straight from {@code float[]} embeddings.
+ * <p>
+ * The SDK parameters only take vectors as {@code List<Float>}, boxing every component, and
+ * its insert describes the collection with a blocking RPC before each request. Here float
+ * vectors are appended to the primitive proto arrays, or written once as little-endian bytes
+ * for search placeholders, without a boxed float along the way.
+ * <p>
+ * Vectors sent to a float16 or bfloat16 field are converted here, half the bytes of float32
+ * on the wire. Search results are read back into hits the same way, vector output fields
+ * sliced into {@code float[]} and half precision ones widened on the fly, where the SDK
+ * result wrappers box every component and do not read half precision at all.
+ */
+class VectorDBRequests {
+
+	/** Milvus reads a guarantee timestamp of 1 as eventually consistent. */
+	private static final long EVENTUALLY_GUARANTEE_TIMESTAMP = 1L;
+	private static final String PLACEHOLDER_TAG = "$0";
+
+	private VectorDBRequests() {
+		throw new IllegalArgumentException("No VectorDBRequests!");
+	}
+
+	/**
+	 * Insert of one row per position of the value lists. Vector fields take {@code float[]}
+	 * values (or {@code List<Float>}), sent at the precision of their type in {@code vectorTypes}
+	 * or as float32, scalar fields strings, longs, ints, floats, doubles or booleans.
+	 */
+	static InsertRequest insert(String databaseName,
+								String collectionName,
+								Map<String, DataType> vectorTypes,
+								Map<String, List<?>> fieldAndValues) {
+		var request = InsertRequest.newBuilder()
+				.setDbName(databaseName)
+				.setCollectionName(collectionName);
+		var numRows = -1;
+		for (var entry : fieldAndValues.entrySet()) {
+			var values = entry.getValue();
+			if (numRows >= 0 && values.size() != numRows) {
+				throw new IllegalArgumentException("Field %s has %d rows instead of %d"
+						.formatted(entry.getKey(), values.size(), numRows));
+			}
+			numRows = values.size();
+			request.addFieldsData(fieldData(entry.getKey(),
+					vectorTypes.getOrDefault(entry.getKey(), DataType.FloatVector), values));
+		}
+		return request.setNumRows(Math.max(numRows, 0)).build();
+	}
+
+	static SearchRequest search(String databaseName,
+								String collectionName,
+								int searchK,
+								List<float[]> embeddings,
+								String embeddingFieldName,
+								DataType embeddingType,
+								List<String> outFields,
+								JsonObject extraSearchParam) {
+		var precision = VectorPrecision.of(embeddingType);
+		var placeholder = PlaceholderValue.newBuilder()
+				.setTag(PLACEHOLDER_TAG)
+				.setType(placeholderType(precision));
+		for (var embedding : embeddings) {
+			placeholder.addValues(toBytes(precision, embedding));
+		}
+		var placeholders = PlaceholderGroup.newBuilder()
+				.addPlaceholders(placeholder)
+				.build();
+
+		return SearchRequest.newBuilder()
+				.setDbName(databaseName)
+				.setCollectionName(collectionName)
+				.setPlaceholderGroup(placeholders.toByteString())
+				.setNq(embeddings.size())
+				.addSearchParams(keyValue("anns_field", embeddingFieldName))
+				.addSearchParams(keyValue("topk", String.valueOf(searchK)))
+				.addSearchParams(keyValue("metric_type", MetricType.COSINE.name()))
+				.addSearchParams(keyValue("round_decimal", "-1"))
+				.addSearchParams(keyValue("ignore_growing", "false"))
+				.addSearchParams(keyValue("offset", String.valueOf(extraSearchParam.getInt("offset", 0))))
+				.addSearchParams(keyValue("params", extraSearchParam.toString()))
+				.addAllOutputFields(outFields)
+				.setDslType(DslType.BoolExprV1)
+				.setGuaranteeTimestamp(EVENTUALLY_GUARANTEE_TIMESTAMP)
+				.setUseDefaultConsistency(false)
+				.setConsistencyLevelValue(ConsistencyLevelEnum.EVENTUALLY.getCode())
+				.build();
+	}
+
+	/**
+	 * Hits of each of the {@code numQueries} queries of {@code results}, best first, with their
+	 * output fields. Vector fields are read as {@code float[]}, at float32 whatever their precision.
+	 */
+	static List<List<VectorHit>> hits(SearchResultData results, int numQueries) {
+		if (results.getIds().hasStrId()) throw new IllegalArgumentException("String primary keys are not supported");
+		var ids = results.getIds().getIntId();
+		var fields = results.getFieldsDataList();
+		var hits = new ArrayList<List<VectorHit>>(numQueries);
+		var row = 0;
+		for (int query = 0; query < numQueries; query++) {
+			var count = query < results.getTopksCount() ? (int) results.getTopks(query) : 0;
+			var queryHits = new ArrayList<VectorHit>(count);
+			for (int i = 0; i < count; i++, row++) {
+				var values = HashMap.<String, Object>newHashMap(fields.size());
+				for (var field : fields) {
+					values.put(field.getFieldName(), value(field, row));
+				}
+				queryHits.add(new VectorHit(ids.getData(row), results.getScores(row), values));
+			}
+			hits.add(queryHits);
+		}
+		return hits;
+	}
+
+	private static Object value(FieldData field, int row) {
+		var scalars = field.getScalars();
+		return switch (field.getType()) {
+			case FloatVector -> {
+				var dimension = (int) field.getVectors().getDim();
+				var data = field.getVectors().getFloatVector();
+				var vector = new float[dimension];
+				for (int i = 0; i < dimension; i++) {
+					vector[i] = data.getData(row * dimension + i);
+				}
+				yield vector;
+			}
+			case Float16Vector, BFloat16Vector -> {
+				var precision = VectorPrecision.of(field.getType());
+				var vectors = field.getVectors();
+				var vector = new float[(int) vectors.getDim()];
+				var bytes = precision == VectorPrecision.FLOAT16 ? vectors.getFloat16Vector() : vectors.getBfloat16Vector();
+				var rowBytes = vector.length * precision.componentBytes();
+				precision.read(bytes.substring(row * rowBytes, (row + 1) * rowBytes)
+						.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN), vector);
+				yield vector;
+			}
+			case VarChar, String -> scalars.getStringData().getData(row);
+			case Int64 -> scalars.getLongData().getData(row);
+			case Int32, Int16, Int8 -> scalars.getIntData().getData(row);
+			case Float -> scalars.getFloatData().getData(row);
+			case Double -> scalars.getDoubleData().getData(row);
+			case Bool -> scalars.getBoolData().getData(row);
+			default -> throw new IllegalArgumentException("Unsupported output field type %s of %s"
+					.formatted(field.getType(), field.getFieldName()));
+		};
+	}
+
+	/**
+	 * Copy of {@code results} with every half precision vector field turned into a float32 one.
+	 */
+	static SearchResultData toFloatVectors(SearchResultData results) {
+		if (results.getFieldsDataList().stream().noneMatch(field -> isHalfVector(field.getType()))) return results;
+		var widened = results.toBuilder();
+		for (int i = 0; i < results.getFieldsDataCount(); i++) {
+			var field = results.getFieldsData(i);
+			if (!isHalfVector(field.getType())) continue;
+			var precision = HalfPrecision.of(field.getType());
+			var vectors = field.getVectors();
+			var bytes = precision == HalfPrecision.FLOAT16 ? vectors.getFloat16Vector() : vectors.getBfloat16Vector();
+			var buffer = bytes.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+			var data = FloatArray.newBuilder();
+			while (buffer.hasRemaining()) {
+				data.addData(precision.fromHalf(buffer.getShort()));
+			}
+			widened.setFieldsData(i, field.toBuilder()
+					.setType(DataType.FloatVector)
+					.setVectors(VectorField.newBuilder().setDim(vectors.getDim()).setFloatVector(data)));
+		}
+		return widened.build();
+	}
+
+	static boolean isFloatVector(DataType dataType) {
+		return dataType == DataType.FloatVector || isHalfVector(dataType);
+	}
+
+	private static boolean isHalfVector(DataType dataType) {
+		return dataType == DataType.Float16Vector || dataType == DataType.BFloat16Vector;
+	}
+
+	private static FieldData fieldData(String name, DataType vectorType, List<?> values) {
+		var field = FieldData.newBuilder().setFieldName(name);
+		var first = values.isEmpty() ? null : values.getFirst();
+		return switch (first) {
+			case float[] vector -> field.setType(vectorType)
+					.setVectors(vectors(vectorType, values, vector.length))
+					.build();
+			case List<?> vector -> field.setType(vectorType)
+					.setVectors(vectors(vectorType, values, vector.size()))
+					.build();
+			case String ignored -> {
+				var array = StringArray.newBuilder();
+				values.forEach(value -> array.addData((String) value));
+				yield field.setType(DataType.VarChar)
+						.setScalars(ScalarField.newBuilder().setStringData(array))
+						.build();
+			}
+			case Long ignored -> {
+				var array = LongArray.newBuilder();
+				values.forEach(value -> array.addData((Long) value));
+				yield field.setType(DataType.Int64)
+						.setScalars(ScalarField.newBuilder().setLongData(array))
+						.build();
+			}
+			case Integer ignored -> {
+				var array = IntArray.newBuilder();
+				values.forEach(value -> array.addData((Integer) value));
+				yield field.setType(DataType.Int32)
+						.setScalars(ScalarField.newBuilder().setIntData(array))
+						.build();
+			}
+			case Float ignored -> {
+				var array = FloatArray.newBuilder();
+				values.forEach(value -> array.addData((Float) value));
+				yield field.setType(DataType.Float)
+						.setScalars(ScalarField.newBuilder().setFloatData(array))
+						.build();
+			}
+			case Double ignored -> {
+				var array = DoubleArray.newBuilder();
+				values.forEach(value -> array.addData((Double) value));
+				yield field.setType(DataType.Double)
+						.setScalars(ScalarField.newBuilder().setDoubleData(array))
+						.build();
+			}
+			case Boolean ignored -> {
+				var array = BoolArray.newBuilder();
+				values.forEach(value -> array.addData((Boolean) value));
+				yield field.setType(DataType.Bool)
+						.setScalars(ScalarField.newBuilder().setBoolData(array))
+						.build();
+			}
+			case null -> throw new IllegalArgumentException("Field %s has no values".formatted(name));
+			default -> throw new IllegalArgumentException("Unsupported value type %s of field %s"
+					.formatted(first.getClass().getName(), name));
+		};
+	}
+
+	private static VectorField vectors(DataType vectorType, List<?> vectors, int dimension) {
+		if (!isHalfVector(vectorType)) return floatVectors(vectors, dimension);
+		var precision = VectorPrecision.of(vectorType);
+		var buffer = ByteBuffer.allocate(vectors.size() * dimension * precision.componentBytes())
+				.order(ByteOrder.LITTLE_ENDIAN);
+		for (var vector : vectors) {
+			var components = CollectionSchema.toVector(vector);
+			checkDimension(components.length, dimension);
+			precision.write(components, buffer);
+		}
+		var bytes = UnsafeByteOperations.unsafeWrap(buffer.array());
+		var field = VectorField.newBuilder().setDim(dimension);
+		return precision == VectorPrecision.FLOAT16 ? field.setFloat16Vector(bytes).build()
+				: field.setBfloat16Vector(bytes).build();
+	}
+
+	private static VectorField floatVectors(List<?> vectors, int dimension) {
+		var data = FloatArray.newBuilder();
+		for (var vector : vectors) {
+			switch (vector) {
+				case float[] components -> {
+					checkDimension(components.length, dimension);
+					for (var component : components) {
+						data.addData(component);
+					}
+				}
+				case List<?> components -> {
+					checkDimension(components.size(), dimension);
+					for (var component : components) {
+						data.addData((Float) component);
+					}
+				}
+				default -> throw new IllegalArgumentException("Unsupported vector type " + vector.getClass().getName());
+			}
+		}
+		return VectorField.newBuilder()
+				.setDim(dimension)
+				.setFloatVector(data)
+				.build();
+	}
+
+	private static void checkDimension(int actual, int dimension) {
+		if (actual != dimension) {
+			throw new IllegalArgumentException("Expected dimension %d but got %d".formatted(dimension, actual));
+		}
+	}
+
+	private static PlaceholderType placeholderType(VectorPrecision precision) {
+		return switch (precision) {
+			case FLOAT32 -> PlaceholderType.FloatVector;
+			case FLOAT16 -> PlaceholderType.Float16Vector;
+			case BFLOAT16 -> PlaceholderType.BFloat16Vector;
+		};
+	}
+
+	private static ByteString toBytes(VectorPrecision precision, float[] embedding) {
+		var buffer = ByteBuffer.allocate(embedding.length * precision.componentBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		precision.write(embedding, buffer);
+		// The buffer is never written again, so it can back the ByteString without a copy
+		return UnsafeByteOperations.unsafeWrap(buffer.array());
+	}
+
+	private static KeyValuePair keyValue(String key, String value) {
+		return KeyValuePair.newBuilder().setKey(key).setValue(value).build();
+	}
+}
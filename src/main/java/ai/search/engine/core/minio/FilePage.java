@@ -0,0 +1,14 @@
+package ai.search.engine.core.minio;
+
+import java.util.List;
+
+/**
+ * One page of a bucket listing, {@code nextStartAfter} being the key to resume the listing
+ * from, or null once the listing is complete.
+ */
+public record FilePage(List<StoredFile> files, String nextStartAfter) {
+
+	public boolean hasNext() {
+		return nextStartAfter != null;
+	}
+}
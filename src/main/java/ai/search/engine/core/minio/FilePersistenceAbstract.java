@@ -1,19 +1,34 @@
 package ai.search.engine.core.minio;
 
+import ai.search.engine.core.metrics.Timers;
 import ai.search.engine.core.service.ByteArrayService;
-import com.google.common.collect.Streams;
+import ai.search.engine.core.tracing.Spans;
 import com.google.common.io.ByteStreams;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.minio.*;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import io.opentelemetry.api.trace.Tracer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import lombok.SneakyThrows;
 import lombok.extern.jbosslog.JBossLog;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Objects of one MinIO bucket. List, get, put, copy and delete requests are timed as
+ * {@code minio.request} tagged with the bucket and operation, and traced as
+ * {@code minio.<operation>} spans.
+ */
 @JBossLog
 public abstract class FilePersistenceAbstract {
 	protected final String minioBucket;
@@ -21,19 +36,42 @@ public abstract class FilePersistenceAbstract {
 	private final ByteArrayService byteArrayService;
 	private final Boolean publicPolicy;
 	private final int batchSize;
+	private final long batchBytes;
+	private final int fetchConcurrency;
+	private final Timer listTimer;
+	private final Timer getTimer;
+	private final Timer putTimer;
+	private final Timer copyTimer;
+	private final Timer deleteTimer;
+	private final Tracer tracer;
 
 	protected FilePersistenceAbstract(String minioBucket, MinioAsyncClient minioClient,
-									  ByteArrayService byteArrayService, Boolean publicPolicy, int batchSize) {
+									  ByteArrayService byteArrayService, Boolean publicPolicy, int batchSize,
+									  long batchBytes, int fetchConcurrency, MeterRegistry registry,
+									  Tracer tracer) {
 		this.minioBucket = minioBucket;
 		this.minioClient = minioClient;
 		this.byteArrayService = byteArrayService;
 		createBucketIfNotExists();
 		this.publicPolicy = publicPolicy;
 		this.batchSize = batchSize;
+		this.batchBytes = batchBytes;
+		this.fetchConcurrency = fetchConcurrency;
+		this.listTimer = requestTimer(registry, minioBucket, "list");
+		this.getTimer = requestTimer(registry, minioBucket, "get");
+		this.putTimer = requestTimer(registry, minioBucket, "put");
+		this.copyTimer = requestTimer(registry, minioBucket, "copy");
+		this.deleteTimer = requestTimer(registry, minioBucket, "delete");
+		this.tracer = tracer;
+	}
+
+	private static Timer requestTimer(MeterRegistry registry, String bucket, String operation) {
+		return Timers.timer(registry, "minio.request", "MinIO request round trip",
+				"bucket", bucket, "operation", operation);
 	}
 
 	@SneakyThrows
-	public void putFile(Map.Entry<String, InputStream> fileNameAndContent) {
+	public CompletableFuture<Void> putFile(Map.Entry<String, InputStream> fileNameAndContent) {
 		String fileName = fileNameAndContent.getKey();
 		byte[] fileContent = ByteStreams.toByteArray(fileNameAndContent.getValue());
 		var putArgs = PutObjectArgs.builder()
@@ -41,38 +79,165 @@ public abstract class FilePersistenceAbstract {
 				.stream(new ByteArrayInputStream(fileContent), fileContent.length, -1)
 				.object(fileName)
 				.build();
-		var completed = minioClient.putObject(putArgs)
+		var completed = Spans.traceAsync(tracer, "minio.put", span -> {
+					span.setAttribute("minio.bucket", minioBucket);
+					span.setAttribute("minio.bytes", fileContent.length);
+					return Timers.time(putTimer, () -> putObject(putArgs));
+				})
 				.thenAccept(objectWriteResponse -> LOG.info("Uploaded file " + fileName));
 		completed.exceptionally(e -> {
 			LOG.error("Ocorreu um erro ao importar o arquivo " + fileName, e);
 			return null;
 		});
+		return completed;
 	}
 
 	@SneakyThrows
-	public void deleteFile(Map.Entry<String, InputStream> file) {
+	public CompletableFuture<Void> deleteFile(Map.Entry<String, InputStream> file) {
 		var removeArgs = RemoveObjectArgs.builder()
 				.bucket(minioBucket)
 				.object(file.getKey())
 				.build();
-		minioClient.removeObject(removeArgs).exceptionally(e -> {
+		var completed = Spans.traceAsync(tracer, "minio.delete", span -> {
+			span.setAttribute("minio.bucket", minioBucket);
+			return Timers.time(deleteTimer, () -> removeObject(removeArgs));
+		});
+		completed.exceptionally(e -> {
 			LOG.error("Ocorreu um erro ao deletar o arquivo " + file.getKey(), e);
 			return null;
 		});
+		return completed;
 	}
 
+	/**
+	 * Copies {@code objectName} from the bucket of {@code source} into this one on the server side,
+	 * so its bytes never travel through the application.
+	 */
 	@SneakyThrows
-	public Map<String, InputStream> getFiles() {
-		var iter = minioClient.listObjects(ListObjectsArgs.builder()
+	public CompletableFuture<ObjectWriteResponse> copyFile(FilePersistenceAbstract source, String objectName) {
+		var copyArgs = CopyObjectArgs.builder()
 				.bucket(minioBucket)
-				.maxKeys(batchSize)
-				.recursive(true)
-				.build());
-		return Streams.stream(iter)
-				.limit(batchSize)
-				.map(this::getNameAndContentByResult)
-				.map(CompletableFuture::join)
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+				.object(objectName)
+				.source(CopySource.builder()
+						.bucket(source.minioBucket)
+						.object(objectName)
+						.build())
+				.build();
+		var completed = Spans.traceAsync(tracer, "minio.copy", span -> {
+			span.setAttribute("minio.bucket", minioBucket);
+			return Timers.time(copyTimer, () -> copyObject(copyArgs));
+		});
+		completed.exceptionally(e -> {
+			LOG.error("Ocorreu um erro ao copiar o arquivo " + objectName, e);
+			return null;
+		});
+		return completed;
+	}
+
+	/**
+	 * Deletes {@code objectNames} with multi-object delete requests of up to 1000 keys,
+	 * returning the names that could not be deleted. The requests run on a worker thread.
+	 */
+	public Uni<List<String>> deleteFiles(List<String> objectNames) {
+		if (objectNames.isEmpty()) return Uni.createFrom().item(List.of());
+		return Spans.traceUni(tracer, "minio.delete", span -> Uni.createFrom().<List<String>>item(() -> deleteTimer.record(() -> {
+			span.setAttribute("minio.bucket", minioBucket);
+			span.setAttribute("minio.objects", objectNames.size());
+			var results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+					.bucket(minioBucket)
+					.objects(objectNames.stream().map(DeleteObject::new).toList())
+					.build());
+			// The requests are only sent while the results are iterated
+			var failed = new ArrayList<String>();
+			for (var result : results) {
+				try {
+					var error = result.get();
+					LOG.error("Ocorreu um erro ao deletar o arquivo " + error.objectName() + ": " + error.message());
+					failed.add(error.objectName());
+				} catch (Exception e) {
+					LOG.error("Ocorreu um erro ao deletar os arquivos", e);
+					return objectNames;
+				}
+			}
+			return failed;
+		})).runSubscriptionOn(Infrastructure.getDefaultWorkerPool()));
+	}
+
+	/**
+	 * Lists up to {@code batchSize} objects whose key comes after {@code startAfter}, or from the
+	 * start of the bucket when it is null. Listing pages are fetched on a worker thread.
+	 */
+	public Uni<FilePage> listFiles(String startAfter) {
+		return Spans.traceUni(tracer, "minio.list", span -> Uni.createFrom().item(() -> listTimer.record(() -> {
+			span.setAttribute("minio.bucket", minioBucket);
+			var args = ListObjectsArgs.builder()
+					.bucket(minioBucket)
+					.maxKeys(batchSize)
+					.recursive(true);
+			if (startAfter != null) args.startAfter(startAfter);
+
+			var results = minioClient.listObjects(args.build()).iterator();
+			var files = new ArrayList<StoredFile>(batchSize);
+			var listed = 0;
+			var lastKey = startAfter;
+			// Stop at the page boundary rather than asking hasNext, which would fetch the next page
+			while (listed < batchSize && results.hasNext()) {
+				var item = getItem(results.next());
+				listed++;
+				lastKey = item.objectName();
+				if (!item.isDir()) files.add(new StoredFile(item.objectName(), item.size()));
+			}
+			span.setAttribute("minio.objects", listed);
+			return new FilePage(files, listed == batchSize ? lastKey : null);
+		})).runSubscriptionOn(Infrastructure.getDefaultWorkerPool()));
+	}
+
+	/**
+	 * Every object of the bucket, one page after the other as the subscriber requests them.
+	 */
+	public Multi<FilePage> listPages() {
+		return Multi.createBy().repeating()
+				.uni(AtomicReference<String>::new, startAfter -> listFiles(startAfter.get())
+						.invoke(page -> startAfter.set(page.nextStartAfter())))
+				.whilst(FilePage::hasNext);
+	}
+
+	/**
+	 * Every object of the bucket in batches of at most {@code batchSize} objects and
+	 * {@code batchBytes} bytes, an object larger than the budget making a batch of its own.
+	 */
+	public Multi<List<StoredFile>> listBatches() {
+		return listPages().onItem().transformToIterable(page -> splitByBytes(page.files()));
+	}
+
+	/**
+	 * Downloads {@code files} with up to {@code fetchConcurrency} GETs in flight, emitting
+	 * each file as soon as it is downloaded.
+	 */
+	public Multi<Map.Entry<String, InputStream>> getFiles(List<StoredFile> files) {
+		return Multi.createFrom().iterable(files)
+				.onItem().transformToUni(file -> getFile(file.name())).merge(fetchConcurrency);
+	}
+
+	public Uni<Map.Entry<String, InputStream>> getFile(String objectName) {
+		return Uni.createFrom().completionStage(() -> getNameAndContent(objectName));
+	}
+
+	private List<List<StoredFile>> splitByBytes(List<StoredFile> files) {
+		var batches = new ArrayList<List<StoredFile>>();
+		var batch = new ArrayList<StoredFile>();
+		var bytes = 0L;
+		for (var file : files) {
+			if (!batch.isEmpty() && bytes + file.size() > batchBytes) {
+				batches.add(batch);
+				batch = new ArrayList<>();
+				bytes = 0;
+			}
+			batch.add(file);
+			bytes += file.size();
+		}
+		if (!batch.isEmpty()) batches.add(batch);
+		return batches;
 	}
 
 	@SneakyThrows
@@ -108,13 +273,40 @@ public abstract class FilePersistenceAbstract {
 	}
 
 	@SneakyThrows
-	private CompletableFuture<Map.Entry<String, InputStream>> getNameAndContentByResult(Result<Item> result) {
-		var item = result.get();
-		return minioClient.getObject(GetObjectArgs.builder()
-				.bucket(minioBucket)
-				.object(item.objectName())
-				.build())
-				.thenApply(byteArrayService::toByteArray)
-				.thenApply(inputStream -> Map.entry(item.objectName(), inputStream));
+	private Item getItem(Result<Item> result) {
+		return result.get();
+	}
+
+	/** Timed and traced until the whole content is read. */
+	private CompletableFuture<Map.Entry<String, InputStream>> getNameAndContent(String objectName) {
+		return Spans.traceAsync(tracer, "minio.get", span -> {
+					span.setAttribute("minio.bucket", minioBucket);
+					return Timers.time(getTimer, () -> getObject(GetObjectArgs.builder()
+									.bucket(minioBucket)
+									.object(objectName)
+									.build())
+							.thenApply(byteArrayService::toByteArray));
+				})
+				.thenApply(inputStream -> Map.entry(objectName, inputStream));
+	}
+
+	@SneakyThrows
+	private CompletableFuture<GetObjectResponse> getObject(GetObjectArgs args) {
+		return minioClient.getObject(args);
+	}
+
+	@SneakyThrows
+	private CompletableFuture<ObjectWriteResponse> putObject(PutObjectArgs args) {
+		return minioClient.putObject(args);
+	}
+
+	@SneakyThrows
+	private CompletableFuture<ObjectWriteResponse> copyObject(CopyObjectArgs args) {
+		return minioClient.copyObject(args);
+	}
+
+	@SneakyThrows
+	private CompletableFuture<Void> removeObject(RemoveObjectArgs args) {
+		return minioClient.removeObject(args);
 	}
 }
@@ -2,7 +2,9 @@ package ai.search.engine.core.minio;
 
 import ai.search.engine.core.config.AppProperties;
 import ai.search.engine.core.service.ByteArrayService;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.MinioAsyncClient;
+import io.opentelemetry.api.trace.Tracer;
 import io.quarkus.runtime.Startup;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
@@ -12,7 +14,10 @@ import jakarta.inject.Singleton;
 public class ImportFilePersistence extends FilePersistenceAbstract {
 
 	@Inject
-	protected ImportFilePersistence(MinioAsyncClient minioClient, ByteArrayService byteArrayService, AppProperties properties) {
-		super(properties.bucketFrom(), minioClient, byteArrayService,false, properties.fileImportsBatchSize());
+	protected ImportFilePersistence(MinioAsyncClient minioClient, ByteArrayService byteArrayService, AppProperties properties,
+									MeterRegistry registry, Tracer tracer) {
+		super(properties.bucketFrom(), minioClient, byteArrayService,false, properties.fileImportsBatchSize(),
+				properties.fileImportsBatchBytes().asLongValue(), properties.ingestionFetchConcurrency(), registry,
+				tracer);
 	}
 }
@@ -0,0 +1,7 @@
+package ai.search.engine.core.minio;
+
+/**
+ * An object listed in a bucket, with its size in bytes.
+ */
+public record StoredFile(String name, long size) {
+}
@@ -0,0 +1,165 @@
+package ai.search.engine.core.scheduler;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local set of the content hashes of every indexed image, used to skip the inference and
+ * insertion of bytes already indexed under another name.
+ * <p>
+ * Hashes are the first 128 bits of SHA-256, kept in an open addressing table of primitive
+ * longs (about 32 bytes per image) and appended to a file of fixed size records.
+ * A hash is first reserved by the file carrying it, so concurrent copies of the same bytes
+ * are caught, and only committed once the file was journaled as embedded.
+ */
+@JBossLog
+@ThreadSafe
+public class ContentHashIndex implements AutoCloseable {
+
+	public static final HashFunction HASH_FUNCTION = Hashing.sha256();
+	private static final int RECORD_BYTES = 2 * Long.BYTES;
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	private final FileChannel channel;
+	private final Set<HashCode> reserved = new HashSet<>();
+	/** Slot {@code i} holds the hash {@code (high[i], low[i])}, a zero low word marks an empty slot. */
+	private long[] high = new long[INITIAL_CAPACITY];
+	private long[] low = new long[INITIAL_CAPACITY];
+	private int size;
+
+	public ContentHashIndex(Path file) {
+		try {
+			if (file.getParent() != null) Files.createDirectories(file.getParent());
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			load();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		LOG.info("Content hash index %s holds %d images".formatted(file, size));
+	}
+
+	/**
+	 * Reserves {@code hash} for the file being ingested, returning false when the same bytes
+	 * were already indexed or are being ingested under another name.
+	 */
+	public synchronized boolean reserve(HashCode hash) {
+		var key = key(hash);
+		if (contains(key[0], key[1])) return false;
+		return reserved.add(hash);
+	}
+
+	/** Gives up a reservation of a file that will not be indexed. */
+	public synchronized void release(HashCode hash) {
+		reserved.remove(hash);
+	}
+
+	/** Drops the reservations of files a failed run never got to index. */
+	public synchronized void releaseAll() {
+		reserved.clear();
+	}
+
+	/** Records the hashes of files now safe to skip when seen again. */
+	public synchronized void commit(List<HashCode> hashes) {
+		if (hashes.isEmpty()) return;
+		var buffer = ByteBuffer.allocate(hashes.size() * RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		for (var hash : hashes) {
+			var key = key(hash);
+			if (add(key[0], key[1])) buffer.putLong(key[0]).putLong(key[1]);
+			reserved.remove(hash);
+		}
+		buffer.flip();
+		try {
+			var position = channel.size();
+			while (buffer.hasRemaining()) {
+				position += channel.write(buffer, position);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	private void load() throws IOException {
+		// A torn last record is dropped, its file was not committed
+		var records = channel.size() / RECORD_BYTES;
+		channel.truncate(records * RECORD_BYTES);
+		var buffer = ByteBuffer.allocate(RECORD_BYTES * 4096).order(ByteOrder.LITTLE_ENDIAN);
+		var position = 0L;
+		while (position < records * RECORD_BYTES) {
+			buffer.clear();
+			var read = channel.read(buffer, position);
+			position += read;
+			buffer.flip();
+			while (buffer.remaining() >= RECORD_BYTES) {
+				add(buffer.getLong(), buffer.getLong());
+			}
+		}
+	}
+
+	private static long[] key(HashCode hash) {
+		var bytes = ByteBuffer.wrap(hash.asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+		// Forcing the lowest bit leaves zero free to mark empty slots
+		return new long[]{bytes.getLong(), bytes.getLong() | 1L};
+	}
+
+	private boolean contains(long keyHigh, long keyLow) {
+		var mask = low.length - 1;
+		for (int slot = (int) keyHigh & mask; low[slot] != 0; slot = (slot + 1) & mask) {
+			if (high[slot] == keyHigh && low[slot] == keyLow) return true;
+		}
+		return false;
+	}
+
+	private boolean add(long keyHigh, long keyLow) {
+		if (contains(keyHigh, keyLow)) return false;
+		if (2 * (size + 1) > low.length) resize();
+		insert(high, low, keyHigh, keyLow);
+		size++;
+		return true;
+	}
+
+	private void resize() {
+		var oldHigh = high;
+		var oldLow = low;
+		high = new long[oldLow.length * 2];
+		low = new long[oldLow.length * 2];
+		for (int slot = 0; slot < oldLow.length; slot++) {
+			if (oldLow[slot] != 0) insert(high, low, oldHigh[slot], oldLow[slot]);
+		}
+	}
+
+	private static void insert(long[] high, long[] low, long keyHigh, long keyLow) {
+		var mask = low.length - 1;
+		var slot = (int) keyHigh & mask;
+		while (low[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		high[slot] = keyHigh;
+		low[slot] = keyLow;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+}
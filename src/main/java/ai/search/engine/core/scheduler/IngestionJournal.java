@@ -0,0 +1,266 @@
+package ai.search.engine.core.scheduler;
+
+import com.google.common.io.CountingInputStream;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the {@link IngestionState} reached by every imported file, so that a
+ * restart resumes each file from its last state instead of embedding it again.
+ * <p>
+ * Every record is framed by its length and CRC32, and every batch of transitions is appended
+ * and forced to disk as a single write. On open the log is replayed up to the first record
+ * that is torn or corrupt, such as the zero-filled tail a crash can leave, then compacted to
+ * the files still in progress. While running, the log is compacted again whenever it grows
+ * past {@code compactionRatio} times the size of the records still live.
+ * Only a batch whose insert completed right before a crash, before its
+ * {@link IngestionState#INSERTED} record reached the disk, can be inserted twice: every
+ * other step is idempotent.
+ */
+@JBossLog
+@ThreadSafe
+public class IngestionJournal implements AutoCloseable {
+
+	/** Length then CRC32 of the payload. */
+	private static final int HEADER_BYTES = 2 * Integer.BYTES;
+	/** Larger than any record: a state, a name of at most 64 KiB and an embedding. */
+	private static final int MAX_RECORD_BYTES = 1 << 20;
+	/** Logs under this size are not worth compacting. */
+	private static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+	private final Path file;
+	private final int compactionRatio;
+	private final Map<String, Entry> pending = new LinkedHashMap<>();
+	private FileChannel channel;
+	/** Bytes of the records of {@link #pending}, what a compacted log holds. */
+	private long liveBytes;
+
+	public IngestionJournal(Path file, int compactionRatio) {
+		this.file = file;
+		this.compactionRatio = compactionRatio;
+		try {
+			if (file.getParent() != null) Files.createDirectories(file.getParent());
+			replay();
+			compact();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		LOG.info("Ingestion journal %s has %d files in progress".formatted(file, pending.size()));
+	}
+
+	/** Files in progress by name, in the order they were first recorded. */
+	public synchronized Map<String, Entry> pending() {
+		return new LinkedHashMap<>(pending);
+	}
+
+	public synchronized boolean contains(String name) {
+		return pending.containsKey(name);
+	}
+
+	public void embedded(List<String> names, List<float[]> embeddings) {
+		append(IngestionState.EMBEDDED, names, embeddings);
+	}
+
+	public void inserted(List<String> names) {
+		append(IngestionState.INSERTED, names, null);
+	}
+
+	public void moved(List<String> names) {
+		append(IngestionState.MOVED, names, null);
+	}
+
+	public void deleted(List<String> names) {
+		append(IngestionState.DELETED, names, null);
+	}
+
+	private synchronized void append(IngestionState state, List<String> names, List<float[]> embeddings) {
+		if (names.isEmpty()) return;
+		try {
+			var bytes = new ByteArrayOutputStream();
+			var out = new DataOutputStream(bytes);
+			for (int i = 0; i < names.size(); i++) {
+				write(out, state, names.get(i), embeddings == null ? null : embeddings.get(i));
+			}
+			writeFully(channel, bytes);
+			channel.force(false);
+			// Only what reached the disk is pending, a failed write leaves the map as replay would
+			for (int i = 0; i < names.size(); i++) {
+				apply(state, names.get(i), embeddings == null ? null : embeddings.get(i));
+			}
+			if (pending.isEmpty()) {
+				// Nothing is left to resume, start over from an empty log
+				channel.truncate(0);
+			} else if (channel.size() > Math.max(MIN_COMPACTION_BYTES, compactionRatio * liveBytes)) {
+				compact();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void apply(IngestionState state, String name, float[] embedding) {
+		var previous = state == IngestionState.DELETED ? pending.remove(name)
+				// Past EMBEDDED the embedding is in the vector store, no need to keep it around
+				: pending.put(name, new Entry(state, embedding));
+		if (previous != null) liveBytes -= recordBytes(name, previous.embedding());
+		if (state != IngestionState.DELETED) liveBytes += recordBytes(name, embedding);
+	}
+
+	private void replay() throws IOException {
+		if (!Files.exists(file)) return;
+		var size = Files.size(file);
+		var counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		var crc = new CRC32();
+		try (var in = new DataInputStream(counting)) {
+			while (counting.getCount() < size) {
+				var start = counting.getCount();
+				var length = size - start < HEADER_BYTES ? -1 : in.readInt();
+				var checksum = length < 0 ? 0 : in.readInt();
+				if (length <= 0 || length > Math.min(MAX_RECORD_BYTES, size - start - HEADER_BYTES)) {
+					ignoreFrom(start, size, "torn");
+					return;
+				}
+				var payload = new byte[length];
+				in.readFully(payload);
+				crc.reset();
+				crc.update(payload);
+				var record = (int) crc.getValue() == checksum ? read(payload) : null;
+				if (record == null) {
+					ignoreFrom(start, size, "corrupt");
+					return;
+				}
+				apply(record.state(), record.name(), record.embedding());
+			}
+		}
+	}
+
+	/** The record of {@code payload}, null if it does not parse. */
+	private static Record read(byte[] payload) {
+		try (var in = new DataInputStream(new ByteArrayInputStream(payload))) {
+			var ordinal = in.readUnsignedByte();
+			if (ordinal >= IngestionState.values().length) return null;
+			var state = IngestionState.values()[ordinal];
+			var name = in.readUTF();
+			float[] embedding = null;
+			if (state == IngestionState.EMBEDDED) {
+				var dimension = in.readInt();
+				if (dimension < 0 || dimension * Float.BYTES != in.available()) return null;
+				embedding = new float[dimension];
+				for (int i = 0; i < embedding.length; i++) {
+					embedding[i] = in.readFloat();
+				}
+			}
+			return in.available() == 0 ? new Record(state, name, embedding) : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private void ignoreFrom(long offset, long size, String reason) {
+		LOG.warn("Ignoring the %d bytes after the %s record at offset %d of %s"
+				.formatted(size - offset, reason, offset, file));
+	}
+
+	/**
+	 * Rewrites the log with the files in progress only, then reopens it for appends. The
+	 * rewritten log is forced before it replaces the old one, and the directory after, so a
+	 * crash leaves either log whole on disk.
+	 */
+	private void compact() throws IOException {
+		var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		var bytes = new ByteArrayOutputStream((int) Math.min(liveBytes, Integer.MAX_VALUE - 8));
+		var out = new DataOutputStream(bytes);
+		for (var entry : pending.entrySet()) {
+			write(out, entry.getValue().state(), entry.getKey(), entry.getValue().embedding());
+		}
+		try (var tmpChannel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			writeFully(tmpChannel, bytes);
+			tmpChannel.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory(file.toAbsolutePath().getParent());
+		if (channel != null) channel.close();
+		channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		LOG.debugf("Compacted %s to %d files in progress", file, pending.size());
+	}
+
+	private static void writeFully(FileChannel channel, ByteArrayOutputStream bytes) throws IOException {
+		var buffer = ByteBuffer.wrap(bytes.toByteArray());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/** Makes the last rename in {@code dir} durable, where the platform can open directories at all. */
+	private static void forceDirectory(Path dir) {
+		try (var directory = FileChannel.open(dir, StandardOpenOption.READ)) {
+			directory.force(true);
+		} catch (IOException e) {
+			LOG.debugf("Cannot force directory %s: %s", dir, e);
+		}
+	}
+
+	private static void write(DataOutputStream out, IngestionState state, String name, float[] embedding)
+			throws IOException {
+		var bytes = new ByteArrayOutputStream(recordBytes(name, embedding));
+		var payload = new DataOutputStream(bytes);
+		payload.writeByte(state.ordinal());
+		payload.writeUTF(name);
+		if (state == IngestionState.EMBEDDED) {
+			payload.writeInt(embedding.length);
+			for (var value : embedding) {
+				payload.writeFloat(value);
+			}
+		}
+		var crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeInt(bytes.size());
+		out.writeInt((int) crc.getValue());
+		bytes.writeTo(out);
+	}
+
+	/** Size of the record of {@code name}, header included. */
+	private static int recordBytes(String name, float[] embedding) {
+		// Modified UTF-8 length, as written by writeUTF
+		var nameBytes = 0;
+		for (int i = 0; i < name.length(); i++) {
+			var c = name.charAt(i);
+			nameBytes += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+		}
+		var embeddingBytes = embedding == null ? 0 : Integer.BYTES + embedding.length * Float.BYTES;
+		return HEADER_BYTES + 1 + Short.BYTES + nameBytes + embeddingBytes;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @param embedding extracted embedding while {@link IngestionState#EMBEDDED}, null afterwards
+	 */
+	public record Entry(IngestionState state, float[] embedding) {
+	}
+
+	private record Record(IngestionState state, String name, float[] embedding) {
+	}
+}
@@ -0,0 +1,332 @@
+package ai.search.engine.core.scheduler;
+
+import ai.djl.modality.cv.Image;
+import ai.search.engine.core.clip.CLIPModel;
+import ai.search.engine.core.config.AppProperties;
+import ai.search.engine.core.minio.ImportFilePersistence;
+import ai.search.engine.core.minio.PublicFilePersistence;
+import ai.search.engine.core.service.ImageDatabaseService;
+import ai.search.engine.core.service.ImageDecoder;
+import ai.search.engine.core.tracing.Spans;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.SneakyThrows;
+import lombok.extern.jbosslog.JBossLog;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the import bucket through list, fetch, decode, embed, insert and move stages.
+ * Files are listed and downloaded in batches bounded in count and bytes, one batch at a time
+ * with concurrent GETs inside it.
+ * <p>
+ * Every stage runs up to its configured number of items at once and only requests new items
+ * from the previous stage as slots free up, so the items buffered between two stages stay
+ * bounded and a slow stage back-pressures the listing instead of filling memory. Network I/O,
+ * decoding and inference of different files overlap, and the throughput is set by the
+ * slowest stage rather than the sum of all of them.
+ * <p>
+ * Each transition is recorded in the {@link IngestionJournal}. A run first resumes the files
+ * a previous run left in progress from their last state, reusing journaled embeddings, and
+ * the listing skips them so they are never downloaded or embedded again.
+ * <p>
+ * With deduplication enabled, files whose bytes hash to an image already indexed, or being
+ * ingested under another name, skip inference and insertion and are deleted from the import
+ * bucket without being copied, so every file of the public bucket has a row in the index.
+ * <p>
+ * The files downloaded but not moved yet are exported as the {@code ingestion.in.flight} gauge,
+ * and the files of every embedded batch as the {@code ingestion.batch.size} distribution.
+ * <p>
+ * A run is traced in the context it is started from, with {@code ingestion.embed} and
+ * {@code ingestion.insert} spans per batch. The stages downstream of the MinIO client
+ * callbacks are brought back to that context, so the spans of a run share its trace.
+ */
+@JBossLog
+@ApplicationScoped
+public class IngestionPipeline {
+
+	private final ImportFilePersistence importFilePersistence;
+	private final PublicFilePersistence publicFilePersistence;
+	private final ImageDatabaseService imageDatabaseService;
+	private final CLIPModel clipModel;
+	private final ImageDecoder imageDecoder;
+	private final IngestionJournal journal;
+	private final ContentHashIndex contentHashIndex;
+	private final boolean dedup;
+	private final int batchSize;
+	private final int decodeConcurrency;
+	private final int embedConcurrency;
+	private final int insertConcurrency;
+	private final int moveConcurrency;
+	/** Inference and inserts block on I/O or on a predictor. */
+	private final ExecutorService blockingExecutor = Context.taskWrapping(Executors.newVirtualThreadPerTaskExecutor());
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final DistributionSummary batchSizes;
+	private final Tracer tracer;
+
+	@Inject
+	public IngestionPipeline(ImportFilePersistence importFilePersistence,
+							 PublicFilePersistence publicFilePersistence,
+							 ImageDatabaseService imageDatabaseService,
+							 CLIPModel clipModel,
+							 ImageDecoder imageDecoder,
+							 IngestionJournal journal,
+							 ContentHashIndex contentHashIndex,
+							 AppProperties properties,
+							 MeterRegistry registry,
+							 Tracer tracer) {
+		this.importFilePersistence = importFilePersistence;
+		this.publicFilePersistence = publicFilePersistence;
+		this.imageDatabaseService = imageDatabaseService;
+		this.clipModel = clipModel;
+		this.imageDecoder = imageDecoder;
+		this.journal = journal;
+		this.contentHashIndex = contentHashIndex;
+		this.dedup = properties.ingestionDedupEnable();
+		this.batchSize = properties.fileImportsBatchSize();
+		this.decodeConcurrency = imageDecoder.concurrency();
+		this.embedConcurrency = orDefault(properties.ingestionEmbedConcurrency(),
+				clipModel.imagePredictorPool().maxSize());
+		this.insertConcurrency = properties.ingestionInsertConcurrency();
+		this.moveConcurrency = properties.ingestionMoveConcurrency();
+		this.batchSizes = DistributionSummary.builder("ingestion.batch.size")
+				.description("Files per embedded ingestion batch")
+				.publishPercentiles(0.5, 0.99)
+				.register(registry);
+		Gauge.builder("ingestion.in.flight", inFlight, AtomicInteger::get)
+				.description("Files downloaded from the import bucket and not moved yet")
+				.register(registry);
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Ingests every file currently in the import bucket, returning how many were moved.
+	 * Files that fail to decode are logged and left in the import bucket.
+	 */
+	public long run() {
+		contentHashIndex.releaseAll();
+		var context = Context.current();
+		var resumed = resume(context);
+		try {
+			return resumed + ingest(context);
+		} finally {
+			inFlight.set(0);
+		}
+	}
+
+	private long ingest(Context context) {
+		return importFilePersistence.listBatches()
+				.emitOn(Spans.inContext(context))
+				.onItem().transform(batch -> batch.stream().filter(file -> !journal.contains(file.name())).toList())
+				.select().where(batch -> !batch.isEmpty())
+				.onItem().transformToMulti(importFilePersistence::getFiles).concatenate()
+				.emitOn(Spans.inContext(context))
+				.onItem().transformToUni(this::decode).merge(decodeConcurrency)
+				.group().intoLists().of(batchSize)
+				.onItem().transformToUni(this::embed).merge(embedConcurrency)
+				.onItem().transformToUni(this::insert).merge(insertConcurrency)
+				.onItem().transformToUni(batch -> move(batch, context)
+						.invoke(() -> inFlight.addAndGet(-batch.names().size() - batch.duplicates().size())))
+				.concatenate()
+				.collect().with(Collectors.summingLong(Integer::longValue))
+				.await().indefinitely();
+	}
+
+	/**
+	 * Brings every file left in progress by an earlier run to the end of the pipeline:
+	 * embedded files are inserted then moved, inserted files are moved and moved files deleted.
+	 * A batch failing again is logged and parked: its files stay in the journal for the next
+	 * run, skipped by this one, and the other batches carry on.
+	 */
+	private long resume(Context context) {
+		var pending = journal.pending();
+		if (pending.isEmpty()) return 0;
+		LOG.info("Resuming %d files left in progress".formatted(pending.size()));
+
+		var embedded = namesIn(pending, IngestionState.EMBEDDED);
+		var inserted = namesIn(pending, IngestionState.INSERTED);
+		var moved = namesIn(pending, IngestionState.MOVED);
+		var toInsert = Multi.createFrom().iterable(Lists.partition(embedded, batchSize))
+				.onItem().transformToUni(names -> parkOnFailure(names, "insert", () -> insert(new EmbeddedBatch(names,
+						names.stream().map(name -> pending.get(name).embedding()).toList(), List.of()))))
+				.concatenate();
+		var toMove = Multi.createFrom().iterable(Lists.partition(inserted, batchSize))
+				.onItem().transform(names -> new EmbeddedBatch(names, List.of(), List.of()));
+		var toDelete = Multi.createFrom().iterable(Lists.partition(moved, batchSize))
+				.onItem().transformToUni(names -> parkOnFailure(names, "delete", () -> deleteFromImport(names)))
+				.concatenate();
+		return Multi.createBy().concatenating().streams(
+						Multi.createBy().concatenating().streams(toInsert, toMove)
+								.onItem().transformToUni(batch -> parkOnFailure(batch.names(), "move",
+										() -> move(batch, context)))
+								.concatenate(),
+						toDelete)
+				.collect().with(Collectors.summingLong(Integer::longValue))
+				.await().indefinitely();
+	}
+
+	/** Emits nothing instead of failing when {@code step} fails, leaving the files in the journal. */
+	private static <T> Uni<T> parkOnFailure(List<String> names, String step, Supplier<Uni<T>> resumed) {
+		return Uni.createFrom().<T>deferred(resumed::get)
+				.onFailure().recoverWithItem(e -> {
+					LOG.warn("Failed to %s %d resumed files, leaving them for the next run: %s"
+							.formatted(step, names.size(), e.getMessage()), e);
+					return null;
+				});
+	}
+
+	private static List<String> namesIn(Map<String, IngestionJournal.Entry> pending, IngestionState state) {
+		return pending.entrySet().stream()
+				.filter(entry -> entry.getValue().state() == state)
+				.map(Map.Entry::getKey)
+				.toList();
+	}
+
+	/**
+	 * Emits no item when the file is not a readable image, and a file without image when its
+	 * bytes are a duplicate. Only the decoded image is kept, the downloaded bytes are not
+	 * needed anymore since files are moved on the server side.
+	 */
+	private Uni<DecodedFile> decode(Map.Entry<String, InputStream> file) {
+		inFlight.incrementAndGet();
+		return Uni.createFrom().item(() -> {
+			var hash = dedup ? hash(file.getValue()) : null;
+			if (hash != null && !contentHashIndex.reserve(hash)) {
+				LOG.debug("Skipping inference of " + file.getKey() + ", its content is already indexed");
+				return new DecodedFile(file.getKey(), hash, null);
+			}
+			try {
+				return new DecodedFile(file.getKey(), hash, inputStreamToImage(file.getValue()));
+			} catch (Exception e) {
+				if (hash != null) contentHashIndex.release(hash);
+				inFlight.decrementAndGet();
+				LOG.warn("Skipping " + file.getKey() + ", it could not be decoded: " + e.getMessage());
+				return null;
+			}
+		}).runSubscriptionOn(imageDecoder.executor());
+	}
+
+	/**
+	 * Embeds the images of the batch. Their hashes are committed once the embeddings are
+	 * journaled, and duplicates are journaled as moved since they only need deleting.
+	 */
+	private Uni<EmbeddedBatch> embed(List<DecodedFile> batch) {
+		return Uni.createFrom().item(() -> Spans.trace(tracer, "ingestion.embed", span -> {
+					span.setAttribute("batch.size", batch.size());
+					batchSizes.record(batch.size());
+					var images = batch.stream().filter(file -> !file.duplicate()).toList();
+					var duplicates = batch.stream().filter(DecodedFile::duplicate).map(DecodedFile::name).toList();
+					var names = images.stream().map(DecodedFile::name).toList();
+					var embeddings = images.isEmpty() ? List.<float[]>of()
+							: extractFeatures(images.stream().map(DecodedFile::image).toList());
+					journal.embedded(names, embeddings);
+					if (dedup) contentHashIndex.commit(images.stream().map(DecodedFile::hash).toList());
+					journal.moved(duplicates);
+					return new EmbeddedBatch(names, embeddings, duplicates);
+				}))
+				.runSubscriptionOn(blockingExecutor);
+	}
+
+	private Uni<EmbeddedBatch> insert(EmbeddedBatch batch) {
+		if (batch.names().isEmpty()) return Uni.createFrom().item(batch);
+		return Uni.createFrom().item(() -> Spans.trace(tracer, "ingestion.insert", span -> {
+			span.setAttribute("batch.size", batch.names().size());
+			imageDatabaseService.insertEmbeddings(batch.names(), batch.embeddings());
+			journal.inserted(batch.names());
+			LOG.debug("Inserted " + batch.names().size() + " images");
+			return batch;
+		})).runSubscriptionOn(blockingExecutor);
+	}
+
+	/**
+	 * Copies the inserted files of the batch to the public bucket on the server side, then
+	 * deletes the ones copied and the duplicates from the import bucket with a single
+	 * multi-object delete, returning how many were removed. Files that failed to copy stay in
+	 * the import bucket.
+	 */
+	private Uni<Integer> move(EmbeddedBatch batch, Context context) {
+		return Multi.createFrom().iterable(batch.names())
+				.onItem().transformToUni(name -> Uni.createFrom()
+						.completionStage(() -> publicFilePersistence.copyFile(importFilePersistence, name))
+						.replaceWith(name)
+						.onFailure().recoverWithNull())
+				.merge(moveConcurrency)
+				.collect().asList()
+				.emitOn(Spans.inContext(context))
+				.invoke(journal::moved)
+				.map(copied -> Lists.newArrayList(Iterables.concat(copied, batch.duplicates())))
+				.chain(this::deleteFromImport);
+	}
+
+	private Uni<Integer> deleteFromImport(List<String> names) {
+		return importFilePersistence.deleteFiles(names)
+				.map(failed -> {
+					var deleted = names.stream().filter(name -> !failed.contains(name)).toList();
+					journal.deleted(deleted);
+					return deleted.size();
+				});
+	}
+
+	@SneakyThrows
+	private List<float[]> extractFeatures(List<Image> images) {
+		return clipModel.batchExtractImageFeatures(images);
+	}
+
+	@SneakyThrows
+	private static HashCode hash(InputStream in) {
+		in.mark(0);
+		var hash = ContentHashIndex.HASH_FUNCTION.hashBytes(in.readAllBytes());
+		in.reset();
+		return hash;
+	}
+
+	@SneakyThrows
+	private Image inputStreamToImage(InputStream in) {
+		return imageDecoder.decode(in);
+	}
+
+	private static int orDefault(int configured, int defaultValue) {
+		return configured > 0 ? configured : defaultValue;
+	}
+
+	@PreDestroy
+	void close() {
+		blockingExecutor.shutdownNow();
+	}
+
+	/**
+	 * @param hash  content hash, null without deduplication
+	 * @param image decoded image, null for a duplicate
+	 */
+	private record DecodedFile(String name, HashCode hash, Image image) {
+
+		boolean duplicate() {
+			return image == null;
+		}
+	}
+
+	/**
+	 * @param names      files to insert, with their {@code embeddings}
+	 * @param duplicates files already indexed, only deleted
+	 */
+	private record EmbeddedBatch(List<String> names, List<float[]> embeddings, List<String> duplicates) {
+	}
+}
@@ -0,0 +1,15 @@
+package ai.search.engine.core.scheduler;
+
+/**
+ * Progress of an imported file, in the order the ingestion pipeline reaches them.
+ */
+public enum IngestionState {
+	/** The embedding was extracted and is kept in the journal. */
+	EMBEDDED,
+	/** The embedding is in the vector store. */
+	INSERTED,
+	/** The file was copied to the public bucket, or is a duplicate which is never copied. */
+	MOVED,
+	/** The file was deleted from the import bucket, nothing is left to do. */
+	DELETED
+}
@@ -1,19 +1,30 @@
 package ai.search.engine.core.service;
 
 import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.ImageFactory;
+import ai.search.engine.core.cache.EmbeddingCache;
+import ai.search.engine.core.cache.SearchResultCache;
+import ai.search.engine.core.cache.TextEmbeddingKey;
 import ai.search.engine.core.clip.CLIPModel;
 import ai.search.engine.core.config.AppProperties;
-import ai.search.engine.core.milvus.VectorDB;
-import ai.search.engine.core.milvus.VectorDBCollection;
-import ai.search.engine.core.milvus.VectorDBUtils;
+import ai.search.engine.core.metrics.StartupMetrics;
 import ai.search.engine.core.minio.PublicFilePersistence;
+import ai.search.engine.core.tracing.Spans;
+import ai.search.engine.core.vector.ExactReranker;
+import ai.search.engine.core.vector.VectorStore;
+import ai.search.engine.core.vector.VectorPrecision;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import ai.search.engine.core.vector.VectorStoreType;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import io.milvus.grpc.DataType;
 import io.milvus.param.IndexType;
 import io.milvus.param.MetricType;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
 import io.quarkus.logging.Log;
-import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
@@ -21,16 +32,20 @@ import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import lombok.SneakyThrows;
 import org.apache.commons.lang3.tuple.Pair;
-import org.jetbrains.annotations.NotNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static ai.search.engine.core.milvus.VectorDBUtils.fieldType;
 
@@ -42,31 +57,42 @@ public class ImageDatabaseService {
 	@Inject
 	private CLIPModel clipModel;
 	@Inject
-	private ImageFactory imageFactory;
+	private ImageDecoder imageDecoder;
 	@Inject
 	private PublicFilePersistence publicFilePersistence;
 	@Inject
 	private ByteArrayService byteArrayService;
 	@Inject
 	private ImageValidator imageValidator;
-	private VectorDB database;
+	@Inject
+	private EmbeddingCache<TextEmbeddingKey> textEmbeddingCache;
+	@Inject
+	private EmbeddingCache<HashCode> imageEmbeddingCache;
+	@Inject
+	private SearchResultCache<List<String>> searchResultCache;
+	@Inject
+	private VectorStore database;
+	@Inject
+	private Tracer tracer;
+	@Inject
+	private StartupMetrics startupMetrics;
 
 	void onStart(@Observes StartupEvent ev) {
 		initCollection();
-	}
-
-	@SneakyThrows
-	void onStop(@Observes ShutdownEvent ev) {
-		database.close();
+		if (properties.searchCandidates() > properties.searchTopK() && !quantizedIndex()) {
+			Log.warn("Ignoring search.candidates=%d, only a quantized Milvus index re-ranks candidates"
+					.formatted(properties.searchCandidates()));
+		}
 	}
 
 	@SneakyThrows
 	public void insertImage(File file) {
-		var img = imageFactory.fromFile(file.toPath());
+		var img = imageDecoder.decode(file.toPath());
 		float[] imgFeatures = clipModel.extractImageFeatures(img);
 		var products = database.getOrCreateCollection(COLLECTION_NAME).await().indefinitely();
-		insertImageOnDB(products, file, VectorDBUtils.embeddingToList(imgFeatures));
+		insertImageOnDB(products, file, imgFeatures);
 		products.flush().await().indefinitely();
+		searchResultCache.invalidate();
 	}
 
 	@SneakyThrows
@@ -74,89 +100,259 @@ public class ImageDatabaseService {
 		var products = database.getOrCreateCollection(COLLECTION_NAME).await().indefinitely();
 
 		var paths = files.keySet().stream().toList();
-		var images = files.values().stream().map(this::inputStreamToImage).toList();
+		// Decoded in parallel, in the order of the paths
+		var images = imageDecoder.decodeAll(files.values().stream().toList());
 		Log.info("Extracting features for " + images.size() + " images...");
-		var embeddings = clipModel.batchExtractImageFeatures(images).stream().map(VectorDBUtils::embeddingToList).toList();
+		var embeddings = clipModel.batchExtractImageFeatures(images);
 
 		Log.info("Finished extracting features for " + images.size() + " images.");
 		insertImagesOnDb(products, paths, embeddings);
 		products.flush().await().indefinitely();
+		searchResultCache.invalidate();
 		Log.info("Finished inserting " + images.size() + " images.");
 	}
 
-	@SneakyThrows
-	public List<String> searchImages(Path imagePath) {
-		var in = byteArrayService.toByteArray(imagePath);
-		if (imageValidator.isValid(in)) {
-			Log.info("Invalid image type: " + imagePath);
-			return List.of();
-		}
+	/**
+	 * Inserts embeddings already extracted for the images at {@code paths} and flushes them.
+	 */
+	public void insertEmbeddings(List<String> paths, List<float[]> embeddings) {
+		var products = database.getOrCreateCollection(COLLECTION_NAME).await().indefinitely();
+		insertImagesOnDb(products, paths, embeddings);
+		products.flush().await().indefinitely();
+		searchResultCache.invalidate();
+	}
 
-		var img = imageFactory.fromInputStream(in);
-		var search = clipModel.extractImageFeatures(img);
-		return searchEmbedding(search);
+	/**
+	 * Searches the images closest to the image at {@code imagePath}. The file is read on a
+	 * worker thread, decoded on the decode pool and embedded on the CLIP inference pool, no
+	 * caller thread blocks. Concurrent searches of the same picture share one embedding.
+	 */
+	public Uni<List<String>> searchImages(Path imagePath) {
+		return startupMetrics.firstRequest(Uni.createFrom().item(() -> readAllBytes(imagePath))
+				.runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+				// Re-uploads of the same picture skip both decoding and inference
+				.chain(content -> imageEmbeddingCache.getAsync(Hashing.murmur3_128().hashBytes(content), () -> {
+					if (imageValidator.isValid(new ByteArrayInputStream(content))) {
+						Log.info("Invalid image type: " + imagePath);
+						return Uni.createFrom().nullItem();
+					}
+					return Uni.createFrom().item(() -> decode(new ByteArrayInputStream(content)))
+							.runSubscriptionOn(imageDecoder.executor())
+							.chain(img -> Uni.createFrom().completionStage(() -> clipModel.extractImageFeaturesAsync(img)));
+				}))
+				.chain(embedding -> embedding == null
+						? Uni.createFrom().item(List.<String>of())
+						: searchEmbedding(embedding)));
 	}
 
-	public List<String> searchImages(String predicate) {
-		var search = this.clipModel.extractTextFeatures(predicate);
-		return searchEmbedding(search);
+	public Uni<List<String>> searchImages(String predicate) {
+		var key = TextEmbeddingKey.of(properties.textModelId(), predicate);
+		// Only the cache key is normalized, the model gets the query as typed
+		var embedding = textEmbeddingCache.getAsync(key,
+				() -> Uni.createFrom().completionStage(() -> clipModel.extractTextFeaturesAsync(predicate)));
+		return startupMetrics.firstRequest(embedding.chain(this::searchEmbedding));
 	}
 
-	@SneakyThrows
-	private Image inputStreamToImage(InputStream in) {
-		in.mark(0);
-		var img = imageFactory.fromInputStream(in);
-		in.reset();
-		return img;
+	/**
+	 * Searches every text then every image of a batch, returning the results of the texts
+	 * followed by those of the images, in order. Embeddings missing from the caches are
+	 * extracted with one forward pass per modality and the searches missing from the result
+	 * cache are sent as a single multi-vector search. Images that cannot be decoded get no results.
+	 */
+	public Uni<List<List<String>>> searchBatch(List<String> predicates, List<Path> imagePaths) {
+		Span.current()
+				.setAttribute("search.texts", predicates.size())
+				.setAttribute("search.images", imagePaths.size());
+		return startupMetrics.firstRequest(Uni.combine().all().unis(textEmbeddings(predicates), imageEmbeddings(imagePaths))
+				.with((texts, images) -> {
+					var embeddings = new ArrayList<float[]>(texts.size() + images.size());
+					embeddings.addAll(texts);
+					embeddings.addAll(images);
+					return embeddings;
+				})
+				.chain(embeddings -> {
+					var searchable = embeddings.stream().filter(Objects::nonNull).toList();
+					var found = searchable.isEmpty()
+							? Uni.createFrom().item(List.<List<String>>of())
+							: searchResultCache.getAll(searchable, properties.searchTopK(), searchCacheKey(), this::search);
+					return found.map(results -> {
+						var next = results.iterator();
+						return embeddings.stream()
+								.map(embedding -> embedding == null ? List.<String>of() : next.next())
+								.toList();
+					});
+				}));
 	}
 
-	@NotNull
-	private List<String> searchEmbedding(float[] search) {
-		var products = database.getOrCreateCollection(COLLECTION_NAME)
-				.await().indefinitely();
-		var results = products.search(10, search, "embedding", List.of("path"),
-				JsonObject.EMPTY_JSON_OBJECT).await().indefinitely();
-		return results.getRowRecords(0)
+	private Uni<List<float[]>> textEmbeddings(List<String> predicates) {
+		var keys = predicates.stream()
+				.map(predicate -> TextEmbeddingKey.of(properties.textModelId(), predicate))
+				.toList();
+		return textEmbeddingCache.getAll(keys, missing -> Uni.createFrom().completionStage(() ->
+				clipModel.batchExtractTextFeaturesAsync(missing.stream().map(predicates::get).toList())));
+	}
+
+	/** Embeddings of the images, null for the ones that cannot be decoded. */
+	private Uni<List<float[]>> imageEmbeddings(List<Path> imagePaths) {
+		if (imagePaths.isEmpty()) return Uni.createFrom().item(List.of());
+		return Uni.createFrom().item(() -> imagePaths.stream().map(ImageDatabaseService::readAllBytes).toList())
+				.runSubscriptionOn(Infrastructure.getDefaultWorkerPool())
+				.chain(contents -> imageEmbeddingCache.getAll(
+						contents.stream().map(Hashing.murmur3_128()::hashBytes).toList(),
+						missing -> extractImageFeatures(missing.stream().map(contents::get).toList())));
+	}
+
+	/**
+	 * Decodes the images concurrently on the decode pool then embeds the decoded ones with one
+	 * forward pass. Nothing waits on the decode pool, so it cannot starve itself.
+	 */
+	private Uni<List<float[]>> extractImageFeatures(List<byte[]> contents) {
+		var decodes = imageDecoder.decodeEach(contents.stream().<InputStream>map(ByteArrayInputStream::new).toList())
 				.stream()
-				.map(record -> (String) record.get("path"))
+				.map(decode -> Uni.createFrom().completionStage(decode))
 				.toList();
+		return Uni.combine().all().unis(decodes)
+				.with(Image.class, images -> images)
+				.chain(images -> {
+					var decoded = IntStream.range(0, images.size())
+							.filter(i -> images.get(i) != null)
+							.boxed()
+							.toList();
+					var embeddings = new ArrayList<float[]>(Collections.nCopies(images.size(), null));
+					if (decoded.isEmpty()) return Uni.createFrom().item(embeddings);
+					return Uni.createFrom().completionStage(() -> clipModel.batchExtractImageFeaturesAsync(
+									decoded.stream().map(images::get).toList()))
+							.map(extracted -> {
+								for (int i = 0; i < decoded.size(); i++) {
+									embeddings.set(decoded.get(i), extracted.get(i));
+								}
+								return embeddings;
+							});
+				});
 	}
 
+	private Uni<List<String>> searchEmbedding(float[] search) {
+		return searchResultCache.get(search, properties.searchTopK(), searchCacheKey(),
+				() -> search(List.of(search)).map(List::getFirst));
+	}
 
-	private void insertImagesOnDb(VectorDBCollection collection, List<String> paths, List<List<Float>> embeddings) {
+	/** Search parameters the results depend on besides the embedding and top k. */
+	private String searchCacheKey() {
+		return searchCandidates() + ":" + searchParams();
+	}
+
+	/**
+	 * Candidates searched per query. Only a quantized index scores approximately enough for an
+	 * exact re-ranking of more candidates to pay for their transfer, others search top k.
+	 */
+	private int searchCandidates() {
+		var topK = properties.searchTopK();
+		return quantizedIndex() ? Math.max(topK, properties.searchCandidates()) : topK;
+	}
+
+	private boolean quantizedIndex() {
+		return properties.vectorStoreType() == VectorStoreType.MILVUS
+				&& (properties.dbIndexType() == IndexType.IVF_SQ8
+				|| properties.dbIndexType() == IndexType.IVF_PQ
+				|| properties.dbPrecision() != VectorPrecision.FLOAT32);
+	}
+
+	private JsonObject searchParams() {
+		return Json.createObjectBuilder()
+				.add("nprobe", properties.searchNprobe())
+				.build();
+	}
+
+	/**
+	 * Paths of the top k images of every embedding, with a single search for all of them.
+	 * On a quantized index with more candidates than results, the index is searched for all
+	 * candidates along with their embeddings, which are re-ranked by exact cosine before keeping
+	 * the top k. This lets a coarse index (low nprobe, quantized vectors) keep a high recall.
+	 * Traced as {@code vector.collection} for the collection lookup then {@code vector.search}.
+	 */
+	private Uni<List<List<String>>> search(List<float[]> embeddings) {
+		var topK = properties.searchTopK();
+		var candidates = searchCandidates();
+		var rerank = candidates > topK;
+		var outFields = rerank ? List.of("path", "embedding") : List.of("path");
+		return Spans.traceUni(tracer, "vector.collection", span -> database.getOrCreateCollection(COLLECTION_NAME))
+				.chain(products -> Spans.traceUni(tracer, "vector.search", span -> {
+					span.setAttribute("search.top_k", topK);
+					span.setAttribute("search.candidates", candidates);
+					span.setAttribute("search.queries", embeddings.size());
+					return products.search(candidates, embeddings, "embedding", outFields, searchParams());
+				}))
+				.map(hitsPerQuery -> {
+					var results = new ArrayList<List<String>>(embeddings.size());
+					for (int i = 0; i < embeddings.size(); i++) {
+						var hits = hitsPerQuery.get(i);
+						if (rerank) hits = ExactReranker.rerank(embeddings.get(i), hits, "embedding", topK);
+						results.add(hits.stream()
+								.map(hit -> (String) hit.get("path"))
+								.toList());
+					}
+					return results;
+				});
+	}
+
+	@SneakyThrows
+	private static byte[] readAllBytes(Path path) {
+		return Files.readAllBytes(path);
+	}
+
+	@SneakyThrows
+	private Image decode(InputStream in) {
+		return imageDecoder.decode(in);
+	}
+
+
+	private void insertImagesOnDb(VectorStoreCollection collection, List<String> paths, List<float[]> embeddings) {
 		collection.insert(Map.of(
 				"path", paths,
 				"embedding", embeddings
 		)).await().indefinitely();
 	}
 
-	private void insertImageOnDB(VectorDBCollection collection, File file, List<Float> embeddings) {
+	private void insertImageOnDB(VectorStoreCollection collection, File file, float[] embedding) {
 		collection.insert(Map.of(
 				"path", List.of(file.getName()),
-				"embedding", embeddings
+				"embedding", List.of(embedding)
 		)).await().indefinitely();
 	}
 
 	private void initCollection() {
-		database = VectorDB.getOrCreateDatabase(properties.dbUrl(), properties.dbToken(), properties.dbName())
-				.await().indefinitely();
 		var products = database.getOrCreateCollection(COLLECTION_NAME, List.of(
 						fieldType("id", DataType.Int64,
 								builder -> builder.withPrimaryKey(true)
 										.withAutoID(true)),
 						fieldType("path", DataType.VarChar,
 								builder -> builder.withMaxLength(2048)),
-						fieldType("embedding", DataType.FloatVector,
+						fieldType("embedding", properties.dbPrecision().dataType(),
 								builder -> builder.withDimension(512))))
 				.await().indefinitely();
 
-		var indexParam = Json.createObjectBuilder()
-				.add("nlist", 1024)
-				.build();
+		var indexType = properties.dbIndexType();
 		products.createIndexIfNotExists("embedding", "idx_embedding",
-						indexParam, IndexType.IVF_FLAT, MetricType.COSINE)
+						indexParam(indexType), indexType, MetricType.COSINE)
 				.await().indefinitely();
 		products.load()
 				.await().indefinitely();
 	}
+
+	/**
+	 * IVF_SQ8 stores 1 byte per dimension and IVF_PQ {@code m} bytes per vector instead of 4 bytes per dimension.
+	 * Milvus keeps an existing index, so switching type needs the index to be dropped first.
+	 */
+	private JsonObject indexParam(IndexType indexType) {
+		var indexParam = Json.createObjectBuilder()
+				.add("nlist", properties.dbIndexNlist());
+		return switch (indexType) {
+			case IVF_FLAT, IVF_SQ8 -> indexParam.build();
+			case IVF_PQ -> indexParam
+					.add("m", properties.dbIndexPqM())
+					.add("nbits", 8)
+					.build();
+			default -> throw new IllegalArgumentException("Unsupported index type " + indexType);
+		};
+	}
 }
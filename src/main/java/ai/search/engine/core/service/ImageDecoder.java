@@ -0,0 +1,198 @@
+package ai.search.engine.core.service;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.search.engine.core.config.AppProperties;
+import ai.search.engine.core.metrics.Timers;
+import ai.search.engine.core.tracing.Spans;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes images straight to the resolution the CLIP preprocessing needs instead of the full
+ * resolution of the file.
+ * <p>
+ * CLIP resizes the short side to its input size then keeps the center square, so only the
+ * center square of the file is read, subsampled while reading by the largest integer factor
+ * keeping its side at least {@code image.decode.min.side} pixels. The full raster is never
+ * allocated, and the bicubic resize left to the translator only downscales a few times.
+ * Images whose header declares more than {@code image.decode.max.pixels} pixels are rejected
+ * before decoding.
+ * <p>
+ * Decoding is CPU bound, batches are decoded on a pool of {@code ingestion.decode.concurrency}
+ * platform threads, one per core by default. Every decode is timed and traced as
+ * {@code image.decode}, in the trace of the caller of the batch.
+ */
+@JBossLog
+@ThreadSafe
+@ApplicationScoped
+public class ImageDecoder {
+
+	private final ImageFactory imageFactory;
+	private final int minSide;
+	private final long maxPixels;
+	private final int concurrency;
+	private final ExecutorService executor;
+	private final Timer decodeTimer;
+	private final Tracer tracer;
+
+	@Inject
+	public ImageDecoder(ImageFactory imageFactory, AppProperties properties, MeterRegistry registry, Tracer tracer) {
+		this.imageFactory = imageFactory;
+		this.minSide = properties.imageDecodeMinSide();
+		this.maxPixels = properties.imageDecodeMaxPixels();
+		this.concurrency = properties.ingestionDecodeConcurrency() > 0
+				? properties.ingestionDecodeConcurrency()
+				: Runtime.getRuntime().availableProcessors();
+		this.executor = Context.taskWrapping(Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+				.setNameFormat("image-decode-%d")
+				.setDaemon(true)
+				.build()));
+		this.decodeTimer = Timers.timer(registry, "image.decode", "Decoding of an image file");
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Pool decoding runs on, for callers fanning out their own decode tasks. Tasks running on it
+	 * must not wait for {@link #decodeAll}, whose decodes queue behind them on the same threads.
+	 */
+	public ExecutorService executor() {
+		return executor;
+	}
+
+	public int concurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * Decodes {@code streams} concurrently on the decode pool, returning the images in the
+	 * same order. Fails with the first error in order, the remaining decodes are cancelled.
+	 */
+	public List<Image> decodeAll(List<InputStream> streams) throws IOException {
+		var futures = streams.stream()
+				.map(in -> CompletableFuture.supplyAsync(() -> decodeUnchecked(in), executor))
+				.toList();
+		try {
+			return futures.stream().map(CompletableFuture::join).toList();
+		} catch (CompletionException e) {
+			futures.forEach(future -> future.cancel(false));
+			if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+			throw e;
+		}
+	}
+
+	/**
+	 * Starts decoding {@code streams} concurrently on the decode pool, without waiting for them.
+	 * A stream that fails to decode gives a null image instead of a failed future.
+	 */
+	public List<CompletableFuture<Image>> decodeEach(List<InputStream> streams) {
+		return streams.stream()
+				.map(in -> CompletableFuture.supplyAsync(() -> decodeUnchecked(in), executor)
+						.exceptionally(e -> {
+							LOG.debug("Skipping an image that could not be decoded: " + e.getMessage());
+							return null;
+						}))
+				.toList();
+	}
+
+	private Image decodeUnchecked(InputStream in) {
+		try {
+			return decode(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public Image decode(Path file) throws IOException {
+		try (var in = Files.newInputStream(file)) {
+			return decode(in);
+		}
+	}
+
+	/**
+	 * Reads the image of {@code in}, leaving the stream at its current position when it
+	 * supports marks so it can be read again afterwards.
+	 */
+	public Image decode(InputStream in) throws IOException {
+		var span = tracer.spanBuilder("image.decode").startSpan();
+		var sample = Timer.start();
+		try (var ignored = span.makeCurrent()) {
+			var image = readImage(in);
+			span.end();
+			return image;
+		} catch (IOException | RuntimeException e) {
+			Spans.end(span, e);
+			throw e;
+		} finally {
+			sample.stop(decodeTimer);
+		}
+	}
+
+	private Image readImage(InputStream in) throws IOException {
+		if (in.markSupported()) in.mark(0);
+		// Cached in memory, the default cache spills every image to a temporary file
+		try (var stream = new MemoryCacheImageInputStream(in)) {
+			var readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) throw new IOException("Unsupported image format");
+			var reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				return imageFactory.fromImage(read(reader));
+			} finally {
+				reader.dispose();
+			}
+		} finally {
+			if (in.markSupported()) in.reset();
+		}
+	}
+
+	private BufferedImage read(ImageReader reader) throws IOException {
+		var width = reader.getWidth(0);
+		var height = reader.getHeight(0);
+		if ((long) width * height > maxPixels) {
+			throw new IOException("Image of %dx%d pixels is over the limit of %d".formatted(width, height, maxPixels));
+		}
+
+		var side = Math.min(width, height);
+		var subsampling = Math.max(1, side / minSide);
+		var param = reader.getDefaultReadParam();
+		param.setSourceRegion(new Rectangle((width - side) / 2, (height - side) / 2, side, side));
+		param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		LOG.tracef("Decoding %dx%d image subsampled by %d", width, height, subsampling);
+		Span.current()
+				.setAttribute("image.width", width)
+				.setAttribute("image.height", height)
+				.setAttribute("image.subsampling", subsampling);
+		return reader.read(0, param);
+	}
+
+	@PreDestroy
+	void close() {
+		executor.shutdownNow();
+	}
+}
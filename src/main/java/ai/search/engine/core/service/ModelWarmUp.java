@@ -0,0 +1,109 @@
+package ai.search.engine.core.service;
+
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.search.engine.core.clip.CLIPModel;
+import ai.search.engine.core.config.AppProperties;
+import ai.search.engine.core.metrics.StartupMetrics;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import lombok.extern.jbosslog.JBossLog;
+import org.eclipse.microprofile.health.HealthCheck;
+import org.eclipse.microprofile.health.HealthCheckResponse;
+import org.eclipse.microprofile.health.Readiness;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readiness check turning up once the CLIP models answered synthetic inferences.
+ * <p>
+ * The first forward passes of an engine initialize its kernels, and for PyTorch profile and
+ * optimize the TorchScript graph, while predictors are only created on first use. On startup,
+ * {@code clip.model.warmup.iterations} rounds run as many concurrent calls as each pool has
+ * predictors, with a single input and with {@code clip.model.warmup.batch.size} inputs, so
+ * every predictor is created and warm before the first request. Meanwhile the check is down,
+ * and it stays down with the error if an inference fails.
+ */
+@JBossLog
+@Readiness
+@ApplicationScoped
+public class ModelWarmUp implements HealthCheck {
+
+	private static final String NAME = "CLIP model warm-up";
+	private static final int IMAGE_SIDE = 224;
+	private static final String TEXT = "a photo of a product";
+
+	@Inject
+	private CLIPModel clipModel;
+	@Inject
+	private ImageFactory imageFactory;
+	@Inject
+	private AppProperties properties;
+	@Inject
+	private StartupMetrics startupMetrics;
+
+	private volatile boolean ready;
+	private volatile Throwable failure;
+
+	void onStart(@Observes StartupEvent ev) {
+		Thread.ofPlatform()
+				.name("clip-warmup")
+				.daemon()
+				.start(this::warmUp);
+	}
+
+	private void warmUp() {
+		var start = System.nanoTime();
+		try {
+			var image = imageFactory.fromImage(new BufferedImage(IMAGE_SIDE, IMAGE_SIDE, BufferedImage.TYPE_INT_RGB));
+			var iterations = properties.clipModelWarmupIterations();
+			for (int i = 0; i < iterations; i++) {
+				CompletableFuture.allOf(inferences(image).toArray(CompletableFuture[]::new)).join();
+			}
+			var elapsed = System.nanoTime() - start;
+			startupMetrics.warmedUp(elapsed);
+			LOG.info("Warmed up the CLIP models with %d iterations in %d ms".formatted(iterations,
+					TimeUnit.NANOSECONDS.toMillis(elapsed)));
+			ready = true;
+			startupMetrics.ready();
+		} catch (RuntimeException e) {
+			failure = e;
+			LOG.error("Warm-up of the CLIP models failed", e);
+		}
+	}
+
+	/** Two calls per predictor of each pool, the pools creating a predictor for every concurrent call. */
+	private List<CompletableFuture<?>> inferences(Image image) {
+		var batchSize = properties.clipModelWarmupBatchSize();
+		var images = Collections.nCopies(batchSize, image);
+		var texts = Collections.nCopies(batchSize, TEXT);
+		var inferences = new ArrayList<CompletableFuture<?>>();
+		for (int i = 0; i < clipModel.imagePredictorPool().maxSize(); i++) {
+			inferences.add(clipModel.extractImageFeaturesAsync(image));
+			inferences.add(clipModel.batchExtractImageFeaturesAsync(images));
+		}
+		for (int i = 0; i < clipModel.textPredictorPool().maxSize(); i++) {
+			inferences.add(clipModel.batchExtractTextFeaturesAsync(List.of(TEXT)));
+			inferences.add(clipModel.batchExtractTextFeaturesAsync(texts));
+		}
+		return inferences;
+	}
+
+	@Override
+	public HealthCheckResponse call() {
+		var response = HealthCheckResponse.named(NAME);
+		if (failure != null) {
+			return response.down()
+					.withData("error", String.valueOf(failure.getMessage()))
+					.build();
+		}
+		return response.status(ready).build();
+	}
+}
@@ -0,0 +1,80 @@
+package ai.search.engine.core.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.smallrye.mutiny.Uni;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Child spans of the current context around blocking calls, futures and {@link Uni}s.
+ * <p>
+ * The OpenTelemetry context only follows a request on the threads it runs on, so pools doing
+ * work for a traced caller wrap their tasks with {@link Context#taskWrapping}, and pipelines
+ * hopping across client callback threads restore their context with {@link #inContext}.
+ */
+public class Spans {
+
+	/** Instrumentation scope of the spans of this application. */
+	public static final String SCOPE = "ai.search.engine";
+
+	private Spans() {
+		throw new IllegalArgumentException("No Spans!");
+	}
+
+	/** Runs {@code call} in a span, current while it runs, ended when it returns or throws. */
+	public static <T> T trace(Tracer tracer, String name, Function<Span, T> call) {
+		var span = tracer.spanBuilder(name).startSpan();
+		try (var ignored = span.makeCurrent()) {
+			var result = call.apply(span);
+			span.end();
+			return result;
+		} catch (RuntimeException | Error e) {
+			end(span, e);
+			throw e;
+		}
+	}
+
+	/** Runs {@code call} in a span ended once its future completes, successfully or not. */
+	public static <T> CompletableFuture<T> traceAsync(Tracer tracer, String name, Function<Span, CompletableFuture<T>> call) {
+		var span = tracer.spanBuilder(name).startSpan();
+		try (var ignored = span.makeCurrent()) {
+			return call.apply(span).whenComplete((result, failure) -> end(span, failure));
+		} catch (RuntimeException e) {
+			end(span, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Subscribes to the {@code Uni} of {@code call} in a span, current during the subscription,
+	 * ended when it emits an item, a failure or is cancelled.
+	 */
+	public static <T> Uni<T> traceUni(Tracer tracer, String name, Function<Span, Uni<T>> call) {
+		return Uni.createFrom().deferred(() -> {
+			var span = tracer.spanBuilder(name).startSpan();
+			return call.apply(span)
+					.runSubscriptionOn(inContext(Context.current().with(span)))
+					.onItemOrFailure().invoke((item, failure) -> end(span, failure))
+					.onCancellation().invoke(span::end);
+		});
+	}
+
+	/** Executor running tasks on the calling thread with {@code context} current. */
+	public static Executor inContext(Context context) {
+		return task -> context.wrap(task).run();
+	}
+
+	/** Ends {@code span}, with an error status when {@code failure} is not null. */
+	public static void end(Span span, Throwable failure) {
+		if (failure != null) {
+			span.recordException(failure);
+			span.setStatus(StatusCode.ERROR, String.valueOf(failure.getMessage()));
+		}
+		span.end();
+	}
+}
@@ -0,0 +1,146 @@
+package ai.search.engine.core.vector;
+
+import com.google.common.primitives.Floats;
+import io.milvus.grpc.DataType;
+import io.milvus.param.collection.FieldType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Schema of an embedded collection derived from its Milvus {@link FieldType}s:
+ * a single float vector field, an optional auto generated primary key and the
+ * remaining scalar fields, stored per row in {@link #scalarFields()} order.
+ * Half precision vector fields are accepted too, embedded stores keep float32 rows
+ * and reduce their precision through quantization.
+ */
+public record CollectionSchema(String vectorField,
+							   int dimension,
+							   String primaryKeyField,
+							   List<String> scalarFields) {
+
+	public static CollectionSchema of(List<FieldType> fieldTypes) {
+		String vectorField = null;
+		int dimension = 0;
+		String primaryKeyField = null;
+		var scalarFields = new ArrayList<String>();
+		for (var fieldType : fieldTypes) {
+			if (isFloatVector(fieldType.getDataType())) {
+				if (vectorField != null) throw new IllegalArgumentException("Only one vector field is supported");
+				vectorField = fieldType.getName();
+				dimension = fieldType.getDimension();
+			} else if (fieldType.isPrimaryKey() && fieldType.isAutoID()) {
+				primaryKeyField = fieldType.getName();
+			} else {
+				scalarFields.add(fieldType.getName());
+			}
+		}
+
+		if (vectorField == null) throw new IllegalArgumentException("Collection needs a float vector field");
+		return new CollectionSchema(vectorField, dimension, primaryKeyField, List.copyOf(scalarFields));
+	}
+
+	private static boolean isFloatVector(DataType dataType) {
+		return dataType == DataType.FloatVector
+				|| dataType == DataType.Float16Vector
+				|| dataType == DataType.BFloat16Vector;
+	}
+
+	/** Splits column oriented insert values into rows. */
+	public List<Row> rows(Map<String, List<?>> fieldAndValues) {
+		var vectors = fieldAndValues.get(vectorField);
+		if (vectors == null) throw new IllegalArgumentException("Missing vector field " + vectorField);
+		var rows = new ArrayList<Row>(vectors.size());
+		for (int i = 0; i < vectors.size(); i++) {
+			var vector = toVector(vectors.get(i));
+			if (vector.length != dimension) {
+				throw new IllegalArgumentException("Expected dimension %d but got %d".formatted(dimension, vector.length));
+			}
+			var values = new Object[scalarFields.size()];
+			for (int field = 0; field < values.length; field++) {
+				var column = fieldAndValues.get(scalarFields.get(field));
+				values[field] = column == null ? null : column.get(i);
+			}
+			rows.add(new Row(vector, values));
+		}
+		return rows;
+	}
+
+	/**
+	 * Output fields of a row, the primary key being the row id.
+	 *
+	 * @param vector reads the stored vector, only called when the vector field is requested
+	 */
+	public Map<String, Object> fields(long id, Object[] values, Supplier<float[]> vector, List<String> outFields) {
+		var fields = new HashMap<String, Object>(outFields.size());
+		for (var outField : outFields) {
+			if (outField.equals(primaryKeyField)) {
+				fields.put(outField, id);
+				continue;
+			}
+			if (outField.equals(vectorField)) {
+				fields.put(outField, vector.get());
+				continue;
+			}
+			var index = scalarFields.indexOf(outField);
+			if (index >= 0) fields.put(outField, values[index]);
+		}
+		return fields;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		out.writeUTF(vectorField);
+		out.writeInt(dimension);
+		out.writeBoolean(primaryKeyField != null);
+		if (primaryKeyField != null) out.writeUTF(primaryKeyField);
+		out.writeShort(scalarFields.size());
+		for (var scalarField : scalarFields) {
+			out.writeUTF(scalarField);
+		}
+	}
+
+	public static CollectionSchema read(DataInput in) throws IOException {
+		var vectorField = in.readUTF();
+		var dimension = in.readInt();
+		var primaryKeyField = in.readBoolean() ? in.readUTF() : null;
+		var scalarFields = new ArrayList<String>();
+		for (int i = in.readUnsignedShort(); i > 0; i--) {
+			scalarFields.add(in.readUTF());
+		}
+		return new CollectionSchema(vectorField, dimension, primaryKeyField, List.copyOf(scalarFields));
+	}
+
+	public void save(Path file) throws IOException {
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			write(out);
+		}
+	}
+
+	public static CollectionSchema load(Path file) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return read(in);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public static float[] toVector(Object value) {
+		if (value instanceof float[] vector) return vector;
+		if (value instanceof List<?> list) return Floats.toArray((List<Float>) list);
+		throw new IllegalArgumentException("Unsupported vector value " + value.getClass());
+	}
+
+	public record Row(float[] vector, Object[] values) {
+	}
+}
@@ -0,0 +1,35 @@
+package ai.search.engine.core.vector;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Second stage of a two-stage search: the ANN index only has to get the true neighbours
+ * somewhere into a generous candidate list, which is then ordered by exact cosine similarity
+ * against the vectors returned with the hits.
+ */
+public class ExactReranker {
+
+	private ExactReranker() {
+		throw new IllegalArgumentException("No ExactReranker!");
+	}
+
+	/**
+	 * Re-scores {@code candidates} by the cosine similarity between {@code query} and their
+	 * {@code vectorField}, keeping the {@code k} best.
+	 */
+	public static List<VectorHit> rerank(float[] query, List<VectorHit> candidates, String vectorField, int k) {
+		var normalizedQuery = VectorMath.normalize(query);
+		return candidates.stream()
+				.map(hit -> {
+					var value = hit.get(vectorField);
+					if (value == null) throw new IllegalArgumentException("Hit " + hit.id() + " has no " + vectorField);
+					var vector = VectorMath.normalize(CollectionSchema.toVector(value));
+					var score = VectorMath.dot(normalizedQuery, 0, vector, 0, vector.length);
+					return new VectorHit(hit.id(), score, hit.fields());
+				})
+				.sorted(Comparator.comparingDouble(VectorHit::score).reversed())
+				.limit(k)
+				.toList();
+	}
+}
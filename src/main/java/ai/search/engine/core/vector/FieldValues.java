@@ -0,0 +1,83 @@
+package ai.search.engine.core.vector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary encoding of the scalar field values kept by the embedded stores.
+ */
+public class FieldValues {
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte LONG = 2;
+	private static final byte INTEGER = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte FLOAT = 5;
+	private static final byte BOOLEAN = 6;
+
+	private FieldValues() {
+		throw new IllegalArgumentException("No FieldValues!");
+	}
+
+	public static void write(DataOutput out, Object[] values) throws IOException {
+		out.writeShort(values.length);
+		for (var value : values) {
+			write(out, value);
+		}
+	}
+
+	public static Object[] read(DataInput in) throws IOException {
+		var values = new Object[in.readUnsignedShort()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = readValue(in);
+		}
+		return values;
+	}
+
+	private static void write(DataOutput out, Object value) throws IOException {
+		switch (value) {
+			case null -> out.writeByte(NULL);
+			case String s -> {
+				out.writeByte(STRING);
+				out.writeUTF(s);
+			}
+			case Long l -> {
+				out.writeByte(LONG);
+				out.writeLong(l);
+			}
+			case Integer i -> {
+				out.writeByte(INTEGER);
+				out.writeInt(i);
+			}
+			case Double d -> {
+				out.writeByte(DOUBLE);
+				out.writeDouble(d);
+			}
+			case Float f -> {
+				out.writeByte(FLOAT);
+				out.writeFloat(f);
+			}
+			case Boolean b -> {
+				out.writeByte(BOOLEAN);
+				out.writeBoolean(b);
+			}
+			default -> throw new IllegalArgumentException("Unsupported field value " + value.getClass());
+		}
+	}
+
+	private static Object readValue(DataInput in) throws IOException {
+		var type = in.readByte();
+		return switch (type) {
+			case NULL -> null;
+			case STRING -> in.readUTF();
+			case LONG -> in.readLong();
+			case INTEGER -> in.readInt();
+			case DOUBLE -> in.readDouble();
+			case FLOAT -> in.readFloat();
+			case BOOLEAN -> in.readBoolean();
+			default -> throw new IOException("Unknown field value type " + type);
+		};
+	}
+}
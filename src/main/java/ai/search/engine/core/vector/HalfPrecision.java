@@ -0,0 +1,66 @@
+package ai.search.engine.core.vector;
+
+import io.milvus.grpc.DataType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The two byte {@link VectorPrecision}s, converting float32 components to and from their
+ * two byte codes.
+ */
+public enum HalfPrecision {
+	/** IEEE 754 half precision, 11 bits of mantissa but a range of +-65504. */
+	FLOAT16 {
+		@Override
+		public short toHalf(float value) {
+			return Float.floatToFloat16(value);
+		}
+
+		@Override
+		public float fromHalf(short code) {
+			return Float.float16ToFloat(code);
+		}
+	},
+	/** Upper half of a float32, the full float32 range but 8 bits of mantissa. */
+	BFLOAT16 {
+		@Override
+		public short toHalf(float value) {
+			var bits = Float.floatToRawIntBits(value);
+			// Keeps NaNs quiet instead of letting the rounding carry them to infinity
+			if (Float.isNaN(value)) return (short) (bits >>> 16 | 0x40);
+			return (short) ((bits + 0x7FFF + (bits >>> 16 & 1)) >>> 16);
+		}
+
+		@Override
+		public float fromHalf(short code) {
+			return Float.intBitsToFloat((code & 0xFFFF) << 16);
+		}
+	};
+
+	public static HalfPrecision of(DataType dataType) {
+		return switch (dataType) {
+			case Float16Vector -> FLOAT16;
+			case BFloat16Vector -> BFLOAT16;
+			default -> throw new IllegalArgumentException("Not a half precision vector type: " + dataType);
+		};
+	}
+
+	/** Two byte code of {@code value}, rounded to the nearest even. */
+	public abstract short toHalf(float value);
+
+	public abstract float fromHalf(short code);
+
+	/** Writes the {@code vector} components to {@code out} as two byte codes. */
+	public void write(float[] vector, ByteBuffer out) {
+		for (var component : vector) {
+			out.putShort(toHalf(component));
+		}
+	}
+
+	/** Reads {@code vector.length} two byte codes from {@code in}. */
+	public void read(ByteBuffer in, float[] vector) {
+		for (int i = 0; i < vector.length; i++) {
+			vector[i] = fromHalf(in.getShort());
+		}
+	}
+}
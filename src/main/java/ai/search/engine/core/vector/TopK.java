@@ -0,0 +1,83 @@
+package ai.search.engine.core.vector;
+
+/**
+ * Keeps the {@code k} highest scored rows seen so far in a min-heap of primitive arrays,
+ * so the weakest kept row is evicted in O(log k) by a better one.
+ */
+public final class TopK {
+
+	private final int k;
+	private final long[] ids;
+	private final float[] scores;
+	private int size;
+
+	public TopK(int k) {
+		this.k = k;
+		this.ids = new long[k];
+		this.scores = new float[k];
+	}
+
+	/** Lowest score a row needs to enter, so callers can skip work for hopeless rows. */
+	public float threshold() {
+		return size < k ? Float.NEGATIVE_INFINITY : scores[0];
+	}
+
+	public void offer(long id, float score) {
+		if (k == 0) return;
+		if (size < k) {
+			var index = size++;
+			while (index > 0) {
+				var parent = (index - 1) >>> 1;
+				if (scores[parent] <= score) break;
+				ids[index] = ids[parent];
+				scores[index] = scores[parent];
+				index = parent;
+			}
+			ids[index] = id;
+			scores[index] = score;
+		} else if (score > scores[0]) {
+			siftDown(id, score);
+		}
+	}
+
+	public TopK merge(TopK other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.ids[i], other.scores[i]);
+		}
+		return this;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Drains the kept rows as (id, score) pairs, best first. */
+	public Entry[] drainBestFirst() {
+		var entries = new Entry[size];
+		for (int i = entries.length - 1; i >= 0; i--) {
+			entries[i] = new Entry(ids[0], scores[0]);
+			var lastId = ids[--size];
+			var lastScore = scores[size];
+			if (size > 0) siftDown(lastId, lastScore);
+		}
+		return entries;
+	}
+
+	private void siftDown(long id, float score) {
+		var index = 0;
+		while (true) {
+			var child = 2 * index + 1;
+			if (child >= size) break;
+			if (child + 1 < size && scores[child + 1] < scores[child]) child++;
+			if (scores[child] >= score) break;
+			ids[index] = ids[child];
+			scores[index] = scores[child];
+			index = child;
+		}
+		ids[index] = id;
+		scores[index] = score;
+	}
+
+	public record Entry(long id, float score) {
+	}
+}
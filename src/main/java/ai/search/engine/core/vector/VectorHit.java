@@ -0,0 +1,14 @@
+package ai.search.engine.core.vector;
+
+import java.util.Map;
+
+/**
+ * A search result row: its primary key, the similarity to the query
+ * (higher is closer) and the requested output fields.
+ */
+public record VectorHit(long id, float score, Map<String, Object> fields) {
+
+	public Object get(String fieldName) {
+		return fields.get(fieldName);
+	}
+}
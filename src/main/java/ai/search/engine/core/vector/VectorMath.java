@@ -0,0 +1,32 @@
+package ai.search.engine.core.vector;
+
+import ai.search.engine.core.vector.kernel.DotProduct;
+import ai.search.engine.core.vector.kernel.VectorKernels;
+
+public class VectorMath {
+
+	private static final DotProduct DOT_PRODUCT = VectorKernels.dotProduct();
+
+	private VectorMath() {
+		throw new IllegalArgumentException("No VectorMath!");
+	}
+
+	public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		return DOT_PRODUCT.dot(a, aOffset, b, bOffset, length);
+	}
+
+	public static float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		return DOT_PRODUCT.dot(a, aOffset, b, bOffset, length);
+	}
+
+	/** Unit length copy of the vector, so cosine similarity becomes a dot product. */
+	public static float[] normalize(float[] vector) {
+		var norm = (float) Math.sqrt(dot(vector, 0, vector, 0, vector.length));
+		var normalized = new float[vector.length];
+		if (norm == 0f) return normalized;
+		for (int i = 0; i < vector.length; i++) {
+			normalized[i] = vector[i] / norm;
+		}
+		return normalized;
+	}
+}
@@ -0,0 +1,68 @@
+package ai.search.engine.core.vector;
+
+import io.milvus.grpc.DataType;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Precision embeddings are stored and sent at. Embeddings are always produced as float32,
+ * the half precision ones are converted on the producing side, halving vectors in memory
+ * and on the wire. Components are read and written in the order of the buffer.
+ */
+public enum VectorPrecision {
+	/** Full float32 components, 4 bytes each. */
+	FLOAT32(DataType.FloatVector, Float.BYTES, null),
+	/** IEEE 754 half precision, 2 bytes each with 11 bits of mantissa but a range of +-65504. */
+	FLOAT16(DataType.Float16Vector, Short.BYTES, HalfPrecision.FLOAT16),
+	/** Upper half of a float32, 2 bytes each with the full float32 range but 8 bits of mantissa. */
+	BFLOAT16(DataType.BFloat16Vector, Short.BYTES, HalfPrecision.BFLOAT16);
+
+	private final DataType dataType;
+	private final int componentBytes;
+	/** Null for {@link #FLOAT32}. */
+	private final HalfPrecision half;
+
+	VectorPrecision(DataType dataType, int componentBytes, HalfPrecision half) {
+		this.dataType = dataType;
+		this.componentBytes = componentBytes;
+		this.half = half;
+	}
+
+	/** Milvus type of a vector field of this precision. */
+	public DataType dataType() {
+		return dataType;
+	}
+
+	public int componentBytes() {
+		return componentBytes;
+	}
+
+	public static VectorPrecision of(DataType dataType) {
+		return switch (dataType) {
+			case FloatVector -> FLOAT32;
+			case Float16Vector -> FLOAT16;
+			case BFloat16Vector -> BFLOAT16;
+			default -> throw new IllegalArgumentException("Not a float vector type: " + dataType);
+		};
+	}
+
+	/** Writes the {@code vector} components to {@code out} at this precision. */
+	public void write(float[] vector, ByteBuffer out) {
+		if (half != null) {
+			half.write(vector, out);
+			return;
+		}
+		out.asFloatBuffer().put(vector);
+		out.position(out.position() + vector.length * Float.BYTES);
+	}
+
+	/** Reads {@code vector.length} components of this precision from {@code in}. */
+	public void read(ByteBuffer in, float[] vector) {
+		if (half != null) {
+			half.read(in, vector);
+			return;
+		}
+		in.asFloatBuffer().get(vector);
+		in.position(in.position() + vector.length * Float.BYTES);
+	}
+}
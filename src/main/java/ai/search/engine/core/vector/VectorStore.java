@@ -0,0 +1,22 @@
+package ai.search.engine.core.vector;
+
+import io.milvus.param.collection.FieldType;
+import io.smallrye.mutiny.Uni;
+
+import java.util.List;
+
+/**
+ * Backend holding the embedding collections, either a remote Milvus database or
+ * an index embedded in this process. Collection schemas are described with the
+ * Milvus {@link FieldType}s whatever the backend.
+ */
+public interface VectorStore {
+
+	default Uni<VectorStoreCollection> getOrCreateCollection(String collectionName) {
+		return getOrCreateCollection(collectionName, List.of());
+	}
+
+	Uni<VectorStoreCollection> getOrCreateCollection(String collectionName, List<FieldType> fieldTypes);
+
+	void close() throws InterruptedException;
+}
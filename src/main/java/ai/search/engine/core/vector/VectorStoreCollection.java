@@ -0,0 +1,39 @@
+package ai.search.engine.core.vector;
+
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.smallrye.mutiny.Uni;
+import jakarta.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+
+public interface VectorStoreCollection {
+
+	Uni<Boolean> createIndexIfNotExists(String fieldName,
+										String indexName,
+										JsonObject indexParam,
+										IndexType indexType,
+										MetricType metricType);
+
+	/**
+	 * Inserts one row per position of the value lists.
+	 * Vector fields accept either {@code float[]} or {@code List<Float>} values.
+	 */
+	Uni<Long> insert(Map<String, List<?>> fieldAndValues);
+
+	/**
+	 * Searches the {@code searchK} nearest rows of every embedding, returning one
+	 * list of hits per embedding in the same order, best hit first.
+	 * Never blocks nor scans on the subscribing thread, which may be an event loop.
+	 */
+	Uni<List<List<VectorHit>>> search(int searchK,
+									  List<float[]> embeddings,
+									  String embeddingFieldName,
+									  List<String> outFields,
+									  JsonObject extraSearchParam);
+
+	Uni<Void> flush();
+
+	Uni<Void> load();
+}
@@ -0,0 +1,10 @@
+package ai.search.engine.core.vector;
+
+public enum VectorStoreType {
+	/** Remote Milvus database. */
+	MILVUS,
+	/** HNSW graph embedded in this process, snapshotted to a local directory. */
+	HNSW,
+	/** Exact search over memory-mapped embedding files. */
+	MAPPED
+}
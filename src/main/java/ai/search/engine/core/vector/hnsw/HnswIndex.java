@@ -0,0 +1,579 @@
+package ai.search.engine.core.vector.hnsw;
+
+import ai.search.engine.core.vector.FieldValues;
+import ai.search.engine.core.vector.VectorMath;
+import com.google.common.io.CountingInputStream;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Hierarchical Navigable Small World graph over unit length vectors, scored by cosine similarity.
+ * <p>
+ * Vectors live in one flat {@code float[]} and the adjacency lists in {@code int[]}s.
+ * Writers are serialized by a lock while searches never block: a new node is fully written
+ * before any adjacency list referencing it is published with release semantics, adjacency
+ * lists are replaced copy-on-write, and growing the arrays publishes a new {@link Storage}
+ * so readers keep working on the snapshot they started with. Searches take their visited set
+ * from a pool of {@link VisitedList}s instead of allocating one sized to the graph each time.
+ * <p>
+ * The graph is persisted as a header followed by segments framed by their length and CRC32.
+ * A snapshot writes every node, then each {@link #flush} appends a segment with the nodes
+ * added and the adjacency lists changed since the previous one, and rewrites a snapshot once
+ * the file outgrows {@code COMPACTION_RATIO} times the size of its nodes. Loading applies the
+ * segments in order up to the first torn or corrupt one, which is cut off.
+ * <p>
+ * Reference: <a href="https://arxiv.org/abs/1603.09320">Malkov and Yashunin</a>
+ */
+@JBossLog
+@ThreadSafe
+public final class HnswIndex {
+
+	private static final VarHandle LINKS = MethodHandles.arrayElementVarHandle(int[][].class);
+	private static final int MAGIC = 0x484E5357;
+	/** Version 1 files hold a single unframed snapshot, they are still read. */
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int FORMAT_VERSION = 2;
+	/** Length then CRC32 of a segment. */
+	private static final int SEGMENT_HEADER_BYTES = 2 * Integer.BYTES;
+	/** Nodes per segment of a snapshot, so a segment is buffered in memory before being written. */
+	private static final int SNAPSHOT_SEGMENT_NODES = 1024;
+	private static final int COMPACTION_RATIO = 2;
+	private static final int MAX_LEVEL = 16;
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int[] NO_NEIGHBORS = new int[0];
+	private static final long EMPTY = -1L;
+
+	private final int dimension;
+	private final int maxConnections;
+	private final int maxConnectionsLevel0;
+	private final int efConstruction;
+	private final double levelMultiplier;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile Storage storage;
+	private volatile int size;
+	/** Level in the high 32 bits and node in the low 32 bits, {@link #EMPTY} for an empty graph. */
+	private volatile long entryPoint = EMPTY;
+	private final Queue<VisitedList> visitedPool = new ConcurrentLinkedQueue<>();
+	// The persisted state below is guarded by the write lock
+	/** File the segments are appended to, null until a snapshot was written or loaded. */
+	private Path flushedFile;
+	/** Nodes in {@link #flushedFile}, the following ones are appended by the next flush. */
+	private int flushedSize;
+	/** Flushed nodes whose adjacency lists changed since the last flush. */
+	private final BitSet changedLinks = new BitSet();
+	/** Bytes of the node records of {@link #flushedFile}, what a snapshot holds. */
+	private long liveBytes;
+
+	public HnswIndex(int dimension, int maxConnections, int efConstruction) {
+		this(dimension, maxConnections, efConstruction, INITIAL_CAPACITY);
+	}
+
+	private HnswIndex(int dimension, int maxConnections, int efConstruction, int capacity) {
+		if (maxConnections < 2) throw new IllegalArgumentException("M must be at least 2: " + maxConnections);
+		this.dimension = dimension;
+		this.maxConnections = maxConnections;
+		this.maxConnectionsLevel0 = 2 * maxConnections;
+		this.efConstruction = Math.max(efConstruction, maxConnections);
+		this.levelMultiplier = 1 / Math.log(maxConnections);
+		this.storage = new Storage(capacity, new float[capacity * dimension],
+				new int[capacity][][], new Object[capacity][]);
+	}
+
+	public int dimension() {
+		return dimension;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Adds a vector and its payload, returning the node id assigned to it.
+	 */
+	public int add(float[] vector, Object[] payload) {
+		checkDimension(vector);
+		var normalized = VectorMath.normalize(vector);
+		writeLock.lock();
+		try {
+			var node = size;
+			var storage = ensureCapacity(node + 1);
+			var offset = node * dimension;
+			System.arraycopy(normalized, 0, storage.vectors(), offset, dimension);
+			storage.payloads()[node] = payload;
+			var level = randomLevel();
+			var nodeLinks = new int[level + 1][];
+			Arrays.fill(nodeLinks, NO_NEIGHBORS);
+			storage.links()[node] = nodeLinks;
+
+			var entry = entryPoint;
+			if (entry == EMPTY) {
+				size = node + 1;
+				entryPoint = pack(node, level);
+				return node;
+			}
+
+			var current = entryNode(entry);
+			var topLevel = entryLevel(entry);
+			for (int l = topLevel; l > level; l--) {
+				current = greedyClosest(storage, storage.vectors(), offset, current, l);
+			}
+			for (int l = Math.min(level, topLevel); l >= 0; l--) {
+				var candidates = searchLayer(storage, storage.vectors(), offset, current, efConstruction, l);
+				var neighbors = selectNeighbors(storage, offset, candidates, maxConnections(l));
+				LINKS.setRelease(nodeLinks, l, neighbors);
+				for (var neighbor : neighbors) {
+					connect(storage, neighbor, node, l);
+				}
+				current = candidates[0];
+			}
+
+			size = node + 1;
+			if (level > topLevel) entryPoint = pack(node, level);
+			return node;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Approximate {@code k} nearest neighbours, most similar first.
+	 *
+	 * @param ef size of the dynamic candidate list, higher is slower with better recall
+	 */
+	public List<Neighbor> search(float[] query, int k, int ef) {
+		checkDimension(query);
+		// Read the entry point before the storage, which is always published first
+		var entry = entryPoint;
+		var storage = this.storage;
+		if (entry == EMPTY || k <= 0) return List.of();
+
+		var normalized = VectorMath.normalize(query);
+		var current = entryNode(entry);
+		for (int l = entryLevel(entry); l > 0; l--) {
+			current = greedyClosest(storage, normalized, 0, current, l);
+		}
+		var nodes = searchLayer(storage, normalized, 0, current, Math.max(ef, k), 0);
+		var neighbors = new ArrayList<Neighbor>(Math.min(k, nodes.length));
+		for (int i = 0; i < nodes.length && i < k; i++) {
+			var node = nodes[i];
+			neighbors.add(new Neighbor(node, similarity(storage, normalized, 0, node), storage.payloads()[node]));
+		}
+		return neighbors;
+	}
+
+	/** Unit length copy of the vector stored for {@code node}. */
+	public float[] vector(int node) {
+		var storage = this.storage;
+		return Arrays.copyOfRange(storage.vectors(), node * dimension, (node + 1) * dimension);
+	}
+
+	/**
+	 * Appends the nodes added and the adjacency lists changed since the last flush to
+	 * {@code file} as a single segment, or writes a whole snapshot if the graph was not
+	 * flushed there before. A segment is all or nothing, so a torn append never leaves links
+	 * to nodes missing from the file.
+	 */
+	public void flush(Path file) throws IOException {
+		writeLock.lock();
+		try {
+			if (!file.equals(flushedFile)) {
+				save(file);
+				return;
+			}
+			if (size == flushedSize && changedLinks.isEmpty()) return;
+			var count = size;
+			var segment = new ByteArrayOutputStream();
+			// Links of the new nodes are written with them
+			var changed = changedLinks.stream().filter(node -> node < flushedSize).toArray();
+			liveBytes += writeSegment(segment, flushedSize, count, changed);
+			try (var channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				var buffer = ByteBuffer.wrap(segment.toByteArray());
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+			flushedSize = count;
+			changedLinks.clear();
+			if (Files.size(file) > COMPACTION_RATIO * liveBytes) save(file);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/** Writes a snapshot of the whole graph to {@code file}, replacing it atomically. */
+	public void save(Path file) throws IOException {
+		var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		writeLock.lock();
+		try {
+			var count = size;
+			var nodeBytes = 0L;
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(dimension);
+				out.writeInt(maxConnections);
+				out.writeInt(efConstruction);
+				var from = 0;
+				do {
+					var to = Math.min(count, from + SNAPSHOT_SEGMENT_NODES);
+					nodeBytes += writeSegment(out, from, to, NO_NEIGHBORS);
+					from = to;
+				} while (from < count);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			flushedFile = file;
+			flushedSize = count;
+			changedLinks.clear();
+			liveBytes = nodeBytes;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes a segment with the nodes {@code from} to {@code to} and the adjacency lists of
+	 * {@code changed} nodes, returning the bytes of its node records.
+	 */
+	private long writeSegment(OutputStream target, int from, int to, int[] changed) throws IOException {
+		var storage = this.storage;
+		var bytes = new ByteArrayOutputStream();
+		var out = new DataOutputStream(bytes);
+		out.writeInt(to);
+		out.writeLong(entryPoint);
+		out.writeInt(to - from);
+		var start = bytes.size();
+		for (int node = from; node < to; node++) {
+			var offset = node * dimension;
+			for (int i = 0; i < dimension; i++) {
+				out.writeFloat(storage.vectors()[offset + i]);
+			}
+			writeLinks(out, storage.links()[node]);
+			FieldValues.write(out, storage.payloads()[node]);
+		}
+		var nodeBytes = bytes.size() - start;
+		out.writeInt(changed.length);
+		for (var node : changed) {
+			out.writeInt(node);
+			writeLinks(out, storage.links()[node]);
+		}
+		var crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		var framed = new DataOutputStream(target);
+		framed.writeInt(bytes.size());
+		framed.writeInt((int) crc.getValue());
+		bytes.writeTo(target);
+		return nodeBytes;
+	}
+
+	public static HnswIndex load(Path file) throws IOException {
+		var size = Files.size(file);
+		var counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(file)));
+		try (var in = new DataInputStream(counting)) {
+			if (in.readInt() != MAGIC) throw new IOException("Not an HNSW index: " + file);
+			var version = in.readInt();
+			if (version != FORMAT_VERSION && version != SNAPSHOT_VERSION) {
+				throw new IOException("Unsupported HNSW index version " + version);
+			}
+			var dimension = in.readInt();
+			var maxConnections = in.readInt();
+			var efConstruction = in.readInt();
+			if (version == SNAPSHOT_VERSION) {
+				// The next flush writes a segmented snapshot in its place
+				return loadSnapshot(in, dimension, maxConnections, efConstruction);
+			}
+
+			var index = new HnswIndex(dimension, maxConnections, efConstruction, INITIAL_CAPACITY);
+			var crc = new CRC32();
+			while (counting.getCount() < size) {
+				var start = counting.getCount();
+				var length = size - start < SEGMENT_HEADER_BYTES ? -1 : in.readInt();
+				var checksum = length < 0 ? 0 : in.readInt();
+				if (length <= 0 || length > size - start - SEGMENT_HEADER_BYTES) {
+					truncate(file, start, size, "torn");
+					break;
+				}
+				var segment = new byte[length];
+				in.readFully(segment);
+				crc.reset();
+				crc.update(segment);
+				if ((int) crc.getValue() != checksum || !index.applySegment(segment)) {
+					truncate(file, start, size, "corrupt");
+					break;
+				}
+			}
+			index.flushedFile = file;
+			index.flushedSize = index.size;
+			return index;
+		}
+	}
+
+	/** Applies a segment read back, returning false if it does not parse. */
+	private boolean applySegment(byte[] segment) {
+		try (var in = new DataInputStream(new ByteArrayInputStream(segment))) {
+			var count = in.readInt();
+			var entry = in.readLong();
+			var newNodes = in.readInt();
+			var from = count - newNodes;
+			if (newNodes < 0 || from != size) return false;
+			var storage = ensureCapacity(count);
+			var start = in.available();
+			for (int node = from; node < count; node++) {
+				var offset = node * dimension;
+				for (int i = 0; i < dimension; i++) {
+					storage.vectors()[offset + i] = in.readFloat();
+				}
+				storage.links()[node] = readLinks(in);
+				storage.payloads()[node] = FieldValues.read(in);
+			}
+			liveBytes += start - in.available();
+			var changed = in.readInt();
+			for (int i = 0; i < changed; i++) {
+				var node = in.readInt();
+				if (node < 0 || node >= count) return false;
+				storage.links()[node] = readLinks(in);
+			}
+			if (in.available() != 0) return false;
+			size = count;
+			entryPoint = entry;
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/** Cuts the file at the segment that could not be applied, so the next flush appends right after the last good one. */
+	private static void truncate(Path file, long offset, long size, String reason) throws IOException {
+		LOG.warn("Dropping the %d bytes after the %s segment at offset %d of %s"
+				.formatted(size - offset, reason, offset, file));
+		try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(offset);
+		}
+	}
+
+	private static HnswIndex loadSnapshot(DataInputStream in, int dimension, int maxConnections, int efConstruction)
+			throws IOException {
+		var count = in.readInt();
+		var entryPoint = in.readLong();
+		var index = new HnswIndex(dimension, maxConnections, efConstruction, Math.max(count, INITIAL_CAPACITY));
+		var storage = index.storage;
+		for (int i = 0; i < count * index.dimension; i++) {
+			storage.vectors()[i] = in.readFloat();
+		}
+		for (int node = 0; node < count; node++) {
+			storage.links()[node] = readLinks(in);
+			storage.payloads()[node] = FieldValues.read(in);
+		}
+		index.size = count;
+		index.entryPoint = entryPoint;
+		return index;
+	}
+
+	private static void writeLinks(DataOutput out, int[][] nodeLinks) throws IOException {
+		out.writeByte(nodeLinks.length);
+		for (var neighbors : nodeLinks) {
+			out.writeShort(neighbors.length);
+			for (var neighbor : neighbors) out.writeInt(neighbor);
+		}
+	}
+
+	private static int[][] readLinks(DataInput in) throws IOException {
+		var nodeLinks = new int[in.readUnsignedByte()][];
+		for (int level = 0; level < nodeLinks.length; level++) {
+			var neighbors = new int[in.readUnsignedShort()];
+			for (int i = 0; i < neighbors.length; i++) neighbors[i] = in.readInt();
+			nodeLinks[level] = neighbors;
+		}
+		return nodeLinks;
+	}
+
+	private int[] searchLayer(Storage storage, float[] query, int queryOffset, int entry, int ef, int level) {
+		var visited = visitedPool.poll();
+		if (visited == null) visited = new VisitedList(storage.capacity());
+		visited.reset(storage.capacity());
+		try {
+			return searchLayer(storage, query, queryOffset, entry, ef, level, visited);
+		} finally {
+			visitedPool.offer(visited);
+		}
+	}
+
+	private int[] searchLayer(Storage storage, float[] query, int queryOffset, int entry, int ef, int level,
+							  VisitedList visited) {
+		var candidates = NodeQueue.max(ef);
+		var results = NodeQueue.min(ef + 1);
+		var entryScore = similarity(storage, query, queryOffset, entry);
+		visited.visit(entry);
+		candidates.push(entry, entryScore);
+		results.push(entry, entryScore);
+
+		while (!candidates.isEmpty()) {
+			if (results.size() >= ef && candidates.topScore() < results.topScore()) break;
+			var current = candidates.pop();
+			for (var neighbor : links(storage, current, level)) {
+				// Nodes added after this storage snapshot grew out of it
+				if (neighbor >= storage.capacity() || !visited.visit(neighbor)) continue;
+				var score = similarity(storage, query, queryOffset, neighbor);
+				if (results.size() < ef || score > results.topScore()) {
+					candidates.push(neighbor, score);
+					results.push(neighbor, score);
+					if (results.size() > ef) results.pop();
+				}
+			}
+		}
+		return results.drainBestFirst();
+	}
+
+	private int greedyClosest(Storage storage, float[] query, int queryOffset, int entry, int level) {
+		var current = entry;
+		var best = similarity(storage, query, queryOffset, current);
+		var improved = true;
+		while (improved) {
+			improved = false;
+			for (var neighbor : links(storage, current, level)) {
+				if (neighbor >= storage.capacity()) continue;
+				var score = similarity(storage, query, queryOffset, neighbor);
+				if (score > best) {
+					best = score;
+					current = neighbor;
+					improved = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * Neighbour selection heuristic: a candidate is kept only if it is closer to the base
+	 * than to every neighbour already kept, which preserves links across clusters.
+	 * Remaining slots are then filled with the closest pruned candidates.
+	 */
+	private int[] selectNeighbors(Storage storage, int baseOffset, int[] candidatesBestFirst, int maxConnections) {
+		if (candidatesBestFirst.length <= maxConnections) return candidatesBestFirst;
+		var vectors = storage.vectors();
+		var selected = new int[maxConnections];
+		var pruned = new int[candidatesBestFirst.length];
+		int count = 0;
+		int prunedCount = 0;
+		for (var candidate : candidatesBestFirst) {
+			if (count == maxConnections) break;
+			var candidateOffset = candidate * dimension;
+			var toBase = VectorMath.dot(vectors, baseOffset, vectors, candidateOffset, dimension);
+			var keep = true;
+			for (int i = 0; i < count; i++) {
+				if (VectorMath.dot(vectors, selected[i] * dimension, vectors, candidateOffset, dimension) > toBase) {
+					keep = false;
+					break;
+				}
+			}
+			if (keep) selected[count++] = candidate;
+			else pruned[prunedCount++] = candidate;
+		}
+		for (int i = 0; i < prunedCount && count < maxConnections; i++) {
+			selected[count++] = pruned[i];
+		}
+		return Arrays.copyOf(selected, count);
+	}
+
+	private void connect(Storage storage, int neighbor, int node, int level) {
+		var nodeLinks = storage.links()[neighbor];
+		var current = (int[]) LINKS.getAcquire(nodeLinks, level);
+		var maxConnections = maxConnections(level);
+		int[] updated;
+		if (current.length < maxConnections) {
+			updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = node;
+		} else {
+			var neighborOffset = neighbor * dimension;
+			var candidates = NodeQueue.max(current.length + 1);
+			for (var candidate : current) {
+				candidates.push(candidate, similarity(storage, storage.vectors(), neighborOffset, candidate));
+			}
+			candidates.push(node, similarity(storage, storage.vectors(), neighborOffset, node));
+			updated = selectNeighbors(storage, neighborOffset, candidates.drainBestFirst(), maxConnections);
+		}
+		LINKS.setRelease(nodeLinks, level, updated);
+		changedLinks.set(neighbor);
+	}
+
+	private int[] links(Storage storage, int node, int level) {
+		return (int[]) LINKS.getAcquire(storage.links()[node], level);
+	}
+
+	private float similarity(Storage storage, float[] query, int queryOffset, int node) {
+		return VectorMath.dot(query, queryOffset, storage.vectors(), node * dimension, dimension);
+	}
+
+	private Storage ensureCapacity(int required) {
+		var current = storage;
+		if (required <= current.capacity()) return current;
+		var capacity = Math.max(required, current.capacity() * 2);
+		var grown = new Storage(capacity,
+				Arrays.copyOf(current.vectors(), capacity * dimension),
+				Arrays.copyOf(current.links(), capacity),
+				Arrays.copyOf(current.payloads(), capacity));
+		storage = grown;
+		return grown;
+	}
+
+	private int maxConnections(int level) {
+		return level == 0 ? maxConnectionsLevel0 : maxConnections;
+	}
+
+	private int randomLevel() {
+		var level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+		return Math.min(level, MAX_LEVEL);
+	}
+
+	private void checkDimension(float[] vector) {
+		if (vector.length != dimension) {
+			throw new IllegalArgumentException("Expected dimension %d but got %d".formatted(dimension, vector.length));
+		}
+	}
+
+	private static long pack(int node, int level) {
+		return ((long) level << 32) | (node & 0xFFFFFFFFL);
+	}
+
+	private static int entryNode(long entry) {
+		return (int) entry;
+	}
+
+	private static int entryLevel(long entry) {
+		return (int) (entry >>> 32);
+	}
+
+	public record Neighbor(int node, float score, Object[] payload) {
+	}
+
+	private record Storage(int capacity, float[] vectors, int[][][] links, Object[][] payloads) {
+	}
+}
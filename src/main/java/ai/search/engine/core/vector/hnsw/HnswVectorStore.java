@@ -0,0 +1,76 @@
+package ai.search.engine.core.vector.hnsw;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.VectorStore;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import io.milvus.param.collection.FieldType;
+import io.smallrye.mutiny.Uni;
+import lombok.SneakyThrows;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link VectorStore} keeping every collection in an in-process {@link HnswIndex}.
+ * Each collection is persisted to {@code <directory>/<collection>.hnsw}, next to its
+ * {@code .schema}, where every flush appends what changed since the previous one,
+ * and reloaded from there on startup.
+ */
+@JBossLog
+@ThreadSafe
+public class HnswVectorStore implements VectorStore {
+
+	private final Path directory;
+	private final int maxConnections;
+	private final int efConstruction;
+	private final int efSearch;
+	private final ConcurrentMap<String, HnswVectorStoreCollection> collections = new ConcurrentHashMap<>();
+
+	@SneakyThrows
+	public HnswVectorStore(Path directory, int maxConnections, int efConstruction, int efSearch) {
+		this.directory = Files.createDirectories(directory);
+		this.maxConnections = maxConnections;
+		this.efConstruction = efConstruction;
+		this.efSearch = efSearch;
+	}
+
+	@Override
+	public Uni<VectorStoreCollection> getOrCreateCollection(String collectionName, List<FieldType> fieldTypes) {
+		return Uni.createFrom().item(() -> collections.computeIfAbsent(collectionName,
+				name -> open(name, fieldTypes)));
+	}
+
+	@Override
+	public void close() {
+		collections.values().forEach(collection -> collection.flush().await().indefinitely());
+		collections.clear();
+	}
+
+	@SneakyThrows
+	private HnswVectorStoreCollection open(String collectionName, List<FieldType> fieldTypes) {
+		var schemaFile = directory.resolve(collectionName + ".schema");
+		var indexFile = directory.resolve(collectionName + ".hnsw");
+		if (Files.exists(schemaFile)) {
+			var schema = CollectionSchema.load(schemaFile);
+			var index = Files.exists(indexFile)
+					? HnswIndex.load(indexFile)
+					: new HnswIndex(schema.dimension(), maxConnections, efConstruction);
+			LOG.info("Opened collection %s with %d vectors".formatted(collectionName, index.size()));
+			return new HnswVectorStoreCollection(schema, index, indexFile, efSearch);
+		}
+
+		if (fieldTypes.isEmpty()) {
+			throw new IllegalStateException("Collection " + collectionName + " does not exist");
+		}
+		var schema = CollectionSchema.of(fieldTypes);
+		schema.save(schemaFile);
+		LOG.info("Created collection " + collectionName);
+		return new HnswVectorStoreCollection(schema,
+				new HnswIndex(schema.dimension(), maxConnections, efConstruction), indexFile, efSearch);
+	}
+}
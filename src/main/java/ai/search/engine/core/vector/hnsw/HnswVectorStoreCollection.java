@@ -0,0 +1,93 @@
+package ai.search.engine.core.vector.hnsw;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.VectorHit;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.json.JsonObject;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collection of an {@link HnswVectorStore}. The graph is the index, so index creation and
+ * loading are no-ops, and {@code ef} may be overridden per search like in Milvus.
+ */
+@ThreadSafe
+class HnswVectorStoreCollection implements VectorStoreCollection {
+
+	private final CollectionSchema schema;
+	private final HnswIndex index;
+	private final Path indexFile;
+	private final int efSearch;
+
+	HnswVectorStoreCollection(CollectionSchema schema, HnswIndex index, Path indexFile, int efSearch) {
+		this.schema = schema;
+		this.index = index;
+		this.indexFile = indexFile;
+		this.efSearch = efSearch;
+	}
+
+	@Override
+	public Uni<Boolean> createIndexIfNotExists(String fieldName,
+											   String indexName,
+											   JsonObject indexParam,
+											   IndexType indexType,
+											   MetricType metricType) {
+		return Uni.createFrom().item(true);
+	}
+
+	@Override
+	public Uni<Long> insert(Map<String, List<?>> fieldAndValues) {
+		return Uni.createFrom().item(() -> {
+			var rows = schema.rows(fieldAndValues);
+			for (var row : rows) {
+				index.add(row.vector(), row.values());
+			}
+			return (long) rows.size();
+		});
+	}
+
+	@Override
+	public Uni<List<List<VectorHit>>> search(int searchK,
+											 List<float[]> embeddings,
+											 String embeddingFieldName,
+											 List<String> outFields,
+											 JsonObject extraSearchParam) {
+		return Uni.createFrom().item(() -> {
+			var ef = extraSearchParam.getInt("ef", efSearch);
+			return embeddings.stream()
+					.map(embedding -> index.search(embedding, searchK, ef)
+							.stream()
+							.map(neighbor -> new VectorHit(neighbor.node(), neighbor.score(),
+									schema.fields(neighbor.node(), neighbor.payload(),
+											() -> index.vector(neighbor.node()), outFields)))
+							.toList())
+					.toList();
+		}).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+	}
+
+	@Override
+	public Uni<Void> flush() {
+		return Uni.createFrom().item(() -> {
+			try {
+				index.flush(indexFile);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		}).replaceWithVoid();
+	}
+
+	@Override
+	public Uni<Void> load() {
+		return Uni.createFrom().voidItem();
+	}
+}
@@ -0,0 +1,96 @@
+package ai.search.engine.core.vector.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, similarity) pairs kept in primitive arrays.
+ * A max queue pops the most similar node first, a min queue the least similar one.
+ */
+final class NodeQueue {
+
+	private final boolean max;
+	private int[] nodes;
+	private float[] scores;
+	private int size;
+
+	NodeQueue(int initialCapacity, boolean max) {
+		this.max = max;
+		this.nodes = new int[Math.max(initialCapacity, 1)];
+		this.scores = new float[nodes.length];
+	}
+
+	static NodeQueue max(int initialCapacity) {
+		return new NodeQueue(initialCapacity, true);
+	}
+
+	static NodeQueue min(int initialCapacity) {
+		return new NodeQueue(initialCapacity, false);
+	}
+
+	void push(int node, float score) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, size * 2);
+			scores = Arrays.copyOf(scores, size * 2);
+		}
+		var index = size++;
+		while (index > 0) {
+			var parent = (index - 1) >>> 1;
+			if (!before(score, scores[parent])) break;
+			nodes[index] = nodes[parent];
+			scores[index] = scores[parent];
+			index = parent;
+		}
+		nodes[index] = node;
+		scores[index] = score;
+	}
+
+	int topNode() {
+		return nodes[0];
+	}
+
+	float topScore() {
+		return scores[0];
+	}
+
+	int pop() {
+		var top = nodes[0];
+		var lastNode = nodes[--size];
+		var lastScore = scores[size];
+		var index = 0;
+		while (true) {
+			var child = 2 * index + 1;
+			if (child >= size) break;
+			if (child + 1 < size && before(scores[child + 1], scores[child])) child++;
+			if (!before(scores[child], lastScore)) break;
+			nodes[index] = nodes[child];
+			scores[index] = scores[child];
+			index = child;
+		}
+		nodes[index] = lastNode;
+		scores[index] = lastScore;
+		return top;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Drains the queue into its nodes ordered from most to least similar. */
+	int[] drainBestFirst() {
+		var drained = new int[size];
+		if (max) {
+			for (int i = 0; i < drained.length; i++) drained[i] = pop();
+		} else {
+			for (int i = drained.length - 1; i >= 0; i--) drained[i] = pop();
+		}
+		return drained;
+	}
+
+	private boolean before(float a, float b) {
+		return max ? a > b : a < b;
+	}
+}
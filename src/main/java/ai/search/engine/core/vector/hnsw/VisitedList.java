@@ -0,0 +1,35 @@
+package ai.search.engine.core.vector.hnsw;
+
+import java.util.Arrays;
+
+/**
+ * Nodes visited by a search, cleared in constant time by moving to the next generation:
+ * a node was visited when its mark equals the current generation. The marks are only
+ * refilled once every 65535 searches, when the generation wraps around.
+ */
+final class VisitedList {
+
+	private char[] marks;
+	private char generation;
+
+	VisitedList(int capacity) {
+		this.marks = new char[capacity];
+	}
+
+	/** Forgets every visited node, growing to hold at least {@code capacity} nodes. */
+	void reset(int capacity) {
+		if (capacity > marks.length) marks = new char[capacity];
+		generation++;
+		if (generation == 0) {
+			Arrays.fill(marks, (char) 0);
+			generation = 1;
+		}
+	}
+
+	/** Marks {@code node} as visited, returning false if it already was. */
+	boolean visit(int node) {
+		if (marks[node] == generation) return false;
+		marks[node] = generation;
+		return true;
+	}
+}
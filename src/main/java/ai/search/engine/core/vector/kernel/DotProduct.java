@@ -0,0 +1,18 @@
+package ai.search.engine.core.vector.kernel;
+
+/**
+ * Dot product of two vectors stored at an offset of larger arrays.
+ */
+public interface DotProduct {
+
+	float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+	/** Dot product of a float vector with a vector of signed bytes widened to floats. */
+	float dot(float[] a, int aOffset, byte[] b, int bOffset, int length);
+
+	/** Dot product of a float vector with {@code length} little endian IEEE half precision codes. */
+	float dotFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length);
+
+	/** Dot product of a float vector with {@code length} little endian bfloat16 codes. */
+	float dotBFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length);
+}
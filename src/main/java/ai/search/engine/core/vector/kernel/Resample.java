@@ -0,0 +1,27 @@
+package ai.search.engine.core.vector.kernel;
+
+/**
+ * Separable 4-tap resampling of images, as used by bicubic interpolation.
+ * <p>
+ * Tap indexes and weights of {@code size} outputs are laid out tap-major: tap {@code k} of
+ * output {@code i} is at {@code k * size + i}.
+ */
+public interface Resample {
+
+	int TAPS = 4;
+
+	/**
+	 * Resamples one row of packed {@code 0xRRGGBB} pixels starting at {@code rowOffset} into
+	 * {@code size} values per channel, written to three planes {@code planeStride} apart
+	 * starting at {@code outOffset}.
+	 */
+	void horizontal(int[] pixels, int rowOffset, int[] taps, float[] weights, int size,
+					float[] out, int outOffset, int planeStride);
+
+	/**
+	 * Sums the {@code length} values of the four rows starting at {@code rowOffsets} with
+	 * {@code weights}, clamps the sum to {@code [0, 255]}, then writes {@code sum * scale + bias}.
+	 */
+	void vertical(float[] rows, int[] rowOffsets, float[] weights, float scale, float bias,
+				  float[] out, int outOffset, int length);
+}
@@ -0,0 +1,44 @@
+package ai.search.engine.core.vector.kernel;
+
+final class ScalarDotProduct implements DotProduct {
+
+	@Override
+	public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		float sum = 0f;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		float sum = 0f;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public float dotFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		float sum = 0f;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * Float.float16ToFloat(half(b, bOffset + 2 * i));
+		}
+		return sum;
+	}
+
+	@Override
+	public float dotBFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		float sum = 0f;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * Float.intBitsToFloat(half(b, bOffset + 2 * i) << 16);
+		}
+		return sum;
+	}
+
+	static short half(byte[] b, int offset) {
+		return (short) (b[offset] & 0xFF | b[offset + 1] << 8);
+	}
+}
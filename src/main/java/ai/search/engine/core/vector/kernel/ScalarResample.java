@@ -0,0 +1,45 @@
+package ai.search.engine.core.vector.kernel;
+
+final class ScalarResample implements Resample {
+
+	@Override
+	public void horizontal(int[] pixels, int rowOffset, int[] taps, float[] weights, int size,
+						   float[] out, int outOffset, int planeStride) {
+		horizontal(pixels, rowOffset, taps, weights, size, 0, out, outOffset, planeStride);
+	}
+
+	@Override
+	public void vertical(float[] rows, int[] rowOffsets, float[] weights, float scale, float bias,
+						 float[] out, int outOffset, int length) {
+		vertical(rows, rowOffsets, weights, scale, bias, 0, out, outOffset, length);
+	}
+
+	/** Resamples the outputs from {@code from} on, also used for the tail of the SIMD loop. */
+	static void horizontal(int[] pixels, int rowOffset, int[] taps, float[] weights, int size, int from,
+						   float[] out, int outOffset, int planeStride) {
+		for (int x = from; x < size; x++) {
+			float r = 0f, g = 0f, b = 0f;
+			for (int k = 0; k < TAPS; k++) {
+				var pixel = pixels[rowOffset + taps[k * size + x]];
+				var weight = weights[k * size + x];
+				r += ((pixel >> 16) & 0xFF) * weight;
+				g += ((pixel >> 8) & 0xFF) * weight;
+				b += (pixel & 0xFF) * weight;
+			}
+			out[outOffset + x] = r;
+			out[outOffset + planeStride + x] = g;
+			out[outOffset + 2 * planeStride + x] = b;
+		}
+	}
+
+	static void vertical(float[] rows, int[] rowOffsets, float[] weights, float scale, float bias, int from,
+						 float[] out, int outOffset, int length) {
+		for (int x = from; x < length; x++) {
+			var sum = 0f;
+			for (int k = 0; k < TAPS; k++) {
+				sum += rows[rowOffsets[k] + x] * weights[k];
+			}
+			out[outOffset + x] = Math.min(255f, Math.max(0f, sum)) * scale + bias;
+		}
+	}
+}
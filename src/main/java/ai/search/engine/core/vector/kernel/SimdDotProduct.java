@@ -0,0 +1,119 @@
+package ai.search.engine.core.vector.kernel;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Dot product on the widest SIMD registers of the CPU, accumulating lane-wise
+ * with fused multiply-adds and reducing once at the end.
+ */
+final class SimdDotProduct implements DotProduct {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	/**
+	 * As many bytes as there are float lanes, but never under the 64 bits of the smallest
+	 * vector shape: on 128 bit registers 8 bytes are loaded and widened in two parts of 4.
+	 */
+	private static final VectorSpecies<Byte> BYTE_SPECIES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(Math.max(64, SPECIES.length() * Byte.SIZE)));
+	private static final int PARTS = BYTE_SPECIES.length() / SPECIES.length();
+	private static final VectorSpecies<Integer> INT_SPECIES = SPECIES.withLanes(int.class);
+	/** Two byte codes for as many lanes as there are float lanes. */
+	private static final VectorSpecies<Byte> HALF_SPECIES = VectorSpecies.of(byte.class,
+			VectorShape.forBitSize(SPECIES.vectorBitSize() / 2));
+	private static final int FLOAT16_EXPONENT = 0x7C00;
+	private static final int FLOAT32_EXPONENT = 0x7F800000;
+
+	@Override
+	public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		var sum = FloatVector.zero(SPECIES);
+		var bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			var va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+			var vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+			sum = va.fma(vb, sum);
+		}
+		var result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * b[bOffset + i];
+		}
+		return result;
+	}
+
+	@Override
+	public float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		var sum = FloatVector.zero(SPECIES);
+		var bound = BYTE_SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += BYTE_SPECIES.length()) {
+			var bytes = ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i);
+			for (int part = 0; part < PARTS; part++) {
+				var va = FloatVector.fromArray(SPECIES, a, aOffset + i + part * SPECIES.length());
+				var vb = (FloatVector) bytes.convertShape(VectorOperators.B2F, SPECIES, part);
+				sum = va.fma(vb, sum);
+			}
+		}
+		var result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * b[bOffset + i];
+		}
+		return result;
+	}
+
+	/**
+	 * Widens the codes without a half precision conversion instruction: the exponent and
+	 * mantissa bits are moved into place and scaled by 2^112, the difference of the exponent
+	 * biases, which also normalizes subnormals. Infinities and NaNs get their exponent back.
+	 */
+	@Override
+	public float dotFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		var sum = FloatVector.zero(SPECIES);
+		var bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			var codes = halves(b, bOffset + 2 * i);
+			var magnitude = codes.and(0x7FFF);
+			var bits = ((FloatVector) magnitude.lanewise(VectorOperators.LSHL, 13).reinterpretAsFloats())
+					.mul(0x1p112f)
+					.reinterpretAsInts()
+					.or(codes.and(0x8000).lanewise(VectorOperators.LSHL, 16))
+					.lanewise(VectorOperators.OR, FLOAT32_EXPONENT, magnitude.compare(VectorOperators.GE, FLOAT16_EXPONENT));
+			var va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+			sum = va.fma((FloatVector) bits.reinterpretAsFloats(), sum);
+		}
+		var result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * Float.float16ToFloat(ScalarDotProduct.half(b, bOffset + 2 * i));
+		}
+		return result;
+	}
+
+	@Override
+	public float dotBFloat16(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+		var sum = FloatVector.zero(SPECIES);
+		var bound = SPECIES.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			var vb = (FloatVector) halves(b, bOffset + 2 * i).lanewise(VectorOperators.LSHL, 16).reinterpretAsFloats();
+			var va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+			sum = va.fma(vb, sum);
+		}
+		var result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < length; i++) {
+			result += a[aOffset + i] * Float.intBitsToFloat(ScalarDotProduct.half(b, bOffset + 2 * i) << 16);
+		}
+		return result;
+	}
+
+	/** Sign extended two byte codes, reinterpretation reads lanes in little endian order. */
+	private static IntVector halves(byte[] b, int offset) {
+		return (IntVector) ByteVector.fromArray(HALF_SPECIES, b, offset)
+				.reinterpretAsShorts()
+				.convertShape(VectorOperators.S2I, INT_SPECIES, 0);
+	}
+}
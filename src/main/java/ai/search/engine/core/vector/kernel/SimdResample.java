@@ -0,0 +1,64 @@
+package ai.search.engine.core.vector.kernel;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Resampling on the widest SIMD registers of the CPU. Rows gather the pixels of a lane per
+ * output and unpack the three channels lane-wise, columns are plain contiguous loads.
+ */
+final class SimdResample implements Resample {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	/** As many ints as there are float lanes, so a gathered pixel converts lane for lane. */
+	private static final VectorSpecies<Integer> INT_SPECIES = VectorSpecies.of(int.class, SPECIES.vectorShape());
+
+	@Override
+	public void horizontal(int[] pixels, int rowOffset, int[] taps, float[] weights, int size,
+						   float[] out, int outOffset, int planeStride) {
+		var bound = SPECIES.loopBound(size);
+		int x = 0;
+		for (; x < bound; x += SPECIES.length()) {
+			var r = FloatVector.zero(SPECIES);
+			var g = FloatVector.zero(SPECIES);
+			var b = FloatVector.zero(SPECIES);
+			for (int k = 0; k < TAPS; k++) {
+				var pixel = IntVector.fromArray(INT_SPECIES, pixels, rowOffset, taps, k * size + x);
+				var weight = FloatVector.fromArray(SPECIES, weights, k * size + x);
+				r = channel(pixel, 16).fma(weight, r);
+				g = channel(pixel, 8).fma(weight, g);
+				b = channel(pixel, 0).fma(weight, b);
+			}
+			r.intoArray(out, outOffset + x);
+			g.intoArray(out, outOffset + planeStride + x);
+			b.intoArray(out, outOffset + 2 * planeStride + x);
+		}
+		ScalarResample.horizontal(pixels, rowOffset, taps, weights, size, x, out, outOffset, planeStride);
+	}
+
+	private static FloatVector channel(IntVector pixel, int shift) {
+		return (FloatVector) pixel.lanewise(VectorOperators.LSHR, shift).and(0xFF)
+				.convert(VectorOperators.I2F, 0);
+	}
+
+	@Override
+	public void vertical(float[] rows, int[] rowOffsets, float[] weights, float scale, float bias,
+						 float[] out, int outOffset, int length) {
+		var w0 = FloatVector.broadcast(SPECIES, weights[0]);
+		var w1 = FloatVector.broadcast(SPECIES, weights[1]);
+		var w2 = FloatVector.broadcast(SPECIES, weights[2]);
+		var w3 = FloatVector.broadcast(SPECIES, weights[3]);
+		var bound = SPECIES.loopBound(length);
+		int x = 0;
+		for (; x < bound; x += SPECIES.length()) {
+			var sum = FloatVector.fromArray(SPECIES, rows, rowOffsets[0] + x).mul(w0);
+			sum = FloatVector.fromArray(SPECIES, rows, rowOffsets[1] + x).fma(w1, sum);
+			sum = FloatVector.fromArray(SPECIES, rows, rowOffsets[2] + x).fma(w2, sum);
+			sum = FloatVector.fromArray(SPECIES, rows, rowOffsets[3] + x).fma(w3, sum);
+			sum.max(0f).min(255f).mul(scale).add(bias).intoArray(out, outOffset + x);
+		}
+		ScalarResample.vertical(rows, rowOffsets, weights, scale, bias, x, out, outOffset, length);
+	}
+}
@@ -0,0 +1,36 @@
+package ai.search.engine.core.vector.kernel;
+
+import lombok.extern.jbosslog.JBossLog;
+
+/**
+ * Picks the SIMD kernels when the JVM was started with {@code --add-modules jdk.incubator.vector},
+ * falling back to plain loops otherwise or when {@code -Dvector.kernels.simd=false} is set.
+ */
+@JBossLog
+public class VectorKernels {
+
+	private static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+			&& Boolean.parseBoolean(System.getProperty("vector.kernels.simd", "true"));
+	private static final DotProduct DOT_PRODUCT = SIMD ? new SimdDotProduct() : new ScalarDotProduct();
+	private static final Resample RESAMPLE = SIMD ? new SimdResample() : new ScalarResample();
+
+	static {
+		if (!SIMD) LOG.warn("jdk.incubator.vector is not enabled or disabled, vector kernels run without SIMD");
+	}
+
+	private VectorKernels() {
+		throw new IllegalArgumentException("No VectorKernels!");
+	}
+
+	public static boolean simd() {
+		return SIMD;
+	}
+
+	public static DotProduct dotProduct() {
+		return DOT_PRODUCT;
+	}
+
+	public static Resample resample() {
+		return RESAMPLE;
+	}
+}
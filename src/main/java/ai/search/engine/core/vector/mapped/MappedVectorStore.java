@@ -0,0 +1,84 @@
+package ai.search.engine.core.vector.mapped;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.VectorStore;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import ai.search.engine.core.vector.quant.Quantization;
+import io.milvus.param.collection.FieldType;
+import io.smallrye.mutiny.Uni;
+import lombok.SneakyThrows;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link VectorStore} keeping every collection in memory-mapped files under {@code directory}:
+ * {@code <collection>.schema}, {@code <collection>.vec} and {@code <collection>.rows}, plus
+ * {@code <collection>.quant} and {@code <collection>.codes} when vectors are quantized.
+ * Searches are exact, or re-score quantized candidates exactly, which suits collections up
+ * to a few million vectors.
+ */
+@JBossLog
+@ThreadSafe
+public class MappedVectorStore implements VectorStore {
+
+	private final Path directory;
+	private final ForkJoinPool pool;
+	private final Quantization quantization;
+	private final ConcurrentMap<String, MappedVectorStoreCollection> collections = new ConcurrentHashMap<>();
+
+	/**
+	 * @param parallelism threads scanning a collection, 0 to share the common fork-join pool
+	 */
+	@SneakyThrows
+	public MappedVectorStore(Path directory, int parallelism, Quantization quantization) {
+		this.directory = Files.createDirectories(directory);
+		this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+		this.quantization = quantization;
+	}
+
+	@Override
+	public Uni<VectorStoreCollection> getOrCreateCollection(String collectionName, List<FieldType> fieldTypes) {
+		return Uni.createFrom().item(() -> collections.computeIfAbsent(collectionName,
+				name -> open(name, fieldTypes)));
+	}
+
+	@Override
+	@SneakyThrows
+	public void close() {
+		for (var collection : collections.values()) {
+			collection.close();
+		}
+		collections.clear();
+		if (pool != ForkJoinPool.commonPool()) pool.shutdown();
+	}
+
+	@SneakyThrows
+	private MappedVectorStoreCollection open(String collectionName, List<FieldType> fieldTypes) {
+		var schemaFile = directory.resolve(collectionName + ".schema");
+		CollectionSchema schema;
+		if (Files.exists(schemaFile)) {
+			schema = CollectionSchema.load(schemaFile);
+		} else if (fieldTypes.isEmpty()) {
+			throw new IllegalStateException("Collection " + collectionName + " does not exist");
+		} else {
+			schema = CollectionSchema.of(fieldTypes);
+			schema.save(schemaFile);
+			LOG.info("Created collection " + collectionName);
+		}
+
+		return new MappedVectorStoreCollection(schema,
+				directory.resolve(collectionName + ".vec"),
+				directory.resolve(collectionName + ".rows"),
+				directory.resolve(collectionName + ".quant"),
+				directory.resolve(collectionName + ".codes"),
+				pool,
+				quantization);
+	}
+}
@@ -0,0 +1,495 @@
+package ai.search.engine.core.vector.mapped;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.FieldValues;
+import ai.search.engine.core.vector.TopK;
+import ai.search.engine.core.vector.VectorHit;
+import ai.search.engine.core.vector.VectorMath;
+import ai.search.engine.core.vector.VectorStoreCollection;
+import ai.search.engine.core.vector.quant.Quantization;
+import ai.search.engine.core.vector.quant.Quantizer;
+import com.google.common.io.CountingInputStream;
+import io.milvus.param.IndexType;
+import io.milvus.param.MetricType;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.json.JsonObject;
+import lombok.extern.jbosslog.JBossLog;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.IntStream;
+
+/**
+ * Exact search over a flat file of unit length float32 rows mapped into memory.
+ * <p>
+ * The {@code .vec} file holds a small header followed by fixed stride little endian rows,
+ * mapped in segments of at most 2 GB, and the {@code .rows} side table holds the scalar
+ * fields of each row. Searches scan every row with the SIMD dot product kernel, split
+ * across a fork-join pool, so they are exact and keep the vectors off the heap.
+ * <p>
+ * With {@link Quantization} enabled, a quantizer is trained on a sample of the rows once the
+ * collection holds enough of them, and every row is also kept as a byte code in memory and in
+ * the {@code .codes} file. Searches then scan the codes with asymmetric distances and re-score
+ * only the best candidates against the mapped float rows.
+ */
+@JBossLog
+@ThreadSafe
+class MappedVectorStoreCollection implements VectorStoreCollection {
+
+	private static final int MAGIC = 0x56454353;
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_BYTES = 16;
+	/** Rows copied from the mapping into a scratch array per kernel pass. */
+	private static final int BLOCK_ROWS = 256;
+	/** Rows scanned by a single fork-join task. */
+	private static final int SPLIT_ROWS = 16_384;
+
+	private final CollectionSchema schema;
+	private final int dimension;
+	private final int stride;
+	private final int rowsPerSegment;
+	private final FileChannel vectorChannel;
+	private final FileOutputStream rowsFile;
+	private final DataOutputStream rowsOut;
+	private final ForkJoinPool pool;
+	private final Quantization quantization;
+	private final Path quantizerPath;
+	private final FileChannel codesChannel;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile Snapshot snapshot;
+
+	MappedVectorStoreCollection(CollectionSchema schema,
+								Path vectorPath,
+								Path rowsPath,
+								Path quantizerPath,
+								Path codesPath,
+								ForkJoinPool pool,
+								Quantization quantization) throws IOException {
+		this(schema, vectorPath, rowsPath, quantizerPath, codesPath, pool, quantization,
+				Integer.MAX_VALUE / (schema.dimension() * Float.BYTES));
+	}
+
+	/**
+	 * @param rowsPerSegment rows per mapped segment, segments must stay under 2 GB
+	 */
+	MappedVectorStoreCollection(CollectionSchema schema,
+								Path vectorPath,
+								Path rowsPath,
+								Path quantizerPath,
+								Path codesPath,
+								ForkJoinPool pool,
+								Quantization quantization,
+								int rowsPerSegment) throws IOException {
+		this.schema = schema;
+		this.dimension = schema.dimension();
+		this.stride = dimension * Float.BYTES;
+		this.rowsPerSegment = rowsPerSegment;
+		this.pool = pool;
+		this.quantization = quantization;
+		this.quantizerPath = quantizerPath;
+		this.vectorChannel = FileChannel.open(vectorPath, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		var vectorRows = openVectors();
+		var rows = new ArrayList<Object[]>();
+		var complete = readRows(rowsPath, rows);
+		// A crash may leave either file ahead of the other, keep the rows both agree on
+		var count = Math.min(vectorRows, rows.size());
+		var vectorBytes = HEADER_BYTES + (long) count * stride;
+		if (vectorChannel.size() > vectorBytes) vectorChannel.truncate(vectorBytes);
+		if (!complete || rows.size() > count) rewriteRows(rowsPath, rows.subList(0, count));
+
+		this.rowsFile = new FileOutputStream(rowsPath.toFile(), true);
+		this.rowsOut = new DataOutputStream(new BufferedOutputStream(rowsFile));
+		this.snapshot = map(new Snapshot(0, new FloatBuffer[0], new Object[0][], null, null),
+				count, rows.subList(0, count).toArray(Object[][]::new));
+		LOG.info("Mapped %d vectors from %s".formatted(count, vectorPath));
+
+		// Without quantization any existing codes are left alone for a later restart that enables it
+		this.codesChannel = quantization.enabled() ? FileChannel.open(codesPath, StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE) : null;
+		if (quantization.enabled()) {
+			this.snapshot = openCodes(snapshot);
+			trainIfNeeded();
+		}
+	}
+
+	@Override
+	public Uni<Boolean> createIndexIfNotExists(String fieldName,
+											   String indexName,
+											   JsonObject indexParam,
+											   IndexType indexType,
+											   MetricType metricType) {
+		return Uni.createFrom().item(true);
+	}
+
+	/**
+	 * Appends the rows to the vector file, then to the codes, and only then to the side table,
+	 * so a failed write never leaves side table rows without their vectors.
+	 */
+	@Override
+	public Uni<Long> insert(Map<String, List<?>> fieldAndValues) {
+		return Uni.createFrom().item(() -> {
+			var rows = schema.rows(fieldAndValues);
+			writeLock.lock();
+			try {
+				var current = snapshot;
+				var buffer = ByteBuffer.allocate(rows.size() * stride).order(ByteOrder.LITTLE_ENDIAN);
+				var values = grow(current.rows(), current.count() + rows.size());
+				var rowBytes = new ByteArrayOutputStream();
+				var rowsData = new DataOutputStream(rowBytes);
+				var quantizer = current.quantizer();
+				var codes = quantizer == null ? null : grow(current.codes(),
+						Math.multiplyExact(current.count() + rows.size(), quantizer.codeSize()));
+				for (int i = 0; i < rows.size(); i++) {
+					var row = rows.get(i);
+					var normalized = VectorMath.normalize(row.vector());
+					buffer.asFloatBuffer().put(i * dimension, normalized);
+					FieldValues.write(rowsData, row.values());
+					values[current.count() + i] = row.values();
+					if (quantizer != null) {
+						quantizer.encode(normalized, 0, codes, (current.count() + i) * quantizer.codeSize());
+					}
+				}
+
+				write(vectorChannel, buffer, HEADER_BYTES + (long) current.count() * stride);
+				if (quantizer != null) {
+					var codeSize = quantizer.codeSize();
+					write(codesChannel, ByteBuffer.wrap(codes, current.count() * codeSize, rows.size() * codeSize),
+							(long) current.count() * codeSize);
+				}
+				rowBytes.writeTo(rowsOut);
+				snapshot = map(current, current.count() + rows.size(), values).withCodes(quantizer, codes);
+				return (long) rows.size();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				writeLock.unlock();
+			}
+		});
+	}
+
+	@Override
+	public Uni<List<List<VectorHit>>> search(int searchK,
+											 List<float[]> embeddings,
+											 String embeddingFieldName,
+											 List<String> outFields,
+											 JsonObject extraSearchParam) {
+		return Uni.createFrom().<List<List<VectorHit>>>item(() -> {
+			var current = snapshot;
+			var results = new ArrayList<List<VectorHit>>(embeddings.size());
+			for (var embedding : embeddings) {
+				if (embedding.length != dimension) {
+					throw new IllegalArgumentException("Expected dimension %d but got %d"
+							.formatted(dimension, embedding.length));
+				}
+				var query = VectorMath.normalize(embedding);
+				var topK = current.quantizer() == null
+						? pool.invoke(new ScanTask(current, query, null, searchK, 0, current.count()))
+						: rescore(current, query, searchK, pool.invoke(new ScanTask(current, query,
+						current.quantizer().scorer(query), searchK * quantization.rerank(), 0, current.count())));
+				results.add(Arrays.stream(topK.drainBestFirst())
+						.map(entry -> new VectorHit(entry.id(), entry.score(),
+								schema.fields(entry.id(), current.rows()[(int) entry.id()],
+									() -> readRow(current, (int) entry.id()), outFields)))
+						.toList());
+			}
+			return results;
+		}).runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+	}
+
+	@Override
+	public Uni<Void> flush() {
+		return Uni.createFrom().item(() -> {
+			writeLock.lock();
+			try {
+				rowsOut.flush();
+				rowsFile.getChannel().force(false);
+				vectorChannel.force(false);
+				if (codesChannel != null) codesChannel.force(false);
+				trainIfNeeded();
+				return null;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				writeLock.unlock();
+			}
+		}).replaceWithVoid();
+	}
+
+	@Override
+	public Uni<Void> load() {
+		return Uni.createFrom().voidItem();
+	}
+
+	void close() throws IOException {
+		writeLock.lock();
+		try {
+			rowsOut.close();
+			vectorChannel.force(false);
+			vectorChannel.close();
+			if (codesChannel != null) codesChannel.close();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private int openVectors() throws IOException {
+		var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		if (vectorChannel.size() == 0) {
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(dimension).putInt(0).flip();
+			vectorChannel.write(header, 0);
+			return 0;
+		}
+
+		vectorChannel.read(header, 0);
+		header.flip();
+		if (header.getInt() != MAGIC) throw new IOException("Not a vector file");
+		var version = header.getInt();
+		if (version != FORMAT_VERSION) throw new IOException("Unsupported vector file version " + version);
+		var fileDimension = header.getInt();
+		if (fileDimension != dimension) {
+			throw new IOException("Vector file has dimension %d instead of %d".formatted(fileDimension, dimension));
+		}
+		return Math.toIntExact((vectorChannel.size() - HEADER_BYTES) / stride);
+	}
+
+	/**
+	 * Reads the side table into {@code rows}, returning false when it ends with a row torn by a crash.
+	 */
+	private static boolean readRows(Path rowsPath, List<Object[]> rows) throws IOException {
+		if (!Files.exists(rowsPath)) return true;
+		var size = Files.size(rowsPath);
+		var counting = new CountingInputStream(new BufferedInputStream(Files.newInputStream(rowsPath)));
+		var read = 0L;
+		try (var in = new DataInputStream(counting)) {
+			while (read < size) {
+				rows.add(FieldValues.read(in));
+				read = counting.getCount();
+			}
+		} catch (EOFException e) {
+			return false;
+		}
+		return true;
+	}
+
+	private static void rewriteRows(Path rowsPath, List<Object[]> rows) throws IOException {
+		LOG.warn("Truncating %s to %d rows".formatted(rowsPath, rows.size()));
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(rowsPath)))) {
+			for (var row : rows) {
+				FieldValues.write(out, row);
+			}
+		}
+	}
+
+	/** Maps the rows appended since {@code previous}, reusing its complete segments. */
+	private Snapshot map(Snapshot previous, int count, Object[][] rows) throws IOException {
+		var numSegments = (count + rowsPerSegment - 1) / rowsPerSegment;
+		var segments = Arrays.copyOf(previous.segments(), numSegments);
+		var firstToMap = previous.count() / rowsPerSegment;
+		for (int segment = firstToMap; segment < numSegments; segment++) {
+			var firstRow = (long) segment * rowsPerSegment;
+			var segmentRows = Math.min(rowsPerSegment, count - firstRow);
+			segments[segment] = vectorChannel.map(FileChannel.MapMode.READ_ONLY,
+							HEADER_BYTES + firstRow * stride, segmentRows * stride)
+					.order(ByteOrder.LITTLE_ENDIAN)
+					.asFloatBuffer();
+		}
+		return new Snapshot(count, segments, rows, previous.quantizer(), previous.codes());
+	}
+
+	/** Keeps the top {@code k} of the quantized candidates by their exact score. */
+	private TopK rescore(Snapshot current, float[] query, int k, TopK candidates) {
+		var topK = new TopK(k);
+		var row = new float[dimension];
+		for (var candidate : candidates.drainBestFirst()) {
+			readRow(current, (int) candidate.id(), row, 0);
+			topK.offer(candidate.id(), VectorMath.dot(query, 0, row, 0, dimension));
+		}
+		return topK;
+	}
+
+	private float[] readRow(Snapshot current, int row) {
+		var vector = new float[dimension];
+		readRow(current, row, vector, 0);
+		return vector;
+	}
+
+	private void readRow(Snapshot current, int row, float[] destination, int offset) {
+		current.segments()[row / rowsPerSegment].get((row % rowsPerSegment) * dimension, destination, offset, dimension);
+	}
+
+	/** Loads the stored quantizer and its codes, encoding the rows a crash left without one. */
+	private Snapshot openCodes(Snapshot current) throws IOException {
+		if (!Files.exists(quantizerPath)) return current;
+		var quantizer = Quantizer.load(quantizerPath);
+		if (quantizer.type() != quantization.type() || quantizer.dimension() != dimension) {
+			LOG.info("Discarding %s quantizer %s, collection is configured for %s"
+					.formatted(quantizer.type(), quantizerPath, quantization.type()));
+			Files.delete(quantizerPath);
+			codesChannel.truncate(0);
+			return current;
+		}
+
+		var codeSize = quantizer.codeSize();
+		var codes = new byte[Math.multiplyExact(current.count(), codeSize)];
+		var stored = (int) Math.min(current.count(), codesChannel.size() / codeSize);
+		var buffer = ByteBuffer.wrap(codes, 0, stored * codeSize);
+		while (buffer.hasRemaining()) {
+			if (codesChannel.read(buffer, buffer.position()) < 0) throw new EOFException("Truncated " + quantizerPath);
+		}
+		codesChannel.truncate((long) stored * codeSize);
+		if (stored < current.count()) {
+			LOG.warn("Encoding %d rows missing from the codes of %s".formatted(current.count() - stored, quantizerPath));
+			encode(current, quantizer, codes, stored, current.count());
+			write(codesChannel, ByteBuffer.wrap(codes, stored * codeSize, (current.count() - stored) * codeSize),
+					(long) stored * codeSize);
+		}
+		return current.withCodes(quantizer, codes);
+	}
+
+	/**
+	 * Trains the quantizer on an evenly spread sample once the collection is large enough,
+	 * writing the codes before the quantizer so a crash in between only costs a retraining.
+	 */
+	private void trainIfNeeded() throws IOException {
+		var current = snapshot;
+		if (!quantization.enabled() || current.quantizer() != null || current.count() < quantization.trainSize()) {
+			return;
+		}
+
+		var start = System.nanoTime();
+		var sampleSize = quantization.trainSize();
+		var sample = new float[sampleSize * dimension];
+		for (int i = 0; i < sampleSize; i++) {
+			readRow(current, (int) ((long) i * current.count() / sampleSize), sample, i * dimension);
+		}
+		var quantizer = pool.submit(() -> quantization.train(sample, sampleSize, dimension)).join();
+		var codes = new byte[Math.multiplyExact(current.count(), quantizer.codeSize())];
+		encode(current, quantizer, codes, 0, current.count());
+
+		codesChannel.truncate(0);
+		write(codesChannel, ByteBuffer.wrap(codes), 0);
+		codesChannel.force(false);
+		Quantizer.save(quantizer, quantizerPath);
+		snapshot = current.withCodes(quantizer, codes);
+		LOG.info("Trained %s quantizer on %d of %d rows in %d ms, %d bytes per vector instead of %d".formatted(
+				quantizer.type(), sampleSize, current.count(), (System.nanoTime() - start) / 1_000_000,
+				quantizer.codeSize(), stride));
+	}
+
+	private void encode(Snapshot current, Quantizer quantizer, byte[] codes, int from, int to) {
+		pool.submit(() -> IntStream.range(from, to).parallel().forEach(row -> {
+			var vector = new float[dimension];
+			readRow(current, row, vector, 0);
+			quantizer.encode(vector, 0, codes, row * quantizer.codeSize());
+		})).join();
+	}
+
+	private static byte[] grow(byte[] codes, int length) {
+		if (codes.length >= length) return codes;
+		return Arrays.copyOf(codes, Math.max(length, (int) Math.min(Integer.MAX_VALUE - 8, codes.length * 2L)));
+	}
+
+	private static Object[][] grow(Object[][] rows, int length) {
+		if (rows.length >= length) return rows;
+		return Arrays.copyOf(rows, Math.max(length, (int) Math.min(Integer.MAX_VALUE - 8, rows.length * 2L)));
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * Rows visible to searches. Appends only ever write past {@code count}, so a snapshot can
+	 * share the growing rows and codes arrays with the ones published after it.
+	 */
+	private record Snapshot(int count, FloatBuffer[] segments, Object[][] rows, Quantizer quantizer, byte[] codes) {
+
+		Snapshot withCodes(Quantizer quantizer, byte[] codes) {
+			return new Snapshot(count, segments, rows, quantizer, codes);
+		}
+	}
+
+	private final class ScanTask extends RecursiveTask<TopK> {
+
+		private final Snapshot snapshot;
+		private final float[] query;
+		private final Quantizer.Scorer scorer;
+		private final int k;
+		private final int from;
+		private final int to;
+
+		/**
+		 * @param scorer scores the quantized codes instead of the float rows when not null
+		 */
+		private ScanTask(Snapshot snapshot, float[] query, Quantizer.Scorer scorer, int k, int from, int to) {
+			this.snapshot = snapshot;
+			this.query = query;
+			this.scorer = scorer;
+			this.k = k;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (to - from > SPLIT_ROWS) {
+				var middle = (from + to) >>> 1;
+				var left = new ScanTask(snapshot, query, scorer, k, from, middle);
+				left.fork();
+				var right = new ScanTask(snapshot, query, scorer, k, middle, to).compute();
+				return right.merge(left.join());
+			}
+
+			var topK = new TopK(k);
+			if (scorer != null) {
+				var codeSize = snapshot.quantizer().codeSize();
+				for (int row = from; row < to; row++) {
+					topK.offer(row, scorer.score(snapshot.codes(), row * codeSize));
+				}
+				return topK;
+			}
+
+			var block = new float[BLOCK_ROWS * dimension];
+			var row = from;
+			while (row < to) {
+				var segment = row / rowsPerSegment;
+				var segmentRow = row % rowsPerSegment;
+				// Never let a block straddle two mapped segments
+				var rows = Math.min(Math.min(BLOCK_ROWS, to - row), rowsPerSegment - segmentRow);
+				snapshot.segments()[segment].get(segmentRow * dimension, block, 0, rows * dimension);
+				for (int i = 0; i < rows; i++) {
+					topK.offer(row + i, VectorMath.dot(query, 0, block, i * dimension, dimension));
+				}
+				row += rows;
+			}
+			return topK;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package ai.search.engine.core.vector.quant;
+
+import ai.search.engine.core.vector.HalfPrecision;
+import ai.search.engine.core.vector.kernel.VectorKernels;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Stores every dimension as a little endian float16 or bfloat16, half the size of float32
+ * without any training: the codes only depend on the vector. Unit length embeddings stay
+ * within a few 1e-3 of their dot products, so the quantized ranking rarely needs re-scoring.
+ */
+public final class HalfPrecisionQuantizer implements Quantizer {
+
+	private final QuantizationType type;
+	private final HalfPrecision precision;
+	private final int dimension;
+
+	HalfPrecisionQuantizer(QuantizationType type, int dimension) {
+		this.type = type;
+		this.precision = switch (type) {
+			case FP16 -> HalfPrecision.FLOAT16;
+			case BF16 -> HalfPrecision.BFLOAT16;
+			default -> throw new IllegalArgumentException("Not a half precision type: " + type);
+		};
+		this.dimension = dimension;
+	}
+
+	@Override
+	public QuantizationType type() {
+		return type;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int codeSize() {
+		return dimension * Short.BYTES;
+	}
+
+	@Override
+	public void encode(float[] vector, int vectorOffset, byte[] codes, int codesOffset) {
+		for (int i = 0; i < dimension; i++) {
+			var half = precision.toHalf(vector[vectorOffset + i]);
+			codes[codesOffset + 2 * i] = (byte) half;
+			codes[codesOffset + 2 * i + 1] = (byte) (half >>> 8);
+		}
+	}
+
+	/** The codes are widened and multiplied in SIMD lanes by a kernel picked once per query. */
+	@Override
+	public Scorer scorer(float[] query) {
+		var kernel = VectorKernels.dotProduct();
+		return switch (precision) {
+			case FLOAT16 -> (codes, offset) -> kernel.dotFloat16(query, 0, codes, offset, dimension);
+			case BFLOAT16 -> (codes, offset) -> kernel.dotBFloat16(query, 0, codes, offset, dimension);
+		};
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(dimension);
+	}
+
+	static HalfPrecisionQuantizer read(QuantizationType type, DataInput in) throws IOException {
+		return new HalfPrecisionQuantizer(type, in.readInt());
+	}
+}
@@ -0,0 +1,196 @@
+package ai.search.engine.core.vector.quant;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Splits vectors into {@code subspaces} contiguous slices and replaces each slice by the
+ * index of its nearest of 256 centroids, learnt per subspace with k-means.
+ * A query is scored against a code by summing one precomputed slice-centroid dot product
+ * per subspace.
+ */
+public final class ProductQuantizer implements Quantizer {
+
+	public static final int CENTROIDS = 256;
+
+	private final int dimension;
+	private final int subspaces;
+	private final int subDimension;
+	/** Centroid {@code c} of subspace {@code s} starts at {@code (s * CENTROIDS + c) * subDimension}. */
+	private final float[] centroids;
+	private final float[] squaredNorms;
+
+	private ProductQuantizer(int dimension, int subspaces, float[] centroids) {
+		this.dimension = dimension;
+		this.subspaces = subspaces;
+		this.subDimension = dimension / subspaces;
+		this.centroids = centroids;
+		this.squaredNorms = new float[subspaces * CENTROIDS];
+		for (int i = 0; i < squaredNorms.length; i++) {
+			squaredNorms[i] = dot(centroids, i * subDimension, centroids, i * subDimension, subDimension);
+		}
+	}
+
+	/**
+	 * Runs k-means on every subspace in parallel, on the fork-join pool of the calling task.
+	 */
+	public static ProductQuantizer train(float[] sample, int count, int dimension, int subspaces, int iterations) {
+		if (dimension % subspaces != 0) {
+			throw new IllegalArgumentException("%d subspaces do not divide dimension %d".formatted(subspaces, dimension));
+		}
+		if (count < CENTROIDS) {
+			throw new IllegalArgumentException("Need at least %d training vectors but got %d".formatted(CENTROIDS, count));
+		}
+
+		var subDimension = dimension / subspaces;
+		var centroids = new float[subspaces * CENTROIDS * subDimension];
+		IntStream.range(0, subspaces).parallel().forEach(subspace -> {
+			var slices = new float[count * subDimension];
+			for (int row = 0; row < count; row++) {
+				System.arraycopy(sample, row * dimension + subspace * subDimension, slices, row * subDimension, subDimension);
+			}
+			var trained = kMeans(slices, count, subDimension, iterations, new Random(subspace));
+			System.arraycopy(trained, 0, centroids, subspace * CENTROIDS * subDimension, trained.length);
+		});
+		return new ProductQuantizer(dimension, subspaces, centroids);
+	}
+
+	private static float[] kMeans(float[] points, int count, int dimension, int iterations, Random random) {
+		var centroids = new float[CENTROIDS * dimension];
+		// Seed with distinct sample points
+		var seeds = random.ints(0, count).distinct().limit(CENTROIDS).toArray();
+		for (int c = 0; c < CENTROIDS; c++) {
+			System.arraycopy(points, seeds[c] * dimension, centroids, c * dimension, dimension);
+		}
+
+		var assignments = new int[count];
+		var sums = new float[CENTROIDS * dimension];
+		var sizes = new int[CENTROIDS];
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			var norms = new float[CENTROIDS];
+			for (int c = 0; c < CENTROIDS; c++) {
+				norms[c] = dot(centroids, c * dimension, centroids, c * dimension, dimension);
+			}
+			var changed = 0;
+			for (int point = 0; point < count; point++) {
+				var nearest = nearest(points, point * dimension, centroids, norms, 0, dimension);
+				if (iteration == 0 || nearest != assignments[point]) changed++;
+				assignments[point] = nearest;
+			}
+			if (changed == 0) break;
+
+			Arrays.fill(sums, 0f);
+			Arrays.fill(sizes, 0);
+			for (int point = 0; point < count; point++) {
+				var c = assignments[point];
+				sizes[c]++;
+				for (int i = 0; i < dimension; i++) {
+					sums[c * dimension + i] += points[point * dimension + i];
+				}
+			}
+			for (int c = 0; c < CENTROIDS; c++) {
+				if (sizes[c] == 0) {
+					// Restart empty clusters from a random point rather than letting them die
+					System.arraycopy(points, random.nextInt(count) * dimension, centroids, c * dimension, dimension);
+					continue;
+				}
+				for (int i = 0; i < dimension; i++) {
+					centroids[c * dimension + i] = sums[c * dimension + i] / sizes[c];
+				}
+			}
+		}
+		return centroids;
+	}
+
+	/** Nearest centroid in euclidean distance, ranked by {@code |c|^2 - 2 x.c}. */
+	private static int nearest(float[] vector, int offset, float[] centroids, float[] norms, int normsOffset,
+							   int dimension) {
+		var best = 0;
+		var bestDistance = Float.POSITIVE_INFINITY;
+		for (int c = 0; c < CENTROIDS; c++) {
+			var distance = norms[normsOffset + c]
+					- 2 * dot(vector, offset, centroids, (normsOffset + c) * dimension, dimension);
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Sub-vectors are a few floats long, shorter than a SIMD register, so a plain loop beats
+	 * {@link ai.search.engine.core.vector.VectorMath#dot}.
+	 */
+	private static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+		var sum = 0f;
+		for (int i = 0; i < length; i++) {
+			sum += a[aOffset + i] * b[bOffset + i];
+		}
+		return sum;
+	}
+
+	@Override
+	public QuantizationType type() {
+		return QuantizationType.PQ;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int codeSize() {
+		return subspaces;
+	}
+
+	@Override
+	public void encode(float[] vector, int vectorOffset, byte[] codes, int codesOffset) {
+		for (int subspace = 0; subspace < subspaces; subspace++) {
+			codes[codesOffset + subspace] = (byte) nearest(vector, vectorOffset + subspace * subDimension,
+					centroids, squaredNorms, subspace * CENTROIDS, subDimension);
+		}
+	}
+
+	@Override
+	public Scorer scorer(float[] query) {
+		var table = new float[subspaces * CENTROIDS];
+		for (int subspace = 0; subspace < subspaces; subspace++) {
+			for (int c = 0; c < CENTROIDS; c++) {
+				var index = subspace * CENTROIDS + c;
+				table[index] = dot(query, subspace * subDimension, centroids, index * subDimension, subDimension);
+			}
+		}
+		return (codes, offset) -> {
+			var sum = 0f;
+			for (int subspace = 0; subspace < subspaces; subspace++) {
+				sum += table[subspace * CENTROIDS + (codes[offset + subspace] & 0xFF)];
+			}
+			return sum;
+		};
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(dimension);
+		out.writeInt(subspaces);
+		for (var value : centroids) {
+			out.writeFloat(value);
+		}
+	}
+
+	static ProductQuantizer read(DataInput in) throws IOException {
+		var dimension = in.readInt();
+		var subspaces = in.readInt();
+		var centroids = new float[CENTROIDS * dimension];
+		for (int i = 0; i < centroids.length; i++) {
+			centroids[i] = in.readFloat();
+		}
+		return new ProductQuantizer(dimension, subspaces, centroids);
+	}
+}
@@ -0,0 +1,40 @@
+package ai.search.engine.core.vector.quant;
+
+/**
+ * How an embedded store quantizes its vectors: which {@link QuantizationType}, how many rows
+ * it samples to train the quantizer once the collection has that many, the number of
+ * product quantization subspaces and how many times {@code topK} candidates the quantized
+ * scan hands over to exact re-scoring.
+ */
+public record Quantization(QuantizationType type, int trainSize, int pqSubspaces, int rerank) {
+
+	public static final Quantization NONE = new Quantization(QuantizationType.NONE, 0, 0, 1);
+	private static final int PQ_ITERATIONS = 10;
+
+	public Quantization {
+		if (rerank < 1) throw new IllegalArgumentException("Rerank factor must be positive: " + rerank);
+		if (type == QuantizationType.PQ && trainSize < ProductQuantizer.CENTROIDS) {
+			throw new IllegalArgumentException("Product quantization needs a training size of at least "
+					+ ProductQuantizer.CENTROIDS);
+		}
+		if (type != QuantizationType.NONE && trainSize < 1) {
+			throw new IllegalArgumentException("Training size must be positive: " + trainSize);
+		}
+	}
+
+	public boolean enabled() {
+		return type != QuantizationType.NONE;
+	}
+
+	/**
+	 * @param sample {@code count} rows of {@code dimension} floats laid out back to back
+	 */
+	public Quantizer train(float[] sample, int count, int dimension) {
+		return switch (type) {
+			case SQ8 -> ScalarQuantizer.train(sample, count, dimension);
+			case PQ -> ProductQuantizer.train(sample, count, dimension, pqSubspaces, PQ_ITERATIONS);
+			case FP16, BF16 -> new HalfPrecisionQuantizer(type, dimension);
+			case NONE -> throw new IllegalStateException("Quantization is disabled");
+		};
+	}
+}
@@ -0,0 +1,14 @@
+package ai.search.engine.core.vector.quant;
+
+public enum QuantizationType {
+	/** Full float32 rows. */
+	NONE,
+	/** One byte per dimension, 4x smaller than float32. */
+	SQ8,
+	/** One byte per subspace, codebooks trained with k-means. */
+	PQ,
+	/** Two bytes per dimension in IEEE half precision, 2x smaller than float32. */
+	FP16,
+	/** Two bytes per dimension keeping the upper half of the float32, 2x smaller than float32. */
+	BF16
+}
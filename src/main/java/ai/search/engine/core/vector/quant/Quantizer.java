@@ -0,0 +1,65 @@
+package ai.search.engine.core.vector.quant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Lossy byte code of a float vector, compared to a float query with asymmetric distance
+ * computation: the query keeps full precision and only the stored side is quantized.
+ */
+public interface Quantizer {
+
+	QuantizationType type();
+
+	int dimension();
+
+	/** Bytes per encoded vector. */
+	int codeSize();
+
+	void encode(float[] vector, int vectorOffset, byte[] codes, int codesOffset);
+
+	/** Precomputes what the query needs to score codes, the scorer is safe to share between threads. */
+	Scorer scorer(float[] query);
+
+	void write(DataOutput out) throws IOException;
+
+	static Quantizer read(DataInput in) throws IOException {
+		var type = QuantizationType.valueOf(in.readUTF());
+		return switch (type) {
+			case SQ8 -> ScalarQuantizer.read(in);
+			case PQ -> ProductQuantizer.read(in);
+			case FP16, BF16 -> HalfPrecisionQuantizer.read(type, in);
+			case NONE -> throw new IOException("No quantizer is stored for " + type);
+		};
+	}
+
+	/** Writes the quantizer to a sibling file first, so a crash never leaves a partial one. */
+	static void save(Quantizer quantizer, Path file) throws IOException {
+		var tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+			out.writeUTF(quantizer.type().name());
+			quantizer.write(out);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	static Quantizer load(Path file) throws IOException {
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			return read(in);
+		}
+	}
+
+	@FunctionalInterface
+	interface Scorer {
+		/** Approximate dot product between the query and the code at {@code offset}. */
+		float score(byte[] codes, int offset);
+	}
+}
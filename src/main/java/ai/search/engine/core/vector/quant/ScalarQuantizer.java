@@ -0,0 +1,103 @@
+package ai.search.engine.core.vector.quant;
+
+import ai.search.engine.core.vector.VectorMath;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Maps every dimension linearly onto 256 levels between the minimum and maximum seen
+ * in the training sample, values outside that range being clamped. Levels are stored
+ * shifted to signed bytes so the scan widens them straight to floats.
+ */
+public final class ScalarQuantizer implements Quantizer {
+
+	private static final int LEVELS = 255;
+	private static final int SHIFT = 128;
+
+	private final float[] min;
+	private final float[] step;
+
+	private ScalarQuantizer(float[] min, float[] step) {
+		this.min = min;
+		this.step = step;
+	}
+
+	public static ScalarQuantizer train(float[] sample, int count, int dimension) {
+		var min = new float[dimension];
+		var max = new float[dimension];
+		Arrays.fill(min, Float.POSITIVE_INFINITY);
+		Arrays.fill(max, Float.NEGATIVE_INFINITY);
+		for (int row = 0; row < count; row++) {
+			for (int i = 0; i < dimension; i++) {
+				var value = sample[row * dimension + i];
+				min[i] = Math.min(min[i], value);
+				max[i] = Math.max(max[i], value);
+			}
+		}
+
+		var step = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			step[i] = (max[i] - min[i]) / LEVELS;
+		}
+		return new ScalarQuantizer(min, step);
+	}
+
+	@Override
+	public QuantizationType type() {
+		return QuantizationType.SQ8;
+	}
+
+	@Override
+	public int dimension() {
+		return min.length;
+	}
+
+	@Override
+	public int codeSize() {
+		return min.length;
+	}
+
+	@Override
+	public void encode(float[] vector, int vectorOffset, byte[] codes, int codesOffset) {
+		for (int i = 0; i < min.length; i++) {
+			var level = step[i] == 0f ? 0 : Math.round((vector[vectorOffset + i] - min[i]) / step[i]);
+			codes[codesOffset + i] = (byte) (Math.clamp(level, 0, LEVELS) - SHIFT);
+		}
+	}
+
+	@Override
+	public Scorer scorer(float[] query) {
+		// q . (min + step * (code + SHIFT)) = q . (min + SHIFT * step) + (q * step) . code
+		var weights = new float[min.length];
+		var bias = 0f;
+		for (int i = 0; i < min.length; i++) {
+			weights[i] = query[i] * step[i];
+			bias += query[i] * (min[i] + SHIFT * step[i]);
+		}
+		var offset = bias;
+		return (codes, codesOffset) -> offset + VectorMath.dot(weights, 0, codes, codesOffset, weights.length);
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(min.length);
+		for (int i = 0; i < min.length; i++) {
+			out.writeFloat(min[i]);
+			out.writeFloat(step[i]);
+		}
+	}
+
+	static ScalarQuantizer read(DataInput in) throws IOException {
+		var dimension = in.readInt();
+		var min = new float[dimension];
+		var step = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			min[i] = in.readFloat();
+			step[i] = in.readFloat();
+		}
+		return new ScalarQuantizer(min, step);
+	}
+}
@@ -1,10 +1,13 @@
 package ai.search.engine.resource;
 
+import ai.search.engine.core.config.AppProperties;
 import ai.search.engine.core.model.FileExtensionEnum;
 import ai.search.engine.core.service.ImageDatabaseService;
+import ai.search.engine.resource.dto.BatchSearchResponse;
 import ai.search.engine.resource.dto.ImageResponse;
-import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Uni;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
@@ -15,38 +18,81 @@ import jakarta.ws.rs.core.MediaType;
 import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 @Path("/search")
 public class SearchResource {
 
 	private final ImageDatabaseService imageDatabaseService;
+	private final int batchMaxQueries;
 
 	@Inject
-	public SearchResource(ImageDatabaseService imageDatabaseService) {
+	public SearchResource(ImageDatabaseService imageDatabaseService, AppProperties properties) {
 		this.imageDatabaseService = imageDatabaseService;
+		this.batchMaxQueries = properties.searchBatchMaxQueries();
 	}
 
 	@POST
 	@Path("/by-image")
 	@Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
-	@RunOnVirtualThread
-    public List<ImageResponse> searchByImage(@RestForm FileUpload image) {
+    public Uni<List<ImageResponse>> searchByImage(@RestForm FileUpload image) {
 		if (!FileExtensionEnum.isValidFileExtension(image.fileName())) {
-			return List.of();
+			return Uni.createFrom().item(List.of());
 		}
 
-		var result = imageDatabaseService.searchImages(image.uploadedFile());
-		return result.stream().map(path -> new ImageResponse(path, path)).toList();
+		return imageDatabaseService.searchImages(image.uploadedFile())
+				.map(SearchResource::toResponse);
     }
 
 	@GET
 	@Path("/by-predicate")
 	@Produces(MediaType.APPLICATION_JSON)
-	@RunOnVirtualThread
-	public List<ImageResponse> searchByText(@QueryParam("search") String text) {
-		var result = imageDatabaseService.searchImages(text);
+	public Uni<List<ImageResponse>> searchByText(@QueryParam("search") String text) {
+		return imageDatabaseService.searchImages(text)
+				.map(SearchResource::toResponse);
+	}
+
+	/**
+	 * Searches many texts ({@code search} parts) and images ({@code image} parts) at once,
+	 * with one forward pass per modality and one vector search for the whole batch.
+	 * Images with an unsupported extension get no results.
+	 */
+	@POST
+	@Path("/batch")
+	@Consumes(MediaType.MULTIPART_FORM_DATA)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Uni<BatchSearchResponse> searchBatch(@RestForm("search") List<String> texts,
+										   @RestForm("image") List<FileUpload> images) {
+		texts = Objects.requireNonNullElse(texts, List.of());
+		images = Objects.requireNonNullElse(images, List.of());
+		if (texts.size() + images.size() > batchMaxQueries) {
+			throw new BadRequestException("At most %d queries per batch".formatted(batchMaxQueries));
+		}
+
+		var valid = images.stream()
+				.filter(image -> FileExtensionEnum.isValidFileExtension(image.fileName()))
+				.toList();
+		var textCount = texts.size();
+		var uploads = images;
+		return imageDatabaseService.searchBatch(texts, valid.stream().map(FileUpload::uploadedFile).toList())
+				.map(found -> {
+					var results = found.iterator();
+					var textResults = new ArrayList<List<ImageResponse>>(textCount);
+					for (int i = 0; i < textCount; i++) {
+						textResults.add(toResponse(results.next()));
+					}
+					var imageResults = new ArrayList<List<ImageResponse>>(uploads.size());
+					for (var image : uploads) {
+						imageResults.add(valid.contains(image) ? toResponse(results.next()) : List.of());
+					}
+					return new BatchSearchResponse(textResults, imageResults);
+				});
+	}
+
+	private static List<ImageResponse> toResponse(List<String> result) {
 		return result.stream().map(path -> new ImageResponse(path, path)).toList();
 	}
 }
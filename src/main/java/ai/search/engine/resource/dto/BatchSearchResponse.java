@@ -0,0 +1,16 @@
+package ai.search.engine.resource.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Results of a batch search, one list per query in the order the queries were sent.
+ */
+@Getter
+@RequiredArgsConstructor
+public class BatchSearchResponse {
+	private final List<List<ImageResponse>> texts;
+	private final List<List<ImageResponse>> images;
+}
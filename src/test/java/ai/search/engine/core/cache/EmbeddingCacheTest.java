@@ -0,0 +1,147 @@
+package ai.search.engine.core.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EmbeddingCacheTest {
+
+	private final EmbeddingCache<String> cache = new EmbeddingCache<>(100, Duration.ofMinutes(1), false);
+
+	@Test
+	void concurrentMissesShareOneLoad() {
+		var loads = new AtomicInteger();
+		var inference = new CompletableFuture<float[]>();
+		var first = cache.getAsync("cat", () -> {
+			loads.incrementAndGet();
+			return Uni.createFrom().completionStage(inference);
+		}).subscribeAsCompletionStage();
+		var second = cache.getAsync("cat", () -> {
+			loads.incrementAndGet();
+			return Uni.createFrom().item(new float[]{2f});
+		}).subscribeAsCompletionStage();
+		assertFalse(second.isDone());
+
+		inference.complete(new float[]{1f});
+		assertArrayEquals(new float[]{1f}, first.join());
+		assertArrayEquals(new float[]{1f}, second.join());
+		assertEquals(1, loads.get());
+		assertArrayEquals(new float[]{1f}, cache.getIfPresent("cat"));
+	}
+
+	@Test
+	void batchEmbedsOnlyTheKeysNeitherCachedNorLoading() {
+		cache.put("cat", new float[]{1f});
+		var inference = new CompletableFuture<List<float[]>>();
+		var loading = cache.getAll(List.of("dog"), missing -> Uni.createFrom().completionStage(inference))
+				.subscribeAsCompletionStage();
+
+		var requested = new ArrayList<Integer>();
+		var batch = cache.getAll(List.of("cat", "dog", "bird", "bird"), missing -> {
+			requested.addAll(missing);
+			return Uni.createFrom().item(List.<float[]>of(new float[]{3f}));
+		}).subscribeAsCompletionStage();
+		assertEquals(List.of(2), requested);
+		assertFalse(batch.isDone());
+
+		inference.complete(List.<float[]>of(new float[]{2f}));
+		var embeddings = batch.join();
+		assertArrayEquals(new float[]{1f}, embeddings.get(0));
+		assertArrayEquals(new float[]{2f}, embeddings.get(1));
+		assertArrayEquals(new float[]{3f}, embeddings.get(2));
+		assertArrayEquals(new float[]{3f}, embeddings.get(3));
+		assertArrayEquals(new float[]{2f}, loading.join().getFirst());
+	}
+
+	@Test
+	void failedLoadsAreNotCached() {
+		var failed = cache.getAsync("cat", () -> Uni.createFrom().failure(new IllegalStateException("down")));
+		assertThrows(IllegalStateException.class, () -> failed.await().indefinitely());
+		assertNull(cache.getIfPresent("cat"));
+
+		var retried = cache.getAsync("cat", () -> Uni.createFrom().item(new float[]{1f})).await().indefinitely();
+		assertArrayEquals(new float[]{1f}, retried);
+	}
+
+	@Test
+	void nullEmbeddingsAreNotCached() {
+		assertNull(cache.getAsync("broken", () -> Uni.createFrom().nullItem()).await().indefinitely());
+		assertNull(cache.getIfPresent("broken"));
+	}
+
+	@Test
+	void offHeapEmbeddingsRoundTrip() {
+		var offHeap = new EmbeddingCache<String>(100, Duration.ofMinutes(1), true);
+		var embedding = new float[]{0.25f, -1f, 3f};
+		offHeap.put("cat", embedding);
+		assertArrayEquals(embedding, offHeap.getIfPresent("cat"));
+	}
+
+	@Test
+	void callersGetTheirOwnCopies() {
+		for (var offHeap : new boolean[]{false, true}) {
+			var cache = new EmbeddingCache<String>(100, Duration.ofMinutes(1), offHeap);
+			var embedding = new float[]{1f, 2f};
+			cache.put("cat", embedding);
+			embedding[0] = -1f;
+			cache.getIfPresent("cat")[1] = -2f;
+			assertArrayEquals(new float[]{1f, 2f}, cache.getIfPresent("cat"));
+		}
+	}
+
+	@Test
+	void sharedLoadsAreCopiedForEveryWaiter() {
+		var inference = new CompletableFuture<float[]>();
+		var first = cache.getAsync("cat", () -> Uni.createFrom().completionStage(inference)).subscribeAsCompletionStage();
+		var second = cache.getAsync("cat", () -> Uni.createFrom().nullItem()).subscribeAsCompletionStage();
+		inference.complete(new float[]{1f});
+		first.join()[0] = -1f;
+		assertArrayEquals(new float[]{1f}, second.join());
+		assertArrayEquals(new float[]{1f}, cache.getIfPresent("cat"));
+	}
+
+	@Test
+	void getThrowsTheFailureOfTheEmbedding() {
+		assertThrows(IllegalStateException.class, () -> cache.get("cat", () -> {
+			throw new IllegalStateException("down");
+		}));
+		assertThrows(AssertionError.class, () -> cache.get("cat", () -> {
+			throw new AssertionError("broken");
+		}));
+		assertArrayEquals(new float[]{1f}, cache.get("cat", () -> new float[]{1f}));
+		assertArrayEquals(new float[]{1f}, cache.get("cat", () -> new float[]{2f}));
+	}
+
+	@Test
+	void publishesHitsAndMisses() {
+		var registry = new SimpleMeterRegistry();
+		cache.monitor(registry, "search.text");
+		cache.get("cat", () -> new float[]{1f});
+		cache.get("cat", () -> new float[]{2f});
+		assertEquals(1, registry.get("cache.gets").tags("cache", "search.text", "result", "hit")
+				.functionCounter().count());
+		assertEquals(1, registry.get("cache.gets").tags("cache", "search.text", "result", "miss")
+				.functionCounter().count());
+		assertEquals(1, registry.get("cache.size").tags("cache", "search.text").gauge().value());
+	}
+
+	@Test
+	void textKeysIgnoreWhiteSpaceButNotCase() {
+		assertEquals(TextEmbeddingKey.of("clip", "a red  car"), TextEmbeddingKey.of("clip", " a\tred car\n"));
+		assertNotEquals(TextEmbeddingKey.of("clip", "a red car"), TextEmbeddingKey.of("clip", "A Red Car"));
+		assertNotEquals(TextEmbeddingKey.of("clip", "a red car"), TextEmbeddingKey.of("other", "a red car"));
+	}
+}
@@ -0,0 +1,53 @@
+package ai.search.engine.core.cache;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchResultCacheTest {
+
+	private final SearchResultCache<String> cache = new SearchResultCache<>(100, Duration.ofMinutes(1));
+
+	@Test
+	void searchesOnlyTheMissingEmbeddings() {
+		float[] cat = {1f}, dog = {2f};
+		cache.get(cat, 10, "", () -> Uni.createFrom().item("cats")).await().indefinitely();
+
+		var searched = new ArrayList<float[]>();
+		var results = cache.getAll(List.of(cat, dog), 10, "", missing -> {
+			searched.addAll(missing);
+			return Uni.createFrom().item(List.of("dogs"));
+		}).await().indefinitely();
+		assertEquals(List.of("cats", "dogs"), results);
+		assertEquals(1, searched.size());
+		assertEquals(2f, searched.getFirst()[0]);
+	}
+
+	@Test
+	void searchRacingAnInvalidationIsNotCached() {
+		float[] cat = {1f};
+		var search = new CompletableFuture<String>();
+		var stale = cache.get(cat, 10, "", () -> Uni.createFrom().completionStage(search)).subscribeAsCompletionStage();
+		cache.invalidate();
+		search.complete("stale");
+		assertEquals("stale", stale.join());
+
+		var fresh = cache.get(cat, 10, "", () -> Uni.createFrom().item("fresh")).await().indefinitely();
+		assertEquals("fresh", fresh);
+	}
+
+	@Test
+	void keysDependOnTopKAndParameters() {
+		float[] cat = {1f};
+		cache.get(cat, 10, "a", () -> Uni.createFrom().item("10a")).await().indefinitely();
+		assertEquals("5a", cache.get(cat, 5, "a", () -> Uni.createFrom().item("5a")).await().indefinitely());
+		assertEquals("10b", cache.get(cat, 10, "b", () -> Uni.createFrom().item("10b")).await().indefinitely());
+		assertEquals("10a", cache.get(cat, 10, "a", () -> Uni.createFrom().item("miss")).await().indefinitely());
+	}
+}
@@ -0,0 +1,108 @@
+package ai.search.engine.core.clip;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The fused preprocessing against a direct 2D bicubic resize of the whole image followed by
+ * the center crop, for the raster layouts read without the color model and one read with it.
+ */
+class ImagePreprocessorTest {
+
+	private static final int SIZE = 32;
+	private static final float A = -0.75f;
+
+	private final Random random = new Random(42);
+
+	@Test
+	void matchesBicubicResizeAndCrop() {
+		int[][] dimensions = {{50, 45}, {45, 50}, {32, 32}, {20, 90}, {130, 64}};
+		int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR};
+		var preprocessor = new ImagePreprocessor(SIZE);
+		for (var dimension : dimensions) {
+			for (var type : types) {
+				var image = randomImage(dimension[0], dimension[1], type);
+				var out = new float[3 * SIZE * SIZE];
+				preprocessor.preprocess(image, out);
+				var expected = reference(image);
+				for (int i = 0; i < out.length; i++) {
+					assertEquals(expected[i], out[i], 1e-5f,
+							"%dx%d type %d at %d".formatted(dimension[0], dimension[1], type, i));
+				}
+			}
+		}
+	}
+
+	@Test
+	void normalizesChannels() {
+		float[] mean = {0.48f, 0.46f, 0.41f};
+		float[] std = {0.27f, 0.26f, 0.28f};
+		var image = randomImage(60, 40, BufferedImage.TYPE_INT_RGB);
+		var scaled = new float[3 * SIZE * SIZE];
+		var normalized = new float[3 * SIZE * SIZE];
+		new ImagePreprocessor(SIZE).preprocess(image, scaled);
+		new ImagePreprocessor(SIZE, mean, std).preprocess(image, normalized);
+		for (int i = 0; i < scaled.length; i++) {
+			var channel = i / (SIZE * SIZE);
+			assertEquals((scaled[i] - mean[channel]) / std[channel], normalized[i], 1e-4f);
+		}
+	}
+
+	private BufferedImage randomImage(int width, int height, int type) {
+		var image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, random.nextInt(0x1000000));
+			}
+		}
+		return image;
+	}
+
+	/** Resize of the short side to SIZE, center crop, CHW in [0, 1], one output pixel at a time. */
+	private static float[] reference(BufferedImage image) {
+		var width = image.getWidth();
+		var height = image.getHeight();
+		var percent = (float) SIZE / Math.min(width, height);
+		var resizedWidth = Math.round(width * percent);
+		var resizedHeight = Math.round(height * percent);
+		var cropX = (resizedWidth - SIZE) / 2;
+		var cropY = (resizedHeight - SIZE) / 2;
+		var out = new float[3 * SIZE * SIZE];
+		for (int y = 0; y < SIZE; y++) {
+			var sourceY = (y + cropY + 0.5f) * height / resizedHeight - 0.5f;
+			var floorY = (int) Math.floor(sourceY);
+			for (int x = 0; x < SIZE; x++) {
+				var sourceX = (x + cropX + 0.5f) * width / resizedWidth - 0.5f;
+				var floorX = (int) Math.floor(sourceX);
+				var sum = new double[3];
+				for (int j = -1; j <= 2; j++) {
+					var wy = cubic(sourceY - (floorY + j));
+					var py = Math.clamp(floorY + j, 0, height - 1);
+					for (int i = -1; i <= 2; i++) {
+						var w = wy * cubic(sourceX - (floorX + i));
+						var rgb = image.getRGB(Math.clamp(floorX + i, 0, width - 1), py);
+						sum[0] += w * ((rgb >> 16) & 0xFF);
+						sum[1] += w * ((rgb >> 8) & 0xFF);
+						sum[2] += w * (rgb & 0xFF);
+					}
+				}
+				for (int channel = 0; channel < 3; channel++) {
+					out[(channel * SIZE + y) * SIZE + x] = (float) Math.clamp(sum[channel], 0, 255) / 255f;
+				}
+			}
+		}
+		return out;
+	}
+
+	private static double cubic(double x) {
+		x = Math.abs(x);
+		if (x <= 1) return ((A + 2) * x - (A + 3)) * x * x + 1;
+		if (x < 2) return ((A * x - 5 * A) * x + 8 * A) * x - 4 * A;
+		return 0;
+	}
+}
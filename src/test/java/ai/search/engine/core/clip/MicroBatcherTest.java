@@ -0,0 +1,89 @@
+package ai.search.engine.core.clip;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+	private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+	@Test
+	void groupsConcurrentInputsUpToTheBatchSize() {
+		try (var batcher = new MicroBatcher<Integer, Integer>("test", this::doubled, 4, Duration.ofMillis(200))) {
+			var results = IntStream.range(0, 10).mapToObj(batcher::submit).toList();
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(2 * i, results.get(i).join());
+			}
+		}
+		assertEquals(10, batchSizes.stream().mapToInt(Integer::intValue).sum());
+		assertTrue(batchSizes.stream().allMatch(size -> size <= 4), "batches of " + batchSizes);
+		assertTrue(batchSizes.size() <= 4, "batches of " + batchSizes);
+	}
+
+	@Test
+	void closeRunsTheInputsOfTheBatchBeingCollected() {
+		var batcher = new MicroBatcher<Integer, Integer>("test", this::doubled, 100, Duration.ofMinutes(1));
+		var results = IntStream.range(0, 5).mapToObj(batcher::submit).toList();
+		assertTimeoutPreemptively(Duration.ofSeconds(10), batcher::close);
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals(2 * i, results.get(i).join());
+		}
+	}
+
+	@Test
+	void closeWaitsForTheRunningBatches() throws InterruptedException {
+		var started = new CountDownLatch(1);
+		var batcher = new MicroBatcher<Integer, Integer>("test", inputs -> {
+			started.countDown();
+			Thread.sleep(200);
+			return doubled(inputs);
+		}, 1, Duration.ZERO);
+		var first = batcher.submit(1);
+		started.await();
+		var second = batcher.submit(2);
+		batcher.close();
+		assertEquals(2, first.join());
+		assertEquals(4, second.join());
+	}
+
+	@Test
+	void refusesInputsOnceClosed() {
+		var batcher = new MicroBatcher<Integer, Integer>("test", this::doubled, 4, Duration.ofMillis(1));
+		batcher.close();
+		var result = batcher.submit(1);
+		var e = assertThrows(CompletionException.class, result::join);
+		assertInstanceOf(IllegalStateException.class, e.getCause());
+	}
+
+	@Test
+	void failsEveryInputOfAFailedBatch() {
+		try (var batcher = new MicroBatcher<Integer, Integer>("test", inputs -> {
+			throw new IllegalArgumentException("bad batch");
+		}, 8, Duration.ofMillis(50))) {
+			var results = IntStream.range(0, 3).mapToObj(batcher::submit).toList();
+			CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+			for (var result : results) {
+				var e = assertThrows(CompletionException.class, result::join);
+				assertInstanceOf(IllegalArgumentException.class, e.getCause());
+			}
+		}
+	}
+
+	private List<Integer> doubled(List<Integer> inputs) {
+		batchSizes.add(inputs.size());
+		return inputs.stream().map(input -> 2 * input).toList();
+	}
+}
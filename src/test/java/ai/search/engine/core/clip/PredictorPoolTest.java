@@ -0,0 +1,213 @@
+package ai.search.engine.core.clip;
+
+import ai.djl.Device;
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.TranslateException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PredictorPoolTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final List<FakePredictor> predictors = new CopyOnWriteArrayList<>();
+
+	@Test
+	void createsPredictorsOnDemandAndReusesIdleOnes() throws TranslateException {
+		try (var pool = pool(3, Duration.ofSeconds(1))) {
+			assertEquals(0, pool.size());
+			var first = pool.execute(predictor -> predictor);
+			var second = pool.execute(predictor -> predictor);
+			assertSame(first, second);
+			assertEquals(1, pool.size());
+			assertEquals(4, pool.predict(2));
+			assertEquals(List.of(2, 4), pool.batchPredict(List.of(1, 2)));
+			assertEquals(1, pool.size());
+			assertEquals(0, pool.active());
+		}
+	}
+
+	@Test
+	void neverCreatesMoreThanItsMaximumSize() throws Exception {
+		try (var pool = pool(2, Duration.ofSeconds(5))) {
+			var borrowed = new CountDownLatch(2);
+			var release = new CountDownLatch(1);
+			var calls = List.of(
+					holdPredictor(pool, borrowed, release),
+					holdPredictor(pool, borrowed, release));
+			borrowed.await();
+			assertEquals(2, pool.size());
+			assertEquals(2, pool.active());
+			assertEquals(2.0, registry.get("clip.predictor.active").gauge().value());
+
+			var third = CompletableFuture.supplyAsync(() -> predict(pool, 3));
+			while (pool.waiting() == 0) Thread.onSpinWait();
+			assertEquals(1.0, registry.get("clip.predictor.waiting").gauge().value());
+			release.countDown();
+			calls.forEach(CompletableFuture::join);
+			assertEquals(6, third.join());
+			assertEquals(2, predictors.size());
+			assertEquals(0, pool.active());
+		}
+	}
+
+	@Test
+	void borrowTimesOutWhenEveryPredictorIsBusy() throws InterruptedException {
+		try (var pool = pool(1, Duration.ofMillis(50))) {
+			var borrowed = new CountDownLatch(1);
+			var release = new CountDownLatch(1);
+			var call = holdPredictor(pool, borrowed, release);
+			borrowed.await();
+			var e = assertThrows(TranslateException.class, () -> pool.predict(1));
+			assertInstanceOf(TimeoutException.class, e.getCause());
+			release.countDown();
+			call.join();
+		}
+	}
+
+	@Test
+	void failedCreationGivesThePermitBack() throws TranslateException {
+		var attempts = new AtomicInteger();
+		try (var pool = new PredictorPool<Integer, Integer>("test", () -> {
+			if (attempts.incrementAndGet() == 1) throw new IllegalStateException("no memory");
+			return predictor();
+		}, 1, Duration.ofMillis(50), registry, OpenTelemetry.noop().getTracer("test"))) {
+			assertThrows(IllegalStateException.class, () -> pool.predict(1));
+			assertEquals(0, pool.active());
+			assertEquals(2, pool.predict(1));
+		}
+	}
+
+	@Test
+	void closeClosesIdlePredictorsAndThoseGivenBackLater() throws InterruptedException {
+		var pool = pool(2, Duration.ofSeconds(1));
+		var borrowed = new CountDownLatch(2);
+		var release = new CountDownLatch(1);
+		var calls = List.of(
+				holdPredictor(pool, borrowed, release),
+				holdPredictor(pool, borrowed, release));
+		borrowed.await();
+		release.countDown();
+		calls.get(0).join();
+
+		pool.close();
+		calls.get(1).join();
+		assertTrue(predictors.stream().allMatch(FakePredictor::closed), "predictors left open");
+		assertEquals(0, pool.size());
+		assertThrows(IllegalStateException.class, () -> pool.predict(1));
+	}
+
+	private PredictorPool<Integer, Integer> pool(int maxSize, Duration borrowTimeout) {
+		return new PredictorPool<>("test", this::predictor, maxSize, borrowTimeout,
+				registry, OpenTelemetry.noop().getTracer("test"));
+	}
+
+	private FakePredictor predictor() {
+		var predictor = new FakePredictor();
+		predictors.add(predictor);
+		return predictor;
+	}
+
+	/** Borrows a predictor and holds it until {@code release} opens. */
+	private static CompletableFuture<Void> holdPredictor(PredictorPool<Integer, Integer> pool,
+														CountDownLatch borrowed,
+														CountDownLatch release) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				pool.execute(predictor -> {
+					borrowed.countDown();
+					await(release);
+					return null;
+				});
+			} catch (TranslateException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private static void await(CountDownLatch latch) throws TranslateException {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			throw new TranslateException(e);
+		}
+	}
+
+	private static int predict(PredictorPool<Integer, Integer> pool, int input) {
+		try {
+			return pool.predict(input);
+		} catch (TranslateException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Doubles its inputs, without an engine behind the model it is created from. */
+	private static class FakePredictor extends Predictor<Integer, Integer> {
+
+		private volatile boolean closed;
+
+		FakePredictor() {
+			super(model(), null, Device.cpu(), false);
+		}
+
+		@Override
+		public Integer predict(Integer input) {
+			return 2 * input;
+		}
+
+		@Override
+		public List<Integer> batchPredict(List<Integer> inputs) {
+			return inputs.stream().map(this::predict).toList();
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+
+		boolean closed() {
+			return closed;
+		}
+
+		private static Model model() {
+			var manager = stub(NDManager.class, (method, args) -> switch (method) {
+				case "getDevice" -> Device.cpu();
+				default -> null;
+			});
+			return stub(Model.class, (method, args) -> switch (method) {
+				case "getNDManager" -> manager;
+				case "getProperty" -> args.length > 1 ? args[1] : null;
+				default -> null;
+			});
+		}
+
+		private static <T> T stub(Class<T> type, Answer answer) {
+			return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+					(proxy, method, args) -> method.getName().equals("newSubManager")
+							? proxy
+							: answer.of(method.getName(), args == null ? new Object[0] : args)));
+		}
+
+		@FunctionalInterface
+		private interface Answer {
+			Object of(String method, Object[] args);
+		}
+	}
+}
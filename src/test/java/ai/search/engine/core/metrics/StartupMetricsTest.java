@@ -0,0 +1,44 @@
+package ai.search.engine.core.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StartupMetricsTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final StartupMetrics metrics = new StartupMetrics(registry);
+
+	@Test
+	void modelLoadsSurviveGarbageCollection() {
+		metrics.modelLoaded("clip", TimeUnit.SECONDS.toNanos(3));
+		metrics.modelLoaded("clip/tokenizer.json", TimeUnit.MILLISECONDS.toNanos(20));
+		for (int i = 0; i < 3; i++) System.gc();
+
+		assertEquals(3, loadSeconds("clip"));
+		assertEquals(0.02, loadSeconds("clip/tokenizer.json"), 1e-9);
+	}
+
+	@Test
+	void reloadUpdatesTheSameGauge() {
+		metrics.modelLoaded("clip", TimeUnit.SECONDS.toNanos(3));
+		metrics.modelLoaded("clip", TimeUnit.SECONDS.toNanos(1));
+		assertEquals(1, registry.get("startup.model.load").timeGauges().size());
+		assertEquals(1, loadSeconds("clip"));
+	}
+
+	@Test
+	void unknownDurationsAreNaN() {
+		assertTrue(Double.isNaN(registry.get("startup.warmup").timeGauge().value()));
+		metrics.warmedUp(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(2, registry.get("startup.warmup").timeGauge().value(TimeUnit.SECONDS));
+	}
+
+	private double loadSeconds(String artifact) {
+		return registry.get("startup.model.load").tag("artifact", artifact).timeGauge().value(TimeUnit.SECONDS);
+	}
+}
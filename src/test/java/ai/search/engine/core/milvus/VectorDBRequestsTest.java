@@ -0,0 +1,93 @@
+package ai.search.engine.core.milvus;
+
+import com.google.common.primitives.Floats;
+import io.milvus.grpc.DataType;
+import io.milvus.grpc.IDs;
+import io.milvus.grpc.LongArray;
+import io.milvus.grpc.SearchResultData;
+import io.milvus.response.SearchResultsWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Vectors inserted then read back as search hits, the way Milvus echoes the inserted fields
+ * into the output fields of a search.
+ */
+class VectorDBRequestsTest {
+
+	private static final int DIMENSION = 24;
+
+	private final Random random = new Random(42);
+	private final List<float[]> embeddings = List.of(randomVector(), randomVector(), randomVector());
+	private final List<String> paths = List.of("a.jpg", "b.jpg", "c.jpg");
+
+	@Test
+	void readsFloatVectorHits() {
+		var hits = VectorDBRequests.hits(results(DataType.FloatVector), 2);
+		assertEquals(2, hits.size());
+		assertEquals(2, hits.get(0).size());
+		assertEquals(1, hits.get(1).size());
+		for (int row = 0; row < 3; row++) {
+			var hit = row < 2 ? hits.get(0).get(row) : hits.get(1).getFirst();
+			assertEquals(100L + row, hit.id());
+			assertEquals(1f - row / 10f, hit.score());
+			assertEquals(paths.get(row), hit.get("path"));
+			assertArrayEquals(embeddings.get(row), (float[]) hit.get("embedding"));
+		}
+	}
+
+	@Test
+	void widensHalfPrecisionHits() {
+		for (var type : List.of(DataType.Float16Vector, DataType.BFloat16Vector)) {
+			var hits = VectorDBRequests.hits(results(type), 2);
+			var tolerance = type == DataType.Float16Vector ? 1e-3f : 1e-2f;
+			assertArrayEquals(embeddings.get(1), (float[]) hits.get(0).get(1).get("embedding"), tolerance);
+			assertArrayEquals(embeddings.get(2), (float[]) hits.get(1).getFirst().get("embedding"), tolerance);
+		}
+	}
+
+	@Test
+	void matchesTheSdkWrapper() {
+		var results = results(DataType.FloatVector);
+		var wrapper = new SearchResultsWrapper(results);
+		var hits = VectorDBRequests.hits(results, 2);
+		for (int query = 0; query < 2; query++) {
+			var expected = wrapper.getIDScore(query);
+			for (int i = 0; i < expected.size(); i++) {
+				var hit = hits.get(query).get(i);
+				assertEquals(expected.get(i).getLongID(), hit.id());
+				assertEquals(expected.get(i).getScore(), hit.score());
+				assertEquals(expected.get(i).get("path"), hit.get("path"));
+				assertEquals(expected.get(i).get("embedding"), Floats.asList((float[]) hit.get("embedding")));
+			}
+		}
+	}
+
+	/** Two queries finding the rows 0 and 1, then 2. */
+	private SearchResultData results(DataType vectorType) {
+		var insert = VectorDBRequests.insert("db", "products", Map.of("embedding", vectorType),
+				Map.of("path", paths, "embedding", embeddings));
+		return SearchResultData.newBuilder()
+				.setNumQueries(2)
+				.setTopK(2)
+				.addTopks(2)
+				.addTopks(1)
+				.addAllScores(List.of(1f, 0.9f, 0.8f))
+				.setIds(IDs.newBuilder().setIntId(LongArray.newBuilder().addAllData(List.of(100L, 101L, 102L))))
+				.addAllFieldsData(insert.getFieldsDataList())
+				.addAllOutputFields(List.of("path", "embedding"))
+				.build();
+	}
+
+	private float[] randomVector() {
+		var vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) vector[i] = random.nextFloat() * 2 - 1;
+		return vector;
+	}
+}
@@ -0,0 +1,96 @@
+package ai.search.engine.core.scheduler;
+
+import com.google.common.hash.HashCode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContentHashIndexTest {
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void reservedHashesAreSeenUntilReleased() throws IOException {
+		try (var index = open()) {
+			assertTrue(index.reserve(hash(1)));
+			assertFalse(index.reserve(hash(1)), "same bytes in flight under another name");
+			index.release(hash(1));
+			assertTrue(index.reserve(hash(1)));
+			index.releaseAll();
+			assertTrue(index.reserve(hash(1)));
+			assertEquals(0, index.size());
+		}
+	}
+
+	@Test
+	void committedHashesSurviveAReopen() throws IOException {
+		try (var index = open()) {
+			index.reserve(hash(1));
+			index.reserve(hash(2));
+			index.commit(List.of(hash(1), hash(2)));
+			index.commit(List.of(hash(2)));
+			assertEquals(2, index.size());
+			assertFalse(index.reserve(hash(1)));
+		}
+		assertEquals(2 * 16, Files.size(file()), "one record per distinct hash");
+		try (var index = open()) {
+			assertEquals(2, index.size());
+			assertFalse(index.reserve(hash(1)));
+			assertFalse(index.reserve(hash(2)));
+			assertTrue(index.reserve(hash(3)));
+		}
+	}
+
+	@Test
+	void dropsATornLastRecord() throws IOException {
+		try (var index = open()) {
+			index.commit(List.of(hash(1)));
+		}
+		Files.write(file(), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+		try (var index = open()) {
+			assertEquals(1, index.size());
+			index.commit(List.of(hash(2)));
+		}
+		try (var index = open()) {
+			assertEquals(2, index.size());
+			assertFalse(index.reserve(hash(2)));
+		}
+	}
+
+	@Test
+	void growsPastItsInitialCapacity() throws IOException {
+		var hashes = IntStream.range(0, 100_000).mapToObj(ContentHashIndexTest::hash).toList();
+		try (var index = open()) {
+			index.commit(hashes);
+			assertEquals(hashes.size(), index.size());
+		}
+		try (var index = open()) {
+			assertEquals(hashes.size(), index.size());
+			assertTrue(hashes.stream().noneMatch(index::reserve), "committed hash reserved again");
+			assertTrue(index.reserve(hash(-1)));
+		}
+	}
+
+	private ContentHashIndex open() {
+		return new ContentHashIndex(file());
+	}
+
+	private Path file() {
+		return dir.resolve("content-hashes");
+	}
+
+	private static HashCode hash(int content) {
+		return ContentHashIndex.HASH_FUNCTION.hashInt(content);
+	}
+}
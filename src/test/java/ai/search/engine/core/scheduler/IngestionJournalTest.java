@@ -0,0 +1,180 @@
+package ai.search.engine.core.scheduler;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IngestionJournalTest {
+
+	private static final float[] EMBEDDING = {0.5f, -1f, 2f};
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void replaysTheLastStateOfEveryFile() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg", "b.jpg", "c.jpg"), List.of(EMBEDDING, EMBEDDING, EMBEDDING));
+			journal.inserted(List.of("b.jpg", "c.jpg"));
+			journal.moved(List.of("c.jpg"));
+			journal.deleted(List.of("a.jpg"));
+		}
+		try (var journal = open()) {
+			var pending = journal.pending();
+			assertEquals(List.of("b.jpg", "c.jpg"), List.copyOf(pending.keySet()));
+			assertEquals(IngestionState.INSERTED, pending.get("b.jpg").state());
+			assertNull(pending.get("b.jpg").embedding());
+			assertEquals(IngestionState.MOVED, pending.get("c.jpg").state());
+		}
+	}
+
+	@Test
+	void keepsEmbeddingsUntilInserted() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+		}
+		try (var journal = open()) {
+			assertArrayEquals(EMBEDDING, journal.pending().get("a.jpg").embedding());
+		}
+	}
+
+	@Test
+	void emptiesTheLogOnceNothingIsInProgress() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+			journal.deleted(List.of("a.jpg"));
+		}
+		assertEquals(0, Files.size(file()));
+	}
+
+	@Test
+	void ignoresAZeroFilledTail() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+		}
+		Files.write(file(), new byte[4096], StandardOpenOption.APPEND);
+		try (var journal = open()) {
+			assertEquals(Set.of("a.jpg"), journal.pending().keySet());
+			journal.inserted(List.of("a.jpg"));
+		}
+		try (var journal = open()) {
+			assertEquals(IngestionState.INSERTED, journal.pending().get("a.jpg").state());
+		}
+	}
+
+	@Test
+	void stopsAtTheFirstCorruptRecord() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+			journal.inserted(List.of("a.jpg"));
+			journal.moved(List.of("a.jpg"));
+		}
+		var sizes = recordSizes();
+		try (var raf = new RandomAccessFile(file().toFile(), "rw")) {
+			// First payload byte of the second record, its state, flipped to an unknown one
+			var offset = sizes[0] + 8;
+			raf.seek(offset);
+			raf.write(0x7F);
+		}
+		try (var journal = open()) {
+			assertEquals(IngestionState.EMBEDDED, journal.pending().get("a.jpg").state());
+		}
+	}
+
+	@Test
+	void ignoresATornRecord() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+			journal.inserted(List.of("a.jpg"));
+		}
+		try (var raf = new RandomAccessFile(file().toFile(), "rw")) {
+			raf.setLength(raf.length() - 3);
+		}
+		try (var journal = open()) {
+			assertEquals(IngestionState.EMBEDDED, journal.pending().get("a.jpg").state());
+		}
+	}
+
+	@Test
+	void compactsWhileRunning() throws IOException {
+		var embedding = new float[512];
+		try (var journal = open()) {
+			journal.embedded(List.of("kept.jpg"), List.of(EMBEDDING));
+			for (int i = 0; i < 1000; i++) {
+				var name = List.of(i + ".jpg");
+				journal.embedded(name, List.of(embedding));
+				journal.inserted(name);
+				journal.moved(name);
+				journal.deleted(name);
+			}
+			// Over 2 MB were appended, the log never grows far past the 1 MiB compaction floor
+			assertTrue(Files.size(file()) < (1 << 20) + 8192, "journal of " + Files.size(file()) + " bytes");
+		}
+		try (var journal = open()) {
+			assertEquals(Set.of("kept.jpg"), journal.pending().keySet());
+			assertArrayEquals(EMBEDDING, journal.pending().get("kept.jpg").embedding());
+		}
+	}
+
+	@Test
+	void recordsNothingWhenTheAppendFails() throws IOException {
+		var journal = open();
+		journal.embedded(List.of("a.jpg"), List.of(EMBEDDING));
+		journal.close();
+		assertThrows(UncheckedIOException.class, () -> journal.inserted(List.of("a.jpg")));
+		assertThrows(UncheckedIOException.class, () -> journal.embedded(List.of("b.jpg"), List.of(EMBEDDING)));
+		assertEquals(Set.of("a.jpg"), journal.pending().keySet());
+		assertEquals(IngestionState.EMBEDDED, journal.pending().get("a.jpg").state());
+	}
+
+	@Test
+	void compactionReplacesTheLog() throws IOException {
+		try (var journal = open()) {
+			journal.embedded(List.of("a.jpg", "b.jpg"), List.of(EMBEDDING, EMBEDDING));
+			journal.deleted(List.of("a.jpg"));
+		}
+		try (var journal = open()) {
+			assertEquals(Set.of("b.jpg"), journal.pending().keySet());
+		}
+		try (var files = Files.list(dir)) {
+			assertEquals(List.of(file()), files.toList(), "no temporary log left behind");
+		}
+		assertEquals(1, recordSizes().length);
+	}
+
+	private IngestionJournal open() {
+		return new IngestionJournal(file(), 2);
+	}
+
+	private Path file() {
+		return dir.resolve("ingestion.journal");
+	}
+
+	/** Framed sizes of the records of the log, from their length prefixes. */
+	private int[] recordSizes() throws IOException {
+		var bytes = Files.readAllBytes(file());
+		var sizes = new ArrayList<Integer>();
+		for (int offset = 0; offset < bytes.length; ) {
+			var length = ByteBuffer.wrap(bytes, offset, 4).getInt();
+			sizes.add(8 + length);
+			offset += 8 + length;
+		}
+		return sizes.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,111 @@
+package ai.search.engine.core.service;
+
+import ai.djl.modality.cv.BufferedImageFactory;
+import ai.djl.modality.cv.Image;
+import ai.search.engine.core.config.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentelemetry.api.OpenTelemetry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageDecoderTest {
+
+	private static final int MIN_SIDE = 100;
+	private static final long MAX_PIXELS = 1_000_000;
+
+	private final ImageDecoder decoder = new ImageDecoder(new BufferedImageFactory(), new AppProperties()
+			.imageDecodeMinSide(MIN_SIDE)
+			.imageDecodeMaxPixels(MAX_PIXELS)
+			.ingestionDecodeConcurrency(1), new SimpleMeterRegistry(), OpenTelemetry.noop().getTracer("test"));
+
+	@AfterEach
+	void close() {
+		decoder.close();
+	}
+
+	@Test
+	void keepsTheCenterSquareOfAWideImage() throws IOException {
+		// 350 pixels high, subsampled by 3 down to 117
+		var image = decoder.decode(png(thirds(1050, 350, true)));
+		assertEquals(117, image.getWidth());
+		assertEquals(117, image.getHeight());
+		assertUniform(image, Color.GREEN);
+	}
+
+	@Test
+	void keepsTheCenterSquareOfATallImage() throws IOException {
+		var image = decoder.decode(png(thirds(350, 1050, false)));
+		assertEquals(117, image.getWidth());
+		assertEquals(117, image.getHeight());
+		assertUniform(image, Color.GREEN);
+	}
+
+	@Test
+	void subsamplesOnlyOnceTheSideReachesTwiceTheMinimum() throws IOException {
+		var atBoundary = decoder.decode(png(thirds(3 * 2 * MIN_SIDE, 2 * MIN_SIDE, true)));
+		assertEquals(MIN_SIDE, atBoundary.getWidth());
+		assertEquals(MIN_SIDE, atBoundary.getHeight());
+		assertUniform(atBoundary, Color.GREEN);
+
+		var belowBoundary = decoder.decode(png(thirds(3 * (2 * MIN_SIDE - 1), 2 * MIN_SIDE - 1, true)));
+		assertEquals(2 * MIN_SIDE - 1, belowBoundary.getWidth());
+		assertEquals(2 * MIN_SIDE - 1, belowBoundary.getHeight());
+	}
+
+	@Test
+	void leavesSmallImagesAsTheyAre() throws IOException {
+		var image = decoder.decode(png(thirds(150, 50, true)));
+		assertEquals(50, image.getWidth());
+		assertEquals(50, image.getHeight());
+		assertUniform(image, Color.GREEN);
+	}
+
+	@Test
+	void rejectsImagesOverThePixelLimit() throws IOException {
+		var in = png(new BufferedImage(1001, 1000, BufferedImage.TYPE_INT_RGB));
+		var e = assertThrows(IOException.class, () -> decoder.decode(in));
+		assertTrue(e.getMessage().contains("1001x1000"), e.getMessage());
+		// The stream is left where it was, to be read again
+		assertEquals(0x89, in.read());
+	}
+
+	/** Image split in red, green and blue thirds along its long side, {@code wide} or tall. */
+	private static BufferedImage thirds(int width, int height, boolean wide) {
+		var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		var colors = new Color[]{Color.RED, Color.GREEN, Color.BLUE};
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				var third = wide ? x * 3 / width : y * 3 / height;
+				image.setRGB(x, y, colors[third].getRGB());
+			}
+		}
+		return image;
+	}
+
+	private static InputStream png(BufferedImage image) throws IOException {
+		var bytes = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", bytes);
+		return new ByteArrayInputStream(bytes.toByteArray());
+	}
+
+	private static void assertUniform(Image image, Color color) {
+		var pixels = (BufferedImage) image.getWrappedImage();
+		for (int y = 0; y < pixels.getHeight(); y++) {
+			for (int x = 0; x < pixels.getWidth(); x++) {
+				assertEquals(color.getRGB(), pixels.getRGB(x, y), "pixel %d,%d".formatted(x, y));
+			}
+		}
+	}
+}
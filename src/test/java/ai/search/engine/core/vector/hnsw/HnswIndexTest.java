@@ -0,0 +1,180 @@
+package ai.search.engine.core.vector.hnsw;
+
+import ai.search.engine.core.vector.FieldValues;
+import ai.search.engine.core.vector.VectorMath;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswIndexTest {
+
+	private static final int DIMENSION = 32;
+	private static final int TOP_K = 10;
+	private static final int EF = 64;
+
+	@TempDir
+	private Path dir;
+
+	private final Random random = new Random(3);
+
+	@Test
+	void findsTheNearestNeighbours() {
+		var index = new HnswIndex(DIMENSION, 16, 100);
+		var vectors = IntStream.range(0, 2000).mapToObj(i -> randomVector()).toList();
+		vectors.forEach(vector -> index.add(vector, new Object[]{"row"}));
+
+		var found = 0;
+		var queries = IntStream.range(0, 50).mapToObj(i -> randomVector()).toList();
+		for (var query : queries) {
+			var expected = new HashSet<>(exactTop(vectors, query));
+			var hits = nodes(index.search(query, TOP_K, EF));
+			found += (int) hits.stream().filter(expected::contains).count();
+			// The visited lists are reused from search to search
+			assertEquals(hits, nodes(index.search(query, TOP_K, EF)));
+		}
+		var recall = (double) found / (queries.size() * TOP_K);
+		assertTrue(recall >= 0.95, "recall " + recall);
+	}
+
+	@Test
+	void concurrentSearchesAgreeWithSequentialOnes() {
+		var index = filled(1000);
+		var queries = IntStream.range(0, 200).mapToObj(i -> randomVector()).toList();
+		var sequential = queries.stream().map(query -> nodes(index.search(query, TOP_K, EF))).toList();
+		var parallel = queries.parallelStream().map(query -> nodes(index.search(query, TOP_K, EF))).toList();
+		assertEquals(sequential, parallel);
+	}
+
+	@Test
+	void flushAppendsOnlyWhatChanged() throws IOException {
+		var file = dir.resolve("index.hnsw");
+		var index = filled(1000);
+		index.flush(file);
+		var snapshotBytes = Files.size(file);
+
+		for (int i = 0; i < 10; i++) index.add(randomVector(), new Object[]{"new-" + i});
+		index.flush(file);
+		var appended = Files.size(file) - snapshotBytes;
+		assertTrue(appended > 0 && appended < snapshotBytes / 10, "appended " + appended + " bytes");
+		index.flush(file);
+		assertEquals(snapshotBytes + appended, Files.size(file), "nothing changed");
+
+		assertSameGraph(index, HnswIndex.load(file));
+	}
+
+	@Test
+	void compactsOnceAppendsOutgrowTheNodes() throws IOException {
+		var file = dir.resolve("index.hnsw");
+		var index = filled(200);
+		index.flush(file);
+		for (int flush = 0; flush < 200; flush++) {
+			for (int i = 0; i < 5; i++) index.add(randomVector(), new Object[]{"row"});
+			index.flush(file);
+		}
+		var snapshot = dir.resolve("snapshot.hnsw");
+		index.save(snapshot);
+		assertTrue(Files.size(file) <= 3 * Files.size(snapshot), "%d bytes for a %d bytes snapshot"
+				.formatted(Files.size(file), Files.size(snapshot)));
+		assertSameGraph(index, HnswIndex.load(file));
+	}
+
+	@Test
+	void dropsATornSegmentAndAppendsAfterTheLastGoodOne() throws IOException {
+		var file = dir.resolve("index.hnsw");
+		var index = filled(300);
+		index.flush(file);
+		var flushed = HnswIndex.load(file);
+		for (int i = 0; i < 5; i++) index.add(randomVector(), new Object[]{"lost"});
+		index.flush(file);
+		try (var channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 7);
+		}
+
+		var reloaded = HnswIndex.load(file);
+		assertSameGraph(flushed, reloaded);
+		reloaded.add(randomVector(), new Object[]{"after"});
+		reloaded.flush(file);
+		var again = HnswIndex.load(file);
+		assertEquals(301, again.size());
+		assertSameGraph(reloaded, again);
+	}
+
+	@Test
+	void readsSnapshotsOfTheFirstVersion() throws IOException {
+		var file = dir.resolve("index.hnsw");
+		var vector = VectorMath.normalize(randomVector());
+		try (var out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(0x484E5357);
+			out.writeInt(1);
+			out.writeInt(DIMENSION);
+			out.writeInt(16);
+			out.writeInt(100);
+			out.writeInt(1);
+			out.writeLong(0L);
+			for (var value : vector) out.writeFloat(value);
+			out.writeByte(1);
+			out.writeShort(0);
+			FieldValues.write(out, new Object[]{"a.jpg"});
+		}
+
+		var index = HnswIndex.load(file);
+		assertEquals(1, index.size());
+		assertArrayEquals(vector, index.vector(0));
+		index.add(randomVector(), new Object[]{"b.jpg"});
+		index.flush(file);
+		assertSameGraph(index, HnswIndex.load(file));
+	}
+
+	private HnswIndex filled(int count) {
+		var index = new HnswIndex(DIMENSION, 8, 50);
+		for (int i = 0; i < count; i++) index.add(randomVector(), new Object[]{"row-" + i, (long) i});
+		return index;
+	}
+
+	private void assertSameGraph(HnswIndex expected, HnswIndex actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < 20; i++) {
+			var query = randomVector();
+			var expectedHits = expected.search(query, TOP_K, EF);
+			var actualHits = actual.search(query, TOP_K, EF);
+			assertEquals(nodes(expectedHits), nodes(actualHits));
+			for (int hit = 0; hit < expectedHits.size(); hit++) {
+				assertArrayEquals(expectedHits.get(hit).payload(), actualHits.get(hit).payload());
+			}
+		}
+	}
+
+	private static List<Integer> nodes(List<HnswIndex.Neighbor> neighbors) {
+		return neighbors.stream().map(HnswIndex.Neighbor::node).toList();
+	}
+
+	private static List<Integer> exactTop(List<float[]> vectors, float[] query) {
+		var normalized = VectorMath.normalize(query);
+		return IntStream.range(0, vectors.size()).boxed()
+				.sorted(Comparator.comparingDouble(node -> -VectorMath.dot(normalized, 0,
+						VectorMath.normalize(vectors.get(node)), 0, DIMENSION)))
+				.limit(TOP_K)
+				.toList();
+	}
+
+	private float[] randomVector() {
+		var vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) vector[i] = (float) random.nextGaussian();
+		return vector;
+	}
+}
@@ -0,0 +1,126 @@
+package ai.search.engine.core.vector.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The SIMD kernels against the scalar reference, for lengths around every lane count so the
+ * vector loop, its tail and the offsets are all exercised. Surefire runs it once more with
+ * 128 bit vectors, the shape of NEON and SSE hosts.
+ */
+class DotProductTest {
+
+	private static final int[] LENGTHS = {0, 1, 3, 4, 7, 8, 9, 15, 16, 17, 31, 32, 33, 63, 64, 65, 100, 512};
+
+	private final DotProduct simd = new SimdDotProduct();
+	private final DotProduct scalar = new ScalarDotProduct();
+	private final Random random = new Random(42);
+
+	@Test
+	void floatDotMatchesScalar() {
+		for (var length : LENGTHS) {
+			for (int offset = 0; offset < 3; offset++) {
+				var a = randomFloats(length + offset);
+				var b = randomFloats(length + 2 * offset);
+				assertEquals(scalar.dot(a, offset, b, 2 * offset, length),
+						simd.dot(a, offset, b, 2 * offset, length), tolerance(length), "length " + length);
+			}
+		}
+	}
+
+	@Test
+	void int8DotMatchesScalar() {
+		for (var length : LENGTHS) {
+			for (int offset = 0; offset < 3; offset++) {
+				var a = randomFloats(length + offset);
+				var b = new byte[length + 2 * offset];
+				random.nextBytes(b);
+				assertEquals(scalar.dot(a, offset, b, 2 * offset, length),
+						simd.dot(a, offset, b, 2 * offset, length), 128 * tolerance(length), "length " + length);
+			}
+		}
+	}
+
+	@Test
+	void int8DotWidensSignedBytes() {
+		var a = new float[64];
+		var b = new byte[64];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = 1f;
+			b[i] = i % 2 == 0 ? Byte.MIN_VALUE : Byte.MAX_VALUE;
+		}
+		assertEquals(-32f, simd.dot(a, 0, b, 0, a.length));
+	}
+
+	@Test
+	void halfPrecisionDotsMatchScalar() {
+		for (var length : LENGTHS) {
+			for (int offset = 0; offset < 3; offset++) {
+				var a = randomFloats(length + offset);
+				var b = new byte[2 * (length + 2 * offset)];
+				for (int i = 0; i < length + 2 * offset; i++) {
+					putHalf(b, i, Float.floatToFloat16(random.nextFloat() * 2 - 1));
+				}
+				assertEquals(scalar.dotFloat16(a, offset, b, 4 * offset, length),
+						simd.dotFloat16(a, offset, b, 4 * offset, length), tolerance(length), "length " + length);
+				assertEquals(scalar.dotBFloat16(a, offset, b, 4 * offset, length),
+						simd.dotBFloat16(a, offset, b, 4 * offset, length), tolerance(length), "length " + length);
+			}
+		}
+	}
+
+	/** Every finite code, subnormals included, picked out one lane at a time by a one-hot vector. */
+	@Test
+	void float16DotWidensEveryCode() {
+		var length = 64;
+		var a = new float[length];
+		var b = new byte[2 * length];
+		for (int block = 0; block < (1 << 16) / length; block++) {
+			for (int i = 0; i < length; i++) {
+				var code = (short) (block * length + i);
+				putHalf(b, i, Float.isFinite(Float.float16ToFloat(code)) ? code : 0);
+			}
+			for (int i = 0; i < length; i++) {
+				a[i] = 1f;
+				var code = (short) (b[2 * i] & 0xFF | b[2 * i + 1] << 8);
+				assertEquals(Float.float16ToFloat(code), simd.dotFloat16(a, 0, b, 0, length), 0f, "code " + code);
+				assertEquals(Float.intBitsToFloat(code << 16), simd.dotBFloat16(a, 0, b, 0, length), 0f, "code " + code);
+				a[i] = 0f;
+			}
+		}
+	}
+
+	@Test
+	void float16DotKeepsInfinitiesAndNaNs() {
+		var a = new float[64];
+		Arrays.fill(a, 1f);
+		var b = new byte[2 * a.length];
+		putHalf(b, 5, Float.floatToFloat16(Float.POSITIVE_INFINITY));
+		assertEquals(Float.POSITIVE_INFINITY, simd.dotFloat16(a, 0, b, 0, a.length));
+		putHalf(b, 5, Float.floatToFloat16(Float.NaN));
+		assertTrue(Float.isNaN(simd.dotFloat16(a, 0, b, 0, a.length)));
+	}
+
+	private static void putHalf(byte[] b, int index, short code) {
+		b[2 * index] = (byte) code;
+		b[2 * index + 1] = (byte) (code >>> 8);
+	}
+
+	private float[] randomFloats(int length) {
+		var values = new float[length];
+		for (int i = 0; i < length; i++) {
+			values[i] = random.nextFloat() * 2 - 1;
+		}
+		return values;
+	}
+
+	/** Summing in a different order only moves the result by a few ulps per term. */
+	private static float tolerance(int length) {
+		return 1e-5f * Math.max(1, length);
+	}
+}
@@ -0,0 +1,74 @@
+package ai.search.engine.core.vector.kernel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The SIMD resampling against the scalar one, for output sizes around every lane count and
+ * with taps all over the row, as the bicubic resize of clamped image edges produces.
+ */
+class ResampleTest {
+
+	private static final int[] SIZES = {1, 3, 4, 7, 8, 9, 15, 16, 17, 33, 224};
+
+	private final Resample simd = new SimdResample();
+	private final Resample scalar = new ScalarResample();
+	private final Random random = new Random(42);
+
+	@Test
+	void horizontalMatchesScalar() {
+		for (var size : SIZES) {
+			var width = size + 5;
+			var pixels = new int[3 * width];
+			for (int i = 0; i < pixels.length; i++) pixels[i] = random.nextInt(0x1000000);
+			var taps = new int[Resample.TAPS * size];
+			for (int i = 0; i < taps.length; i++) taps[i] = random.nextInt(width);
+			var weights = weights(size);
+			var planeStride = size + 2;
+			var expected = new float[1 + 3 * planeStride];
+			var actual = new float[1 + 3 * planeStride];
+			scalar.horizontal(pixels, width, taps, weights, size, expected, 1, planeStride);
+			simd.horizontal(pixels, width, taps, weights, size, actual, 1, planeStride);
+			assertArrayClose(expected, actual, 1e-3f, "size " + size);
+		}
+	}
+
+	@Test
+	void verticalMatchesScalarAndClamps() {
+		for (var size : SIZES) {
+			var rows = new float[6 * size];
+			for (int i = 0; i < rows.length; i++) rows[i] = random.nextFloat() * 400 - 70;
+			int[] offsets = {0, 2 * size, size, 5 * size};
+			float[] weights = {-0.1f, 0.6f, 0.6f, -0.1f};
+			var expected = new float[size + 3];
+			var actual = new float[size + 3];
+			scalar.vertical(rows, offsets, weights, 1f / 255, -0.5f, expected, 3, size);
+			simd.vertical(rows, offsets, weights, 1f / 255, -0.5f, actual, 3, size);
+			assertArrayClose(expected, actual, 1e-6f, "size " + size);
+			for (var value : actual) assertEquals(0f, Math.max(0f, Math.abs(value) - 0.5f), 1e-6f);
+		}
+	}
+
+	/** Bicubic-like weights, negative outer taps summing to one with the inner ones. */
+	private float[] weights(int size) {
+		var weights = new float[Resample.TAPS * size];
+		for (int i = 0; i < size; i++) {
+			var outer = -0.1f * random.nextFloat();
+			weights[i] = outer;
+			weights[size + i] = 0.5f - outer;
+			weights[2 * size + i] = 0.5f - outer;
+			weights[3 * size + i] = outer;
+		}
+		return weights;
+	}
+
+	private static void assertArrayClose(float[] expected, float[] actual, float tolerance, String message) {
+		assertEquals(expected.length, actual.length, message);
+		for (int i = 0; i < expected.length; i++) {
+			assertEquals(expected[i], actual[i], tolerance, message + " at " + i);
+		}
+	}
+}
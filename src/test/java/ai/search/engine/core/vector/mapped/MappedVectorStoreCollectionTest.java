@@ -0,0 +1,206 @@
+package ai.search.engine.core.vector.mapped;
+
+import ai.search.engine.core.vector.CollectionSchema;
+import ai.search.engine.core.vector.FieldValues;
+import ai.search.engine.core.vector.VectorHit;
+import ai.search.engine.core.vector.VectorMath;
+import ai.search.engine.core.vector.quant.Quantization;
+import ai.search.engine.core.vector.quant.QuantizationType;
+import jakarta.json.Json;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedVectorStoreCollectionTest {
+
+	private static final int DIMENSION = 16;
+	private static final int TOP_K = 10;
+	/** Far below the 256 rows of a scan block, so blocks are cut at every segment boundary. */
+	private static final int ROWS_PER_SEGMENT = 100;
+	private static final CollectionSchema SCHEMA = new CollectionSchema("embedding", DIMENSION, "id", List.of("path"));
+
+	@TempDir
+	private Path dir;
+
+	private final Random random = new Random(11);
+	private final List<float[]> vectors = new ArrayList<>();
+
+	@Test
+	void exactSearchMatchesBruteForceAcrossSegmentsAndTasks() throws IOException {
+		// More rows than a single fork-join task scans
+		var collection = open(Quantization.NONE);
+		insert(collection, 20_000);
+		for (int q = 0; q < 20; q++) {
+			var query = randomVector();
+			var hits = search(collection, query);
+			assertEquals(exactTop(query, TOP_K), ids(hits));
+			for (var hit : hits) {
+				assertEquals("file-" + hit.id(), hit.get("path"));
+				assertEquals(exact(query, (int) hit.id()), hit.score(), 1e-5f);
+			}
+		}
+		collection.close();
+	}
+
+	@Test
+	void rowsInsertedOneAtATimeAreAllSearchable() throws IOException {
+		var collection = open(Quantization.NONE);
+		for (int i = 0; i < 500; i++) insert(collection, 1);
+		var query = randomVector();
+		assertEquals(exactTop(query, TOP_K), ids(search(collection, query)));
+		collection.close();
+	}
+
+	@Test
+	void reopensTheFlushedRows() throws IOException {
+		var collection = open(Quantization.NONE);
+		insert(collection, 1_000);
+		collection.flush().await().indefinitely();
+		collection.close();
+
+		var reopened = open(Quantization.NONE);
+		var query = randomVector();
+		var hits = search(reopened, query);
+		assertEquals(exactTop(query, TOP_K), ids(hits));
+		assertEquals("file-" + hits.getFirst().id(), hits.getFirst().get("path"));
+		reopened.close();
+	}
+
+	@Test
+	void rejectsForeignAndMismatchedVectorFiles() throws IOException {
+		Files.write(dir.resolve("c.vec"), new byte[64]);
+		assertEquals("Not a vector file", assertThrows(IOException.class, () -> open(Quantization.NONE)).getMessage());
+
+		Files.delete(dir.resolve("c.vec"));
+		open(Quantization.NONE).close();
+		var other = new CollectionSchema("embedding", DIMENSION * 2, "id", List.of("path"));
+		var e = assertThrows(IOException.class, () -> new MappedVectorStoreCollection(other, dir.resolve("c.vec"),
+				dir.resolve("c.rows"), dir.resolve("c.quant"), dir.resolve("c.codes"), ForkJoinPool.commonPool(),
+				Quantization.NONE, ROWS_PER_SEGMENT));
+		assertTrue(e.getMessage().contains("dimension"), e.getMessage());
+	}
+
+	@Test
+	void keepsTheRowsBothFilesAgreeOn() throws IOException {
+		var collection = open(Quantization.NONE);
+		insert(collection, 300);
+		collection.flush().await().indefinitely();
+		collection.close();
+
+		// The vector file ahead by a row and a half, as if the side table write never happened
+		Files.write(dir.resolve("c.vec"), new byte[DIMENSION * Float.BYTES * 3 / 2], StandardOpenOption.APPEND);
+		var reopened = open(Quantization.NONE);
+		assertEquals(300, count(reopened));
+		insert(reopened, 10);
+		reopened.flush().await().indefinitely();
+		reopened.close();
+
+		// The side table ahead by a whole row and a torn one
+		try (var out = new DataOutputStream(Files.newOutputStream(dir.resolve("c.rows"), StandardOpenOption.APPEND))) {
+			FieldValues.write(out, new Object[]{"orphan"});
+			out.writeShort(1);
+		}
+		var recovered = open(Quantization.NONE);
+		assertEquals(310, count(recovered));
+		var query = randomVector();
+		var hits = search(recovered, query);
+		assertEquals(exactTop(query, TOP_K), ids(hits));
+		hits.forEach(hit -> assertEquals("file-" + hit.id(), hit.get("path")));
+		recovered.close();
+	}
+
+	@Test
+	void quantizedScanIsRescoredExactly() throws IOException {
+		var quantization = new Quantization(QuantizationType.SQ8, 1_000, 0, 4);
+		var collection = open(quantization);
+		insert(collection, 3_000);
+		// Trains the quantizer and encodes every row
+		collection.flush().await().indefinitely();
+		insert(collection, 500);
+		assertEquals(3_500L * DIMENSION, Files.size(dir.resolve("c.codes")), "one code per row");
+
+		var found = 0;
+		for (int q = 0; q < 20; q++) {
+			var query = randomVector();
+			var hits = search(collection, query);
+			for (var hit : hits) {
+				assertEquals(exact(query, (int) hit.id()), hit.score(), 1e-5f, "rescored exactly");
+			}
+			var expected = new HashSet<>(exactTop(query, TOP_K));
+			found += (int) ids(hits).stream().filter(expected::contains).count();
+		}
+		assertTrue(found >= 0.95 * 20 * TOP_K, "recall " + found);
+		collection.close();
+
+		var reopened = open(quantization);
+		var query = randomVector();
+		assertEquals(exactTop(query, TOP_K).getFirst(), ids(search(reopened, query)).getFirst());
+		reopened.close();
+	}
+
+	private MappedVectorStoreCollection open(Quantization quantization) throws IOException {
+		return new MappedVectorStoreCollection(SCHEMA, dir.resolve("c.vec"), dir.resolve("c.rows"),
+				dir.resolve("c.quant"), dir.resolve("c.codes"), ForkJoinPool.commonPool(), quantization,
+				ROWS_PER_SEGMENT);
+	}
+
+	private void insert(MappedVectorStoreCollection collection, int count) {
+		var embeddings = new ArrayList<float[]>();
+		var paths = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			paths.add("file-" + vectors.size());
+			var vector = randomVector();
+			vectors.add(vector);
+			embeddings.add(vector);
+		}
+		collection.insert(Map.of("embedding", embeddings, "path", paths)).await().indefinitely();
+	}
+
+	private List<VectorHit> search(MappedVectorStoreCollection collection, float[] query) {
+		return collection.search(TOP_K, List.of(query), "embedding", List.of("path"),
+				Json.createObjectBuilder().build()).await().indefinitely().getFirst();
+	}
+
+	private int count(MappedVectorStoreCollection collection) {
+		return collection.search(Integer.MAX_VALUE >> 8, List.of(randomVector()), "embedding", List.of(),
+				Json.createObjectBuilder().build()).await().indefinitely().getFirst().size();
+	}
+
+	private List<Integer> exactTop(float[] query, int k) {
+		return IntStream.range(0, vectors.size()).boxed()
+				.sorted(Comparator.comparingDouble(row -> -exact(query, row)))
+				.limit(k)
+				.toList();
+	}
+
+	private float exact(float[] query, int row) {
+		return VectorMath.dot(VectorMath.normalize(query), 0, VectorMath.normalize(vectors.get(row)), 0, DIMENSION);
+	}
+
+	private static List<Integer> ids(List<VectorHit> hits) {
+		return hits.stream().map(hit -> (int) hit.id()).toList();
+	}
+
+	private float[] randomVector() {
+		var vector = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) vector[i] = (float) random.nextGaussian();
+		return vector;
+	}
+}
@@ -0,0 +1,144 @@
+package ai.search.engine.core.vector.quant;
+
+import ai.search.engine.core.vector.VectorMath;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall@10 of the quantized scan followed by exact re-scoring of {@code topK * rerank}
+ * candidates, as the mapped store searches, on clustered unit vectors shaped like embeddings.
+ */
+class QuantizerRecallTest {
+
+	private static final int DIMENSION = 128;
+	private static final int ROWS = 4000;
+	private static final int CLUSTERS = 40;
+	private static final int QUERIES = 50;
+	private static final int TOP_K = 10;
+	private static final int RERANK = 4;
+
+	private final Random random = new Random(7);
+	private final float[] rows = clustered(ROWS);
+	private final float[] queries = clustered(QUERIES);
+
+	@Test
+	void scalarQuantizationKeepsRecall() {
+		var quantizer = ScalarQuantizer.train(rows, ROWS, DIMENSION);
+		assertEquals(DIMENSION, quantizer.codeSize());
+		assertTrue(recall(quantizer) >= 0.99, "SQ8 recall");
+	}
+
+	@Test
+	void productQuantizationKeepsRecall() {
+		var quantizer = ProductQuantizer.train(rows, ROWS, DIMENSION, 32, 10);
+		assertEquals(32, quantizer.codeSize());
+		assertTrue(recall(quantizer) >= 0.8, "PQ recall");
+	}
+
+	/** Half precision ranks well enough to go without re-scoring: 0.998 for fp16 and 0.986 for bf16 with seed 7. */
+	@Test
+	void halfPrecisionKeepsRecallWithoutRerank() {
+		var fp16 = recall(new HalfPrecisionQuantizer(QuantizationType.FP16, DIMENSION), 1);
+		var bf16 = recall(new HalfPrecisionQuantizer(QuantizationType.BF16, DIMENSION), 1);
+		assertTrue(fp16 >= 0.99, "FP16 recall " + fp16);
+		assertTrue(bf16 >= 0.98, "BF16 recall " + bf16);
+	}
+
+	@Test
+	void quantizersSurviveARoundTrip() throws IOException {
+		for (var quantizer : new Quantizer[]{
+				ScalarQuantizer.train(rows, ROWS, DIMENSION),
+				ProductQuantizer.train(rows, ROWS, DIMENSION, 16, 2)}) {
+			var bytes = new ByteArrayOutputStream();
+			try (var out = new DataOutputStream(bytes)) {
+				out.writeUTF(quantizer.type().name());
+				quantizer.write(out);
+			}
+			var read = Quantizer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+			assertArrayEquals(encode(quantizer), encode(read), quantizer.type().name());
+		}
+	}
+
+	private double recall(Quantizer quantizer) {
+		return recall(quantizer, RERANK);
+	}
+
+	private double recall(Quantizer quantizer, int rerank) {
+		var codes = encode(quantizer);
+		var found = 0;
+		for (int q = 0; q < QUERIES; q++) {
+			var query = new float[DIMENSION];
+			System.arraycopy(queries, q * DIMENSION, query, 0, DIMENSION);
+			var scorer = quantizer.scorer(query);
+			var candidates = top(TOP_K * rerank, row -> scorer.score(codes, row * quantizer.codeSize()));
+			var reranked = IntStream.of(candidates).boxed()
+					.sorted(Comparator.comparingDouble(row -> -exact(query, row)))
+					.limit(TOP_K)
+					.toList();
+			var expected = new HashSet<Integer>();
+			for (var row : top(TOP_K, row -> exact(query, row))) expected.add(row);
+			found += (int) reranked.stream().filter(expected::contains).count();
+		}
+		return (double) found / (QUERIES * TOP_K);
+	}
+
+	private byte[] encode(Quantizer quantizer) {
+		var codes = new byte[ROWS * quantizer.codeSize()];
+		for (int row = 0; row < ROWS; row++) {
+			quantizer.encode(rows, row * DIMENSION, codes, row * quantizer.codeSize());
+		}
+		return codes;
+	}
+
+	private float exact(float[] query, int row) {
+		return VectorMath.dot(query, 0, rows, row * DIMENSION, DIMENSION);
+	}
+
+	private static int[] top(int k, Score score) {
+		return IntStream.range(0, ROWS).boxed()
+				.sorted(Comparator.comparingDouble(row -> -score.of(row)))
+				.limit(k)
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+	/** Unit vectors scattered around a few random centers, like embeddings of similar images. */
+	private float[] clustered(int count) {
+		var centers = new Random(1);
+		var center = new float[CLUSTERS][DIMENSION];
+		for (var c : center) {
+			for (int i = 0; i < DIMENSION; i++) c[i] = (float) centers.nextGaussian();
+		}
+		var vectors = new float[count * DIMENSION];
+		for (int row = 0; row < count; row++) {
+			var c = center[random.nextInt(CLUSTERS)];
+			var norm = 0f;
+			for (int i = 0; i < DIMENSION; i++) {
+				var value = c[i] + 0.5f * (float) random.nextGaussian();
+				vectors[row * DIMENSION + i] = value;
+				norm += value * value;
+			}
+			norm = (float) Math.sqrt(norm);
+			for (int i = 0; i < DIMENSION; i++) vectors[row * DIMENSION + i] /= norm;
+		}
+		return vectors;
+	}
+
+	@FunctionalInterface
+	private interface Score {
+		float of(int row);
+	}
+}